@@ -5,6 +5,7 @@ import org.frizzlenpop.frizzlenShop.commands.ShopAdminCommand;
 import org.frizzlenpop.frizzlenShop.commands.ShopCommand;
 import org.frizzlenpop.frizzlenShop.config.ConfigManager;
 import org.frizzlenpop.frizzlenShop.data.DataManager;
+import org.frizzlenpop.frizzlenShop.data.TransactionJournal;
 import org.frizzlenpop.frizzlenShop.economy.CraftingRelationManager;
 import org.frizzlenpop.frizzlenShop.economy.DynamicPricingManager;
 import org.frizzlenpop.frizzlenShop.economy.EconomyManager;
@@ -34,6 +35,7 @@ public final class FrizzlenShop extends JavaPlugin {
     private LogManager logManager;
     private ChatListener chatListener;
     private DatabaseManager databaseManager;
+    private TransactionJournal transactionJournal;
     private DynamicPricingManager dynamicPricingManager;
     private CraftingRelationManager craftingRelationManager;
     private AdminShopPopulator adminShopPopulator;
@@ -64,6 +66,7 @@ public final class FrizzlenShop extends JavaPlugin {
         
         // Initialize database
         databaseManager = new DatabaseManager(this);
+        transactionJournal = new TransactionJournal(this);
         
         dataManager = new DataManager(this);
         shopManager = new ShopManager(this);
@@ -148,13 +151,26 @@ public final class FrizzlenShop extends JavaPlugin {
             getLogger().info("Found " + adminShopCount + " existing admin shops in the system.");
         }
         
+        // Start saving shop data in the background
+        dataManager.startAutosave();
+        
         getLogger().info("FrizzlenShop has been enabled!");
     }
 
     @Override
     public void onDisable() {
+        // Flush pending transactions before anything else is torn down
+        if (transactionJournal != null) {
+            transactionJournal.shutdown();
+        }
+        
+        // Save pending market data
+        if (dynamicPricingManager != null) {
+            dynamicPricingManager.shutdown();
+        }
+        
         if (dataManager != null) {
-            dataManager.saveData();
+            dataManager.shutdown();
         }
         
         // Save templates
@@ -162,6 +178,16 @@ public final class FrizzlenShop extends JavaPlugin {
             templateManager.saveTemplates();
         }
         
+        // Write out buffered log lines
+        if (logManager != null) {
+            logManager.shutdown();
+        }
+
+        // Close pooled database connections last
+        if (databaseManager != null) {
+            databaseManager.close();
+        }
+
         getLogger().info("FrizzlenShop has been disabled!");
     }
     
@@ -211,6 +237,15 @@ public final class FrizzlenShop extends JavaPlugin {
         return databaseManager;
     }
     
+    /**
+     * Get the transaction journal
+     *
+     * @return The transaction journal
+     */
+    public TransactionJournal getTransactionJournal() {
+        return transactionJournal;
+    }
+    
     /**
      * Get the dynamic pricing manager
      *
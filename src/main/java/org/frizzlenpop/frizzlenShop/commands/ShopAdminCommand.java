@@ -13,6 +13,9 @@ import org.bukkit.inventory.ItemStack;
 import org.bukkit.permissions.PermissionAttachmentInfo;
 import org.frizzlenpop.frizzlenShop.FrizzlenShop;
 import org.frizzlenpop.frizzlenShop.config.ConfigManager;
+import org.frizzlenpop.frizzlenShop.economy.MarketAnalyzer;
+import org.frizzlenpop.frizzlenShop.economy.PriceCache;
+import org.frizzlenpop.frizzlenShop.economy.PriceHistory;
 import org.frizzlenpop.frizzlenShop.shops.AdminShop;
 import org.frizzlenpop.frizzlenShop.shops.Shop;
 import org.frizzlenpop.frizzlenShop.shops.ShopItem;
@@ -358,6 +361,9 @@ public class ShopAdminCommand implements CommandExecutor, TabCompleter {
         // Load data again
         plugin.getDataManager().loadData();
 
+        // Restart autosave with the reloaded interval
+        plugin.getDataManager().startAutosave();
+
         MessageUtils.sendSuccessMessage(sender, "FrizzlenShop configuration reloaded!");
         return true;
     }
@@ -1189,6 +1195,7 @@ public class ShopAdminCommand implements CommandExecutor, TabCompleter {
                 MessageUtils.sendMessage(player, "&7/shopadmin shop create <name> &f- Create a new admin shop");
                 MessageUtils.sendMessage(player, "&7/shopadmin shop list &f- List all admin shops");
                 MessageUtils.sendMessage(player, "&7/shopadmin shop delete <id> &f- Delete an admin shop");
+                MessageUtils.sendMessage(player, "&7/shopadmin shop stats &f- Show shop lookup statistics");
                 break;
                 
             case "create":
@@ -1249,6 +1256,13 @@ public class ShopAdminCommand implements CommandExecutor, TabCompleter {
                 }
                 break;
                 
+            case "stats":
+                MessageUtils.sendMessage(player, "&e===== Shop Lookup Statistics =====");
+                MessageUtils.sendMessage(player, "&7Shops: &f" + plugin.getShopManager().getAllShops().size());
+                MessageUtils.sendMessage(player, "&7Chunks with shops: &f" + plugin.getShopManager().getShopChunkCount());
+                MessageUtils.sendMessage(player, "&7Block events rejected by chunk: &f" + plugin.getShopManager().getFastPathRejections());
+                break;
+                
             default:
                 MessageUtils.sendErrorMessage(player, "Unknown shop subcommand. Use /shopadmin shop help for help.");
                 break;
@@ -1278,13 +1292,13 @@ public class ShopAdminCommand implements CommandExecutor, TabCompleter {
             // Show help for pricing commands
             MessageUtils.sendMessage(sender, "&e===== Dynamic Pricing Commands =====");
             MessageUtils.sendMessage(sender, "&7/shopadmin pricing toggle &f- Enable or disable dynamic pricing");
-            MessageUtils.sendMessage(sender, "&7/shopadmin pricing analyze &f- Perform market analysis now");
+            MessageUtils.sendMessage(sender, "&7/shopadmin pricing flush &f- Save pending market data now");
             MessageUtils.sendMessage(sender, "&7/shopadmin pricing updateprices &f- Update admin shop prices to reflect current market conditions");
             MessageUtils.sendMessage(sender, "&7/shopadmin pricing reset <material> &f- Reset pricing data for a material");
             MessageUtils.sendMessage(sender, "&7/shopadmin pricing volatility <value> &f- Set volatility multiplier");
-            MessageUtils.sendMessage(sender, "&7/shopadmin pricing interval <minutes> &f- Set analysis interval");
             MessageUtils.sendMessage(sender, "&7/shopadmin pricing maxchange <value> &f- Set maximum price change");
             MessageUtils.sendMessage(sender, "&7/shopadmin pricing status &f- Check dynamic pricing status");
+            MessageUtils.sendMessage(sender, "&7/shopadmin pricing history <material> [1m|1h|1d] [count] &f- Show recent price candles");
             return true;
         }
         
@@ -1307,20 +1321,23 @@ public class ShopAdminCommand implements CommandExecutor, TabCompleter {
                 }
                 break;
                 
-            case "analyze":
+            case "flush":
                 if (!plugin.getConfigManager().isDynamicPricingEnabled()) {
                     MessageUtils.sendErrorMessage(sender, "Dynamic pricing is disabled. Enable it first with /shopadmin pricing toggle");
                     return true;
                 }
                 
-                MessageUtils.sendMessage(sender, "&aPerforming market analysis...");
+                MessageUtils.sendMessage(sender, "&aSaving market data...");
                 
-                // Run market analysis asynchronously
+                // Write asynchronously, the database is never touched on the main thread
                 Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
                     if (plugin.getDynamicPricingManager() != null && plugin.getDynamicPricingManager().getMarketAnalyzer() != null) {
-                        plugin.getDynamicPricingManager().getMarketAnalyzer().performMarketAnalysis();
+                        long start = System.currentTimeMillis();
+                        int saved = plugin.getDynamicPricingManager().getMarketAnalyzer().flushMarketData();
+                        long elapsed = System.currentTimeMillis() - start;
                         Bukkit.getScheduler().runTask(plugin, () -> {
-                            MessageUtils.sendMessage(sender, "&aMarket analysis completed successfully!");
+                            MessageUtils.sendMessage(sender, "&aMarket data saved! &7(" + saved
+                                + " rows saved in " + elapsed + " ms)");
                         });
                     } else {
                         Bukkit.getScheduler().runTask(plugin, () -> {
@@ -1382,49 +1399,62 @@ public class ShopAdminCommand implements CommandExecutor, TabCompleter {
                 }
                 break;
                 
-            case "volatility":
+            case "history":
                 if (args.length < 3) {
-                    MessageUtils.sendMessage(sender, "&7Current volatility multiplier: &f" + plugin.getConfigManager().getVolatilityMultiplier());
-                    MessageUtils.sendMessage(sender, "&7Usage: /shopadmin pricing volatility <value>");
+                    MessageUtils.sendErrorMessage(sender, "Usage: /shopadmin pricing history <material> [1m|1h|1d] [count]");
+                    return true;
+                }
+                
+                MarketAnalyzer historyAnalyzer = plugin.getMarketAnalyzer();
+                if (historyAnalyzer == null) {
+                    MessageUtils.sendErrorMessage(sender, "Dynamic pricing manager or market analyzer not initialized.");
+                    return true;
+                }
+                
+                Material historyMaterial = Material.matchMaterial(args[2]);
+                if (historyMaterial == null) {
+                    MessageUtils.sendErrorMessage(sender, "Invalid material name: " + args[2]);
                     return true;
                 }
                 
+                PriceHistory.Resolution resolution = args.length > 3 ? PriceHistory.Resolution.fromLabel(args[3]) : PriceHistory.Resolution.HOUR;
+                if (resolution == null) {
+                    MessageUtils.sendErrorMessage(sender, "Invalid resolution: " + args[3] + " (use 1m, 1h or 1d)");
+                    return true;
+                }
+                
+                int count;
                 try {
-                    double value = Double.parseDouble(args[2]);
-                    if (value < 0.1 || value > 5.0) {
-                        MessageUtils.sendErrorMessage(sender, "Value must be between 0.1 and 5.0");
-                        return true;
-                    }
-                    
-                    plugin.getConfigManager().getConfig().set("dynamic_pricing.volatility_multiplier", value);
-                    plugin.getConfigManager().saveConfig();
-                    
-                    // Update market analyzer if available
-                    if (plugin.getDynamicPricingManager() != null && plugin.getDynamicPricingManager().getMarketAnalyzer() != null) {
-                        plugin.getDynamicPricingManager().getMarketAnalyzer().updateConfigSettings();
-                    }
-                    
-                    MessageUtils.sendMessage(sender, "&aVolatility multiplier set to " + value);
+                    count = args.length > 4 ? Math.max(1, Math.min(60, Integer.parseInt(args[4]))) : 12;
                 } catch (NumberFormatException e) {
-                    MessageUtils.sendErrorMessage(sender, "Invalid number format: " + args[2]);
+                    MessageUtils.sendErrorMessage(sender, "Invalid count: " + args[4]);
+                    return true;
                 }
+                
+                // Older candles may have to be read from the database
+                Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+                    long now = System.currentTimeMillis();
+                    List<PriceHistory.Candle> candles = historyAnalyzer.getPriceHistory().getCandles(historyMaterial, resolution,
+                            now - count * resolution.getPeriodMillis(), now);
+                    Bukkit.getScheduler().runTask(plugin, () -> sendPriceHistory(sender, historyMaterial, resolution, candles));
+                });
                 break;
                 
-            case "interval":
+            case "volatility":
                 if (args.length < 3) {
-                    MessageUtils.sendMessage(sender, "&7Current analysis interval: &f" + plugin.getConfigManager().getAnalysisInterval() + " minutes");
-                    MessageUtils.sendMessage(sender, "&7Usage: /shopadmin pricing interval <minutes>");
+                    MessageUtils.sendMessage(sender, "&7Current volatility multiplier: &f" + plugin.getConfigManager().getVolatilityMultiplier());
+                    MessageUtils.sendMessage(sender, "&7Usage: /shopadmin pricing volatility <value>");
                     return true;
                 }
                 
                 try {
-                    int value = Integer.parseInt(args[2]);
-                    if (value < 5 || value > 1440) {
-                        MessageUtils.sendErrorMessage(sender, "Value must be between 5 and 1440 minutes (24 hours)");
+                    double value = Double.parseDouble(args[2]);
+                    if (value < 0.1 || value > 5.0) {
+                        MessageUtils.sendErrorMessage(sender, "Value must be between 0.1 and 5.0");
                         return true;
                     }
                     
-                    plugin.getConfigManager().getConfig().set("dynamic_pricing.analysis_interval", value);
+                    plugin.getConfigManager().getConfig().set("dynamic_pricing.volatility_multiplier", value);
                     plugin.getConfigManager().saveConfig();
                     
                     // Update market analyzer if available
@@ -1432,8 +1462,7 @@ public class ShopAdminCommand implements CommandExecutor, TabCompleter {
                         plugin.getDynamicPricingManager().getMarketAnalyzer().updateConfigSettings();
                     }
                     
-                    MessageUtils.sendMessage(sender, "&aAnalysis interval set to " + value + " minutes");
-                    MessageUtils.sendMessage(sender, "&7Note: This will take effect the next time the scheduler runs");
+                    MessageUtils.sendMessage(sender, "&aVolatility multiplier set to " + value);
                 } catch (NumberFormatException e) {
                     MessageUtils.sendErrorMessage(sender, "Invalid number format: " + args[2]);
                 }
@@ -1479,9 +1508,8 @@ public class ShopAdminCommand implements CommandExecutor, TabCompleter {
                 
                 if (enabled) {
                     MessageUtils.sendMessage(sender, "&7Volatility Multiplier: &f" + plugin.getConfigManager().getVolatilityMultiplier());
-                    MessageUtils.sendMessage(sender, "&7Analysis Interval: &f" + plugin.getConfigManager().getAnalysisInterval() + " minutes");
                     MessageUtils.sendMessage(sender, "&7Max Price Change: &f" + (plugin.getConfigManager().getMaxPriceChange() * 100) + "%");
-                    MessageUtils.sendMessage(sender, "&7Normalization Rate: &f" + plugin.getConfigManager().getNormalizationRate());
+                    MessageUtils.sendMessage(sender, "&7Decay Half-Life: &f" + plugin.getConfigManager().getDecayHalfLife() + " hours");
                     MessageUtils.sendMessage(sender, "&7Crafting Relationships: &f" + 
                         (plugin.getConfigManager().useCraftingRelationships() ? "Enabled" : "Disabled"));
                     MessageUtils.sendMessage(sender, "&7Fluctuation: &f" + 
@@ -1493,6 +1521,16 @@ public class ShopAdminCommand implements CommandExecutor, TabCompleter {
                     }
                     
                     // Get some market stats if available
+                    if (plugin.getDynamicPricingManager() != null) {
+                        PriceCache buyCache = plugin.getDynamicPricingManager().getBuyPriceCache();
+                        PriceCache sellCache = plugin.getDynamicPricingManager().getSellPriceCache();
+                        long hits = buyCache.getHits() + sellCache.getHits();
+                        long lookups = hits + buyCache.getMisses() + sellCache.getMisses();
+                        MessageUtils.sendMessage(sender, "&7Price Cache: &f" + (buyCache.size() + sellCache.size()) + " entries, "
+                            + String.format("%.1f", lookups > 0 ? hits * 100.0 / lookups : 0.0) + "% hits, "
+                            + (buyCache.getEvictions() + sellCache.getEvictions()) + " evictions");
+                    }
+                    
                     if (plugin.getDynamicPricingManager() != null && plugin.getDynamicPricingManager().getMarketAnalyzer() != null) {
                         MessageUtils.sendMessage(sender, "");
                         MessageUtils.sendMessage(sender, "&7Top trending items:");
@@ -1507,6 +1545,15 @@ public class ShopAdminCommand implements CommandExecutor, TabCompleter {
                                     " " + String.format("%.1f", Math.abs(entry.getValue() * 100)) + "%");
                             }
                         }
+                        
+                        Map<Material, Double> falling = plugin.getDynamicPricingManager().getFallingItems(5);
+                        if (!falling.isEmpty()) {
+                            MessageUtils.sendMessage(sender, "&7Top falling items:");
+                            for (Map.Entry<Material, Double> entry : falling.entrySet()) {
+                                MessageUtils.sendMessage(sender, "  &f" + entry.getKey().name() + ": &c▼ " + 
+                                    String.format("%.1f", Math.abs(entry.getValue() * 100)) + "%");
+                            }
+                        }
                     }
                 }
                 break;
@@ -1520,6 +1567,38 @@ public class ShopAdminCommand implements CommandExecutor, TabCompleter {
         return true;
     }
     
+    /**
+     * Sends price candles of a material to a command sender
+     *
+     * @param sender The command sender
+     * @param material The material
+     * @param resolution The candle resolution
+     * @param candles The candles, oldest first
+     */
+    private void sendPriceHistory(CommandSender sender, Material material, PriceHistory.Resolution resolution,
+                                  List<PriceHistory.Candle> candles) {
+        MessageUtils.sendMessage(sender, "&e===== Price History: " + material.name() + " (" + resolution.getLabel() + ") =====");
+        if (candles.isEmpty()) {
+            MessageUtils.sendMessage(sender, "&7No trades in this period.");
+            return;
+        }
+        
+        double open = candles.get(0).getOpen();
+        double close = candles.get(candles.size() - 1).getClose();
+        double change = (close - open) / open * 100.0;
+        MessageUtils.sendMessage(sender, "&7Change: " + (change >= 0 ? "&a+" : "&c") + String.format("%.1f%%", change));
+        
+        SimpleDateFormat dateFormat = new SimpleDateFormat(resolution == PriceHistory.Resolution.DAY ? "yyyy-MM-dd" : "MM-dd HH:mm");
+        for (PriceHistory.Candle candle : candles) {
+            MessageUtils.sendMessage(sender, "&7" + dateFormat.format(new Date(candle.getStart()))
+                    + " &fO " + String.format("%.2f", candle.getOpen())
+                    + " H " + String.format("%.2f", candle.getHigh())
+                    + " L " + String.format("%.2f", candle.getLow())
+                    + " C " + String.format("%.2f", candle.getClose())
+                    + " &7(" + candle.getVolume() + " traded)");
+        }
+    }
+    
     /**
      * Resets pricing data for a specific material
      * 
@@ -1527,9 +1606,15 @@ public class ShopAdminCommand implements CommandExecutor, TabCompleter {
      * @return True if successful, false otherwise
      */
     private boolean resetMaterialPricing(Material material) {
-        try {
-            // Reset market trends data in database
-            Connection conn = plugin.getDatabaseManager().getConnection();
+        // The market analyzer owns the market state while it is running and saves the reset with its next flush
+        MarketAnalyzer analyzer = plugin.getMarketAnalyzer();
+        if (analyzer != null) {
+            analyzer.resetMarketData(material, getMaterialDefaultVolatility(material));
+            return true;
+        }
+        
+        // Reset market trends data in database
+        try (Connection conn = plugin.getDatabaseManager().getWriteConnection()) {
             String tableName = plugin.getDatabaseManager().getTablePrefix() + "market_trends";
             
             // Delete existing entry
@@ -1550,14 +1635,6 @@ public class ShopAdminCommand implements CommandExecutor, TabCompleter {
             insertPs.executeUpdate();
             insertPs.close();
             
-            conn.close();
-            
-            // Clear cache if available
-            if (plugin.getDynamicPricingManager() != null && plugin.getDynamicPricingManager().getMarketAnalyzer() != null) {
-                // Log cache clear
-                plugin.getLogger().info("Cleared market data cache for " + material.name());
-            }
-            
             return true;
         } catch (SQLException e) {
             plugin.getLogger().severe("Error resetting pricing data: " + e.getMessage());
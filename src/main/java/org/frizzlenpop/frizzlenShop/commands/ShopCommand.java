@@ -1,22 +1,20 @@
 package org.frizzlenpop.frizzlenShop.commands;
 
 import org.bukkit.ChatColor;
-import org.bukkit.Material;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandExecutor;
 import org.bukkit.command.CommandSender;
 import org.bukkit.command.TabCompleter;
 import org.bukkit.entity.Player;
-import org.bukkit.inventory.ItemStack;
 import org.frizzlenpop.frizzlenShop.FrizzlenShop;
+import org.frizzlenpop.frizzlenShop.shops.ListingSearchIndex;
 import org.frizzlenpop.frizzlenShop.shops.Shop;
 import org.frizzlenpop.frizzlenShop.shops.ShopItem;
+import org.frizzlenpop.frizzlenShop.shops.ShopListing;
 import org.frizzlenpop.frizzlenShop.utils.MessageUtils;
 
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collection;
-import java.util.Comparator;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -25,6 +23,9 @@ import java.util.stream.Collectors;
  */
 public class ShopCommand implements CommandExecutor, TabCompleter {
 
+    // Number of search results listed in chat
+    private static final int SEARCH_RESULTS_SHOWN = 10;
+
     private final FrizzlenShop plugin;
     private final List<String> subCommands = Arrays.asList(
             "browse", "search", "create", "manage", "history", "sell", "buy", "help", "quicksell"
@@ -137,87 +138,35 @@ public class ShopCommand implements CommandExecutor, TabCompleter {
         
         MessageUtils.sendMessage(player, "&eSearching for: &f" + query);
         
-        // Collect matching items from all shops
-        List<SearchResult> results = new ArrayList<>();
-        
-        // Get all shops
-        Collection<Shop> shops = plugin.getShopManager().getAllShops();
-        
-        // Search in each shop
-        for (Shop shop : shops) {
-            // Skip shops that aren't open
-            if (!shop.isOpen()) {
-                continue;
-            }
-            
-            for (ShopItem item : shop.getItems()) {
-                ItemStack itemStack = item.getItem();
-                Material material = itemStack.getType();
-                String materialName = material.name().toLowerCase().replace("_", " ");
-                
-                // Check item name, material name, and lore for matches
-                boolean matches = materialName.contains(query);
-                
-                // Check custom name if exists
-                if (itemStack.hasItemMeta() && itemStack.getItemMeta().hasDisplayName()) {
-                    String itemName = ChatColor.stripColor(itemStack.getItemMeta().getDisplayName().toLowerCase());
-                    matches = matches || itemName.contains(query);
-                }
-                
-                // Check lore if exists
-                if (itemStack.hasItemMeta() && itemStack.getItemMeta().hasLore()) {
-                    List<String> lore = itemStack.getItemMeta().getLore();
-                    for (String line : lore) {
-                        String strippedLine = ChatColor.stripColor(line.toLowerCase());
-                        if (strippedLine.contains(query)) {
-                            matches = true;
-                            break;
-                        }
-                    }
-                }
-                
-                if (matches) {
-                    results.add(new SearchResult(shop, item));
-                }
-            }
-        }
+        // Look up the best matches in the word index of all open shops' listings
+        ListingSearchIndex.Results results = plugin.getShopManager().searchListings(query, SEARCH_RESULTS_SHOWN);
         
         // If no results found
-        if (results.isEmpty()) {
+        if (results.getTotalMatches() == 0) {
             MessageUtils.sendMessage(player, "&cNo items found matching your search.");
             return true;
         }
         
-        // Sort results by shop type and price
-        results.sort(Comparator.comparing((SearchResult r) -> r.shop.isAdminShop() ? 0 : 1)
-                .thenComparing(r -> r.item.getBuyPrice()));
-        
         // Display results to player
-        MessageUtils.sendMessage(player, "&6Found &f" + results.size() + "&6 items matching your search:");
+        MessageUtils.sendMessage(player, "&6Found &f" + results.getTotalMatches() + "&6 items matching your search:");
         
-        // Limit to 10 results to avoid spam
-        int displayed = 0;
-        for (SearchResult result : results) {
-            if (displayed >= 10) {
-                MessageUtils.sendMessage(player, "&7And " + (results.size() - 10) + " more results...");
-                break;
-            }
-            
-            Shop shop = result.shop;
-            ShopItem item = result.item;
+        for (ShopListing result : results.getListings()) {
+            Shop shop = result.getShop();
+            ShopItem item = result.getItem();
             String shopType = shop.isAdminShop() ? "&c[Admin]" : "&a[Player]";
-            String itemName = item.getItem().getType().toString().toLowerCase().replace("_", " ");
-            
-            if (item.getItem().hasItemMeta() && item.getItem().getItemMeta().hasDisplayName()) {
-                itemName = ChatColor.stripColor(item.getItem().getItemMeta().getDisplayName());
-            }
+            String itemName = item.getKey().getDisplayName() != null
+                    ? ChatColor.stripColor(item.getKey().getDisplayName())
+                    : item.getKey().getMaterial().toString().toLowerCase().replace("_", " ");
             
             MessageUtils.sendMessage(player, 
                     shopType + " &f" + shop.getName() + "&8: &f" + itemName + 
-                    " &8- &eBuy: &f" + plugin.getEconomyManager().formatCurrency(item.getBuyPrice(), item.getCurrency()) + 
-                    " &eSell: &f" + plugin.getEconomyManager().formatCurrency(item.getSellPrice(), item.getCurrency()));
-            
-            displayed++;
+                    " &8- &eBuy: &f" + plugin.getEconomyManager().formatCurrency(shop.quoteBuyPrice(item, 1), item.getCurrency()) + 
+                    " &eSell: &f" + plugin.getEconomyManager().formatCurrency(shop.quoteSellPrice(item, 1), item.getCurrency()));
+        }
+        
+        // Only the best results are listed to avoid spam
+        if (results.getTotalMatches() > results.getListings().size()) {
+            MessageUtils.sendMessage(player, "&7And " + (results.getTotalMatches() - results.getListings().size()) + " more results...");
         }
         
         MessageUtils.sendMessage(player, "&eClick on this message to view search results in GUI");
@@ -380,17 +329,4 @@ public class ShopCommand implements CommandExecutor, TabCompleter {
         
         return completions;
     }
-
-    /**
-     * Helper class for search results
-     */
-    private static class SearchResult {
-        private final Shop shop;
-        private final ShopItem item;
-        
-        public SearchResult(Shop shop, ShopItem item) {
-            this.shop = shop;
-            this.item = item;
-        }
-    }
 } 
\ No newline at end of file
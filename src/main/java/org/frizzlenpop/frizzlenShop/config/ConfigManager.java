@@ -162,6 +162,14 @@ public class ConfigManager {
         return config.getInt("logging.retention-period", 30);
     }
 
+    public long getLogFlushInterval() {
+        return config.getLong("logging.flush-interval", 1000L);
+    }
+
+    public long getLogMaxFileSize() {
+        return config.getLong("logging.max-file-size", 10L);
+    }
+
     public String getDatabaseType() {
         return config.getString("database.type", "SQLITE");
     }
@@ -190,6 +198,186 @@ public class ConfigManager {
         return config.getString("database.mysql.table-prefix", "fs_");
     }
 
+    /**
+     * Get the maximum number of transactions the journal holds before callers are throttled
+     *
+     * @return The journal queue capacity
+     */
+    public int getJournalQueueCapacity() {
+        return config.getInt("database.journal.queue-capacity", 10000);
+    }
+
+    /**
+     * Get the maximum number of transactions written per journal batch
+     *
+     * @return The journal batch size
+     */
+    public int getJournalBatchSize() {
+        return config.getInt("database.journal.batch-size", 500);
+    }
+
+    /**
+     * Get how often the transaction journal is flushed
+     *
+     * @return The flush interval in milliseconds
+     */
+    public long getJournalFlushInterval() {
+        return config.getLong("database.journal.flush-interval", 1000L);
+    }
+
+    /**
+     * Get the number of SQLite read connections kept next to the single write connection
+     *
+     * @return The SQLite reader count
+     */
+    public int getPoolSqliteReaders() {
+        return config.getInt("database.pool.sqlite-readers", 3);
+    }
+
+    /**
+     * Get the maximum number of MySQL connections
+     *
+     * @return The MySQL pool size
+     */
+    public int getPoolMysqlSize() {
+        return config.getInt("database.pool.mysql-size", 10);
+    }
+
+    /**
+     * Get how long to wait for a free pooled connection
+     *
+     * @return The connection timeout in milliseconds
+     */
+    public long getPoolConnectionTimeout() {
+        return config.getLong("database.pool.connection-timeout", 10000L);
+    }
+
+    /**
+     * Get how long an unused pooled connection stays open
+     *
+     * @return The idle timeout in milliseconds
+     */
+    public long getPoolIdleTimeout() {
+        return config.getLong("database.pool.idle-timeout", 600000L);
+    }
+
+    /**
+     * Get how long a pooled connection may sit idle before it is validated on borrow
+     *
+     * @return The validation interval in milliseconds
+     */
+    public long getPoolValidationInterval() {
+        return config.getLong("database.pool.validation-interval", 30000L);
+    }
+
+    /**
+     * Get the number of prepared statements cached per pooled connection
+     *
+     * @return The statement cache size
+     */
+    public int getPoolStatementCacheSize() {
+        return config.getInt("database.pool.statement-cache-size", 32);
+    }
+
+    /**
+     * Get the SQLite journal mode
+     *
+     * @return The journal mode, such as WAL or DELETE
+     */
+    public String getSqliteJournalMode() {
+        return config.getString("database.sqlite.journal-mode", "WAL");
+    }
+
+    /**
+     * Get the SQLite synchronous mode
+     *
+     * @return The synchronous mode, such as NORMAL or FULL
+     */
+    public String getSqliteSynchronous() {
+        return config.getString("database.sqlite.synchronous", "NORMAL");
+    }
+
+    /**
+     * Get how much of the SQLite database file is memory-mapped
+     *
+     * @return The memory-mapped size in bytes, 0 to disable
+     */
+    public long getSqliteMmapSize() {
+        return config.getLong("database.sqlite.mmap-size", 268435456L);
+    }
+
+    /**
+     * Get the SQLite page cache size per connection
+     *
+     * @return The cache size in KiB
+     */
+    public int getSqliteCacheSize() {
+        return config.getInt("database.sqlite.cache-size", 16384);
+    }
+
+    /**
+     * Get how long a SQLite connection waits for a lock before failing
+     *
+     * @return The busy timeout in milliseconds
+     */
+    public long getSqliteBusyTimeout() {
+        return config.getLong("database.sqlite.busy-timeout", 5000L);
+    }
+
+    /**
+     * Get the separate SQLite file that holds the transaction history and market data
+     *
+     * @return The file name relative to the plugin folder, or an empty string to keep everything in one file
+     */
+    public String getSqliteHistoryFile() {
+        return config.getString("database.sqlite.history-file", "");
+    }
+
+    /**
+     * Get the number of rows fetched per round trip when loading shops from the database
+     *
+     * @return The load fetch size
+     */
+    public int getLoadFetchSize() {
+        return config.getInt("database.load.fetch-size", 1000);
+    }
+
+    /**
+     * Check if shop data is saved periodically
+     *
+     * @return True if autosave is enabled
+     */
+    public boolean isAutosaveEnabled() {
+        return config.getBoolean("autosave.enabled", true);
+    }
+
+    /**
+     * Get how often shop data is autosaved
+     *
+     * @return The autosave interval in seconds
+     */
+    public long getAutosaveInterval() {
+        return config.getLong("autosave.interval", 300L);
+    }
+
+    /**
+     * Get the maximum time an autosave may spend capturing changed shops on the main thread
+     *
+     * @return The maximum snapshot time in milliseconds
+     */
+    public long getAutosaveMaxSnapshotTime() {
+        return config.getLong("autosave.max-snapshot-time", 25L);
+    }
+
+    /**
+     * Get how long an autosave write may take before a warning is logged
+     *
+     * @return The warning threshold in milliseconds
+     */
+    public long getAutosaveWarnDuration() {
+        return config.getLong("autosave.warn-duration", 5000L);
+    }
+
     /**
      * Set maintenance mode
      *
@@ -250,12 +438,39 @@ public class ConfigManager {
     }
 
     /**
-     * Get the dynamic pricing analysis interval in minutes
+     * Get how often changed market data is written to the database, in seconds
+     * 
+     * @return The market data flush interval in seconds
+     */
+    public int getMarketFlushInterval() {
+        return config.getInt("dynamic_pricing.flush_interval", 30);
+    }
+    
+    /**
+     * Get how often the price book is rebuilt, in seconds. All quotes within one interval use the same prices.
+     * 
+     * @return The price book interval in seconds
+     */
+    public int getPriceBookInterval() {
+        return config.getInt("dynamic_pricing.price_book_interval", 60);
+    }
+    
+    /**
+     * Get how long a calculated dynamic price is reused, in seconds
+     * 
+     * @return The price cache expiry time in seconds
+     */
+    public int getPriceCacheExpiryTime() {
+        return config.getInt("dynamic_pricing.price_cache.expiry_time", 300);
+    }
+    
+    /**
+     * Get the maximum number of cached dynamic prices, for buy and sell prices each
      * 
-     * @return The analysis interval in minutes
+     * @return The maximum price cache size
      */
-    public int getAnalysisInterval() {
-        return config.getInt("dynamic_pricing.analysis_interval", 60);
+    public int getPriceCacheMaxSize() {
+        return config.getInt("dynamic_pricing.price_cache.max_size", 10000);
     }
     
     /**
@@ -268,13 +483,13 @@ public class ConfigManager {
     }
     
     /**
-     * Get the normalization rate for prices
+     * Get the half-life of demand and supply, in hours
      * This determines how quickly prices return to baseline when there's no activity
      * 
-     * @return The normalization rate
+     * @return The decay half-life in hours, 0 to disable decay
      */
-    public double getNormalizationRate() {
-        return config.getDouble("dynamic_pricing.normalization_rate", 0.1);
+    public double getDecayHalfLife() {
+        return config.getDouble("dynamic_pricing.decay_half_life", 24.0);
     }
     
     /**
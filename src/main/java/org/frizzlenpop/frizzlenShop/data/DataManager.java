@@ -6,15 +6,33 @@ import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.configuration.file.YamlConfiguration;
 import org.bukkit.inventory.ItemStack;
+import org.bukkit.scheduler.BukkitRunnable;
+import org.bukkit.scheduler.BukkitTask;
 import org.frizzlenpop.frizzlenShop.FrizzlenShop;
 import org.frizzlenpop.frizzlenShop.shops.AdminShop;
 import org.frizzlenpop.frizzlenShop.shops.PlayerShop;
 import org.frizzlenpop.frizzlenShop.shops.Shop;
 import org.frizzlenpop.frizzlenShop.shops.ShopItem;
+import org.frizzlenpop.frizzlenShop.utils.DatabaseManager;
+import org.frizzlenpop.frizzlenShop.utils.ItemCodec;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 
 /**
@@ -24,7 +42,15 @@ public class DataManager {
 
     private final FrizzlenShop plugin;
     private final File shopFile;
-    private FileConfiguration shopConfig;
+    private final ExecutorService saveExecutor;
+    private final AtomicInteger pendingSaves = new AtomicInteger();
+    private volatile FileConfiguration shopConfig;
+    private boolean databaseSynced;
+    // Shops written in full to the database since startup, while it is not yet synced
+    private final Set<UUID> syncedShops = new HashSet<>();
+    // Shops removed from the shops file but not yet from the database, only used on the save thread
+    private final Set<String> deletedShopIds = new HashSet<>();
+    private BukkitTask autosaveTask;
 
     /**
      * Creates a new data manager
@@ -35,20 +61,125 @@ public class DataManager {
         this.plugin = plugin;
         this.shopFile = new File(plugin.getDataFolder(), "shops.yml");
         this.shopConfig = YamlConfiguration.loadConfiguration(shopFile);
+        this.saveExecutor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "FrizzlenShop-Autosave");
+            thread.setDaemon(true);
+            return thread;
+        });
     }
 
     /**
      * Load data from storage
      */
     public void loadData() {
+        // The file is owned by the save thread while a save is running
+        awaitPendingSaves();
         loadShops();
     }
 
     /**
-     * Save data to storage
+     * Save data to storage and wait for the write to finish
      */
     public void saveData() {
-        saveShops();
+        SaveSnapshot snapshot = captureSnapshot(Long.MAX_VALUE);
+        pendingSaves.incrementAndGet();
+        try {
+            saveExecutor.submit(() -> writeSnapshot(snapshot, false)).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            plugin.getLogger().warning("Interrupted while saving shop data");
+        } catch (ExecutionException | RejectedExecutionException e) {
+            plugin.getLogger().log(Level.SEVERE, "Failed to save shop data", e);
+        } finally {
+            pendingSaves.decrementAndGet();
+        }
+    }
+
+    /**
+     * Start the periodic autosave.
+     * Each run captures the changed shops on the main thread and writes them on a background thread.
+     */
+    public void startAutosave() {
+        if (autosaveTask != null) {
+            autosaveTask.cancel();
+            autosaveTask = null;
+        }
+        
+        if (!plugin.getConfigManager().isAutosaveEnabled()) {
+            plugin.getLogger().info("Autosave is disabled.");
+            return;
+        }
+        
+        long intervalTicks = Math.max(1, plugin.getConfigManager().getAutosaveInterval()) * 20L;
+        autosaveTask = new BukkitRunnable() {
+            @Override
+            public void run() {
+                autosave();
+            }
+        }.runTaskTimer(plugin, intervalTicks, intervalTicks);
+        
+        plugin.getLogger().info("Autosave enabled every " + plugin.getConfigManager().getAutosaveInterval()
+                + " seconds (max snapshot time " + plugin.getConfigManager().getAutosaveMaxSnapshotTime() + "ms)");
+    }
+
+    /**
+     * Stop the autosave, write everything that is still unsaved and stop the save thread
+     */
+    public void shutdown() {
+        if (autosaveTask != null) {
+            autosaveTask.cancel();
+            autosaveTask = null;
+        }
+        
+        saveData();
+        saveExecutor.shutdown();
+        try {
+            if (!saveExecutor.awaitTermination(30, TimeUnit.SECONDS)) {
+                plugin.getLogger().warning("Timed out waiting for the autosave thread to finish");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Run one autosave. Skipped while the previous save is still being written;
+     * the changes stay dirty and are picked up by the next run.
+     */
+    private void autosave() {
+        if (pendingSaves.get() > 0) {
+            plugin.getLogger().warning("Skipping autosave, the previous save is still being written");
+            return;
+        }
+        
+        long budgetNanos = TimeUnit.MILLISECONDS.toNanos(plugin.getConfigManager().getAutosaveMaxSnapshotTime());
+        SaveSnapshot snapshot = captureSnapshot(budgetNanos);
+        
+        pendingSaves.incrementAndGet();
+        try {
+            saveExecutor.execute(() -> {
+                try {
+                    writeSnapshot(snapshot, true);
+                } finally {
+                    pendingSaves.decrementAndGet();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            pendingSaves.decrementAndGet();
+        }
+    }
+
+    /**
+     * Wait until every queued save has been written
+     */
+    private void awaitPendingSaves() {
+        try {
+            saveExecutor.submit(() -> { }).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | RejectedExecutionException e) {
+            // Nothing queued or the executor is stopped
+        }
     }
 
     /**
@@ -57,6 +188,7 @@ public class DataManager {
     private void loadShops() {
         if (!shopFile.exists()) {
             plugin.getLogger().info("No shops file found, creating new one.");
+            loadShopsFromDatabase();
             return;
         }
 
@@ -90,6 +222,7 @@ public class DataManager {
                             // Load stats
                             loadShopStats(shop, shopSection.getConfigurationSection("stats"));
                             
+                            shop.markClean();
                             plugin.getShopManager().registerShop(shop);
                             plugin.getLogger().info("Loaded admin shop: " + name + " with ID: " + shopId);
                         }
@@ -137,6 +270,7 @@ public class DataManager {
                             // Load stats
                             loadShopStats(shop, shopSection.getConfigurationSection("stats"));
                             
+                            shop.markClean();
                             plugin.getShopManager().registerShop(shop);
                             plugin.getLogger().info("Loaded player shop: " + name + " with ID: " + shopId);
                         }
@@ -148,6 +282,32 @@ public class DataManager {
         }
     }
 
+    /**
+     * Recover shops from the database when the shops file is missing.
+     * The file stays the primary store, as the database does not hold sell prices, currencies, tax rates,
+     * stats or player shop expiry; those come back with their defaults.
+     */
+    private void loadShopsFromDatabase() {
+        if (plugin.getDatabaseManager() == null) {
+            return;
+        }
+        
+        List<Shop> shops = plugin.getDatabaseManager().loadShops();
+        if (shops.isEmpty()) {
+            return;
+        }
+        
+        for (Shop shop : shops) {
+            // Not in the shops file yet, so the next save writes the whole shop
+            shop.markDirty();
+            plugin.getShopManager().registerShop(shop);
+        }
+        // Every recovered shop came from the database, so there is nothing to sync back to it
+        databaseSynced = true;
+        plugin.getLogger().warning("Recovered " + shops.size() + " shops from the database because shops.yml is missing. "
+                + "Sell prices, currencies, tax rates and stats were not stored there and have been reset.");
+    }
+
     /**
      * Load shop items from storage
      *
@@ -163,7 +323,9 @@ public class DataManager {
             try {
                 ConfigurationSection itemSection = itemsSection.getConfigurationSection(key);
                 if (itemSection != null) {
-                    ItemStack item = itemSection.getItemStack("item");
+                    // Items are stored in the binary format; older files hold Bukkit-serialized items
+                    String itemData = itemSection.getString("item-data");
+                    ItemStack item = itemData != null ? ItemCodec.fromBase64(itemData) : itemSection.getItemStack("item");
                     double buyPrice = itemSection.getDouble("buy-price");
                     double sellPrice = itemSection.getDouble("sell-price");
                     String currency = itemSection.getString("currency", plugin.getEconomyManager().getDefaultCurrency());
@@ -209,121 +371,296 @@ public class DataManager {
     }
 
     /**
-     * Save shops to storage
+     * Capture the shops that changed since the last save. Runs on the main thread.
+     * Captured shops are marked clean straight away; a failed write marks them dirty again.
+     * <p>
+     * Shops loaded from the file may be missing from the database, so after startup every shop is
+     * captured in full once. That sync is bound by the same budget and spread over as many saves as it needs.
+     * The save that finishes it also prunes shops the database still holds but that no longer exist.
+     *
+     * @param budgetNanos The maximum time to spend capturing; shops left over stay dirty for the next save
+     * @return The snapshot
      */
-    private void saveShops() {
-        // Clear existing shops config
-        shopConfig = new YamlConfiguration();
+    private SaveSnapshot captureSnapshot(long budgetNanos) {
+        long start = System.nanoTime();
+        boolean syncing = !databaseSynced;
         
-        // Save admin shops
-        ConfigurationSection adminShopsSection = shopConfig.createSection("admin-shops");
-        for (Shop shop : plugin.getShopManager().getAdminShops()) {
-            try {
-                ConfigurationSection shopSection = adminShopsSection.createSection(shop.getId().toString());
-                shopSection.set("name", shop.getName());
-                shopSection.set("description", shop.getDescription());
-                shopSection.set("tax-rate", shop.getTaxRate());
-                
-                // Save location
-                serializeLocation(shop.getLocation(), shopSection.createSection("location"));
-                
-                // Save items
-                ConfigurationSection itemsSection = shopSection.createSection("items");
-                saveShopItems(shop, itemsSection);
-                
-                // Save stats
-                ConfigurationSection statsSection = shopSection.createSection("stats");
-                saveShopStats(shop, statsSection);
-                
-                // Save to database as well
-                try {
-                    if (plugin.getDatabaseManager() != null) {
-                        plugin.getDatabaseManager().saveShop(shop);
-                    }
-                } catch (Exception e) {
-                    plugin.getLogger().log(Level.WARNING, "Failed to save shop to database: " + e.getMessage(), e);
+        List<Shop> shops = new ArrayList<>(plugin.getShopManager().getAdminShops());
+        shops.addAll(plugin.getShopManager().getPlayerShops());
+        
+        List<ShopSnapshot> changedShops = new ArrayList<>();
+        Set<String> liveShopIds = new HashSet<>();
+        int deferred = 0;
+        int unsynced = 0;
+        boolean pruneDatabase = false;
+        for (Shop shop : shops) {
+            liveShopIds.add(shop.getId().toString());
+            boolean needsSync = syncing && !syncedShops.contains(shop.getId());
+            if (!needsSync && !hasUnsavedChanges(shop)) {
+                continue;
+            }
+            if (System.nanoTime() - start > budgetNanos) {
+                deferred++;
+                if (needsSync) {
+                    unsynced++;
                 }
-            } catch (Exception e) {
-                plugin.getLogger().log(Level.WARNING, "Failed to save admin shop: " + shop.getName(), e);
+                continue;
+            }
+            changedShops.add(ShopSnapshot.capture(shop, !needsSync));
+            if (needsSync) {
+                syncedShops.add(shop.getId());
             }
+            shop.markClean();
         }
         
-        // Save player shops
-        ConfigurationSection playerShopsSection = shopConfig.createSection("player-shops");
-        for (Shop shop : plugin.getShopManager().getPlayerShops()) {
-            try {
-                ConfigurationSection shopSection = playerShopsSection.createSection(shop.getId().toString());
-                shopSection.set("name", shop.getName());
-                shopSection.set("owner", shop.getOwner().toString());
-                shopSection.set("description", shop.getDescription());
-                shopSection.set("tax-rate", shop.getTaxRate());
-                
-                // Save location
-                serializeLocation(shop.getLocation(), shopSection.createSection("location"));
-                
-                // Save items
-                ConfigurationSection itemsSection = shopSection.createSection("items");
-                saveShopItems(shop, itemsSection);
-                
-                // Save stats
-                ConfigurationSection statsSection = shopSection.createSection("stats");
-                saveShopStats(shop, statsSection);
-                
-                // Save player shop specific fields
-                if (shop instanceof PlayerShop) {
-                    PlayerShop playerShop = (PlayerShop) shop;
-                    shopSection.set("expiration-time", playerShop.getExpirationTime());
-                    shopSection.set("auto-renew", playerShop.isAutoRenewEnabled());
-                }
-                
-                // Save to database as well
-                try {
-                    if (plugin.getDatabaseManager() != null) {
-                        plugin.getDatabaseManager().saveShop(shop);
-                    }
-                } catch (Exception e) {
-                    plugin.getLogger().log(Level.WARNING, "Failed to save shop to database: " + e.getMessage(), e);
-                }
-            } catch (Exception e) {
-                plugin.getLogger().log(Level.WARNING, "Failed to save player shop: " + shop.getName(), e);
-            }
+        if (syncing && unsynced == 0) {
+            databaseSynced = true;
+            syncedShops.clear();
+            // Every shop is in the database now, so whatever else it holds was deleted
+            pruneDatabase = true;
+        }
+        
+        return new SaveSnapshot(changedShops, liveShopIds, deferred, unsynced, pruneDatabase,
+                System.nanoTime() - start);
+    }
+
+    /**
+     * Write a snapshot to the shops file and the database. Runs on the save thread.
+     *
+     * @param snapshot The snapshot to write
+     * @param autosave True if this write comes from the periodic autosave
+     */
+    private void writeSnapshot(SaveSnapshot snapshot, boolean autosave) {
+        long start = System.nanoTime();
+        FileConfiguration config = shopConfig;
+        
+        ConfigurationSection adminShopsSection = getOrCreateSection(config, "admin-shops");
+        ConfigurationSection playerShopsSection = getOrCreateSection(config, "player-shops");
+        
+        // Drop shops that were deleted since the last save
+        boolean removed = removeDeletedShops(adminShopsSection, snapshot.liveShopIds);
+        removed |= removeDeletedShops(playerShopsSection, snapshot.liveShopIds);
+        
+        if (snapshot.shops.isEmpty() && !removed && deletedShopIds.isEmpty() && !snapshot.pruneDatabase) {
+            return;
+        }
+        
+        int itemCount = 0;
+        for (ShopSnapshot shop : snapshot.shops) {
+            saveShop(shop.isAdminShop() ? adminShopsSection : playerShopsSection, shop);
+            itemCount += shop.getItems().size();
         }
         
         // Save to file
+        boolean saved = true;
         try {
-            shopConfig.save(shopFile);
+            writeAtomically(config.saveToString());
         } catch (IOException e) {
             plugin.getLogger().log(Level.SEVERE, "Failed to save shops to file", e);
+            saved = false;
+        }
+        
+        // Save to the database as well, in one batched transaction
+        DatabaseManager databaseManager = plugin.getDatabaseManager();
+        if (databaseManager != null) {
+            if (!snapshot.shops.isEmpty()) {
+                saved &= databaseManager.saveSnapshots(snapshot.shops, true);
+            }
+            // Deleted shops stay pending until the database drops them, or a recovery from it would bring them back
+            if (databaseManager.deleteShops(deletedShopIds)) {
+                deletedShopIds.clear();
+            }
+            if (snapshot.pruneDatabase) {
+                saved &= databaseManager.pruneShops(snapshot.liveShopIds);
+            }
+        }
+        
+        if (!saved) {
+            restoreDirtyFlags(snapshot);
+        }
+        
+        long writeMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        double snapshotMillis = snapshot.captureNanos / 1_000_000.0;
+        if (autosave) {
+            plugin.getLogger().info("Autosaved " + snapshot.shops.size() + " shops (" + itemCount + " items) in "
+                    + writeMillis + "ms, snapshot took " + String.format("%.2f", snapshotMillis) + "ms on the main thread"
+                    + (snapshot.deferred > 0 ? ", " + snapshot.deferred + " shops deferred to the next autosave" : "")
+                    + (snapshot.unsynced > 0 ? " (" + snapshot.unsynced + " not yet synced to the database)" : ""));
+            if (writeMillis > plugin.getConfigManager().getAutosaveWarnDuration()) {
+                plugin.getLogger().warning("Autosave took " + writeMillis + "ms, consider a longer autosave interval");
+            }
+        }
+    }
+
+    /**
+     * Mark the shops in a failed snapshot dirty again so the next save retries them
+     *
+     * @param snapshot The snapshot that failed to save
+     */
+    private void restoreDirtyFlags(SaveSnapshot snapshot) {
+        Runnable restore = () -> {
+            if (snapshot.pruneDatabase) {
+                // Sync every shop again so the next pass can prune
+                databaseSynced = false;
+            }
+            for (ShopSnapshot shopSnapshot : snapshot.shops) {
+                if (shopSnapshot.isComplete()) {
+                    // The shop may still be missing from the database, so sync it again
+                    syncedShops.remove(shopSnapshot.getId());
+                    databaseSynced = false;
+                }
+                Shop shop = plugin.getShopManager().getShop(shopSnapshot.getId());
+                if (shop != null) {
+                    shop.markDirty();
+                }
+            }
+        };
+        
+        if (plugin.isEnabled()) {
+            Bukkit.getScheduler().runTask(plugin, restore);
+        }
+    }
+
+    /**
+     * Write the shops file through a temporary file and an atomic rename,
+     * so the file on disk is never half-written
+     *
+     * @param contents The file contents
+     * @throws IOException If an error occurs
+     */
+    private void writeAtomically(String contents) throws IOException {
+        Path target = shopFile.toPath();
+        Path temp = target.resolveSibling(shopFile.getName() + ".tmp");
+        Files.createDirectories(target.toAbsolutePath().getParent());
+        
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.wrap(contents.getBytes(StandardCharsets.UTF_8));
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        
+        try {
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+    
+    /**
+     * Save a shop snapshot to its configuration section.
+     * A full snapshot rewrites the whole section; otherwise only the stats, if they changed,
+     * and the captured items are rewritten.
+     *
+     * @param shopsSection The admin or player shops section
+     * @param shop         The shop snapshot to save
+     */
+    private void saveShop(ConfigurationSection shopsSection, ShopSnapshot shop) {
+        String key = shop.getId().toString();
+        ConfigurationSection shopSection = shopsSection.getConfigurationSection(key);
+        
+        try {
+            if (!shop.isFullWrite() && shopSection != null) {
+                if (shop.isStatsChanged()) {
+                    saveShopStats(shop, shopSection.createSection("stats"));
+                }
+                ConfigurationSection itemsSection = getOrCreateSection(shopSection, "items");
+                saveShopItems(shop, itemsSection);
+                return;
+            }
+            
+            shopSection = shopsSection.createSection(key);
+            shopSection.set("name", shop.getName());
+            if (!shop.isAdminShop()) {
+                shopSection.set("owner", shop.getOwner().toString());
+            }
+            shopSection.set("description", shop.getDescription());
+            shopSection.set("tax-rate", shop.getTaxRate());
+            
+            // Save location
+            serializeLocation(shop.getLocation(), shopSection.createSection("location"));
+            
+            // Save items
+            ConfigurationSection itemsSection = shopSection.createSection("items");
+            saveShopItems(shop, itemsSection);
+            
+            // Save stats
+            ConfigurationSection statsSection = shopSection.createSection("stats");
+            saveShopStats(shop, statsSection);
+            
+            // Save player shop specific fields
+            if (!shop.isAdminShop()) {
+                shopSection.set("expiration-time", shop.getExpirationTime());
+                shopSection.set("auto-renew", shop.isAutoRenew());
+            }
+        } catch (Exception e) {
+            plugin.getLogger().log(Level.WARNING, "Failed to save " + (shop.isAdminShop() ? "admin" : "player")
+                    + " shop: " + shop.getName(), e);
+        }
+    }
+    
+    /**
+     * Check if a shop, its stats or any of its items changed since the last save.
+     * Items report their first change to the shop, so this never scans the shop's items.
+     *
+     * @param shop The shop to check
+     * @return True if the shop needs saving
+     */
+    private boolean hasUnsavedChanges(Shop shop) {
+        return shop.isDirty() || shop.isStatsDirty() || !shop.getDirtyItems().isEmpty();
+    }
+    
+    /**
+     * Remove sections for shops that no longer exist and queue their deletion from the database
+     *
+     * @param shopsSection The admin or player shops section
+     * @param liveShopIds  The IDs of all registered shops
+     * @return True if any section was removed
+     */
+    private boolean removeDeletedShops(ConfigurationSection shopsSection, Set<String> liveShopIds) {
+        boolean removed = false;
+        for (String key : shopsSection.getKeys(false)) {
+            if (!liveShopIds.contains(key)) {
+                shopsSection.set(key, null);
+                deletedShopIds.add(key);
+                removed = true;
+            }
         }
+        return removed;
+    }
+    
+    /**
+     * Get a child section, creating it if it doesn't exist
+     *
+     * @param parent The parent section
+     * @param path   The child path
+     * @return The child section
+     */
+    private ConfigurationSection getOrCreateSection(ConfigurationSection parent, String path) {
+        ConfigurationSection section = parent.getConfigurationSection(path);
+        return section != null ? section : parent.createSection(path);
     }
 
     /**
      * Save shop items to storage
      *
-     * @param shop        The shop to save items for
+     * @param shop         The shop snapshot to save items for
      * @param itemsSection The configuration section to save items to
      */
-    private void saveShopItems(Shop shop, ConfigurationSection itemsSection) {
-        for (ShopItem shopItem : shop.getItems()) {
+    private void saveShopItems(ShopSnapshot shop, ConfigurationSection itemsSection) {
+        for (ShopSnapshot.ItemSnapshot shopItem : shop.getItems()) {
             try {
                 // Use the item's UUID as the section key for consistency with loading
                 ConfigurationSection itemSection = itemsSection.createSection(shopItem.getId().toString());
-                itemSection.set("item", shopItem.getItem());
+                itemSection.set("item-data", ItemCodec.toBase64(shopItem.getEncodedItem()));
                 itemSection.set("buy-price", shopItem.getBuyPrice());
                 itemSection.set("sell-price", shopItem.getSellPrice());
                 itemSection.set("currency", shopItem.getCurrency());
                 itemSection.set("stock", shopItem.getStock());
                 // Save the shop ID for additional verification
                 itemSection.set("shop-id", shopItem.getShopId().toString());
-                
-                // Save to database as well to ensure consistency
-                try {
-                    if (plugin.getDatabaseManager() != null) {
-                        plugin.getDatabaseManager().saveShopItem(shopItem);
-                    }
-                } catch (Exception e) {
-                    plugin.getLogger().log(Level.WARNING, "Failed to save shop item to database: " + e.getMessage(), e);
-                }
             } catch (Exception e) {
                 plugin.getLogger().log(Level.WARNING, "Failed to save shop item", e);
             }
@@ -333,10 +670,10 @@ public class DataManager {
     /**
      * Save shop stats to storage
      *
-     * @param shop        The shop to save stats for
+     * @param shop        The shop snapshot to save stats for
      * @param statsSection The configuration section to save stats to
      */
-    private void saveShopStats(Shop shop, ConfigurationSection statsSection) {
+    private void saveShopStats(ShopSnapshot shop, ConfigurationSection statsSection) {
         Map<String, Double> stats = shop.getStats();
         for (Map.Entry<String, Double> entry : stats.entrySet()) {
             statsSection.set(entry.getKey(), entry.getValue());
@@ -384,4 +721,26 @@ public class DataManager {
         
         return new Location(Bukkit.getWorld(worldName), x, y, z, yaw, pitch);
     }
-} 
\ No newline at end of file
+
+    /**
+     * The shops captured for one save
+     */
+    private static final class SaveSnapshot {
+        private final List<ShopSnapshot> shops;
+        private final Set<String> liveShopIds;
+        private final int deferred;
+        private final int unsynced;
+        private final boolean pruneDatabase;
+        private final long captureNanos;
+
+        private SaveSnapshot(List<ShopSnapshot> shops, Set<String> liveShopIds, int deferred, int unsynced,
+                             boolean pruneDatabase, long captureNanos) {
+            this.shops = shops;
+            this.liveShopIds = liveShopIds;
+            this.deferred = deferred;
+            this.unsynced = unsynced;
+            this.pruneDatabase = pruneDatabase;
+            this.captureNanos = captureNanos;
+        }
+    }
+}
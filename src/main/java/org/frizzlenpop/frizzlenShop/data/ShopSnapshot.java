@@ -0,0 +1,234 @@
+package org.frizzlenpop.frizzlenShop.data;
+
+import org.bukkit.Location;
+import org.bukkit.inventory.ItemStack;
+import org.frizzlenpop.frizzlenShop.shops.PlayerShop;
+import org.frizzlenpop.frizzlenShop.shops.Shop;
+import org.frizzlenpop.frizzlenShop.shops.ShopItem;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * An immutable copy of the persisted state of a shop.
+ * Snapshots are taken on the main thread so they can be written to storage from another thread.
+ */
+public final class ShopSnapshot {
+
+    private final UUID id;
+    private final boolean adminShop;
+    private final String name;
+    private final UUID owner;
+    private final Location location;
+    private final String description;
+    private final double taxRate;
+    private final boolean open;
+    private final Map<String, Double> stats;
+    private final long expirationTime;
+    private final boolean autoRenew;
+    private final boolean fullWrite;
+    private final boolean complete;
+    private final boolean statsChanged;
+    private final List<ItemSnapshot> items;
+
+    private ShopSnapshot(Shop shop, boolean fullWrite, boolean complete, boolean statsChanged, List<ItemSnapshot> items) {
+        this.id = shop.getId();
+        this.adminShop = shop.isAdminShop();
+        this.name = shop.getName();
+        this.owner = shop.getOwner();
+        this.location = shop.getLocation() != null ? shop.getLocation().clone() : null;
+        this.description = shop.getDescription();
+        this.taxRate = shop.getTaxRate();
+        this.open = shop.isOpen();
+        this.stats = Collections.unmodifiableMap(new HashMap<>(shop.getStats()));
+        if (shop instanceof PlayerShop) {
+            PlayerShop playerShop = (PlayerShop) shop;
+            this.expirationTime = playerShop.getExpirationTime();
+            this.autoRenew = playerShop.isAutoRenewEnabled();
+        } else {
+            this.expirationTime = -1;
+            this.autoRenew = false;
+        }
+        this.fullWrite = fullWrite;
+        this.complete = complete;
+        this.statsChanged = statsChanged;
+        this.items = Collections.unmodifiableList(items);
+    }
+
+    /**
+     * Capture a shop
+     *
+     * @param shop        The shop to capture
+     * @param changedOnly True to capture only the stats and dirty items of a shop whose own state is unchanged
+     * @return The snapshot
+     */
+    public static ShopSnapshot capture(Shop shop, boolean changedOnly) {
+        boolean fullWrite = !changedOnly || shop.isDirty();
+        Collection<ShopItem> captured = fullWrite ? shop.getItems() : shop.getDirtyItems();
+        List<ItemSnapshot> items = new ArrayList<>(captured.size());
+        for (ShopItem shopItem : captured) {
+            items.add(new ItemSnapshot(shopItem, shop.getId()));
+        }
+        return new ShopSnapshot(shop, fullWrite, !changedOnly, fullWrite || shop.isStatsDirty(), items);
+    }
+
+    public UUID getId() {
+        return id;
+    }
+
+    public boolean isAdminShop() {
+        return adminShop;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public UUID getOwner() {
+        return owner;
+    }
+
+    public Location getLocation() {
+        return location;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public double getTaxRate() {
+        return taxRate;
+    }
+
+    public boolean isOpen() {
+        return open;
+    }
+
+    public Map<String, Double> getStats() {
+        return stats;
+    }
+
+    public long getExpirationTime() {
+        return expirationTime;
+    }
+
+    public boolean isAutoRenew() {
+        return autoRenew;
+    }
+
+    /**
+     * Check if the shop's own state changed, meaning the whole shop and all of its items were captured.
+     * Otherwise only the changed items were captured.
+     *
+     * @return True if this is a full snapshot
+     */
+    public boolean isFullWrite() {
+        return fullWrite;
+    }
+
+    /**
+     * Check if the shop was captured with every item, changed or not, because storage may be missing it.
+     * Storage should then write all items rather than only the dirty ones.
+     *
+     * @return True if every item must be written
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * Check if the stats need writing, either because they changed or because this is a full snapshot
+     *
+     * @return True if the stats should be written
+     */
+    public boolean isStatsChanged() {
+        return statsChanged;
+    }
+
+    public List<ItemSnapshot> getItems() {
+        return items;
+    }
+
+    /**
+     * An immutable copy of the persisted state of a shop item
+     */
+    public static final class ItemSnapshot {
+        private final UUID id;
+        private final UUID shopId;
+        private final ItemStack item;
+        private final byte[] encodedItem;
+        private final double buyPrice;
+        private final double sellPrice;
+        private final String currency;
+        private final int stock;
+        private final boolean dirty;
+
+        private ItemSnapshot(ShopItem shopItem, UUID shopId) {
+            this.id = shopItem.getId();
+            this.shopId = shopId;
+            this.item = shopItem.getItem();
+            this.encodedItem = shopItem.getEncodedItem();
+            this.buyPrice = shopItem.getBuyPrice();
+            this.sellPrice = shopItem.getSellPrice();
+            this.currency = shopItem.getCurrency();
+            this.stock = shopItem.getStock();
+            this.dirty = shopItem.isDirty();
+        }
+
+        public UUID getId() {
+            return id;
+        }
+
+        public UUID getShopId() {
+            return shopId;
+        }
+
+        /**
+         * Get a copy of the item
+         *
+         * @return The item
+         */
+        public ItemStack getItem() {
+            return item.clone();
+        }
+
+        /**
+         * Get the item in the binary storage format
+         *
+         * @return The encoded item, which must not be modified
+         */
+        public byte[] getEncodedItem() {
+            return encodedItem;
+        }
+
+        public double getBuyPrice() {
+            return buyPrice;
+        }
+
+        public double getSellPrice() {
+            return sellPrice;
+        }
+
+        public String getCurrency() {
+            return currency;
+        }
+
+        public int getStock() {
+            return stock;
+        }
+
+        /**
+         * Check if the item had unsaved changes when it was captured
+         *
+         * @return True if the item was dirty
+         */
+        public boolean isDirty() {
+            return dirty;
+        }
+    }
+}
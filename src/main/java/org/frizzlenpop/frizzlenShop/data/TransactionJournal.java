@@ -0,0 +1,383 @@
+package org.frizzlenpop.frizzlenShop.data;
+
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.ItemStack;
+import org.frizzlenpop.frizzlenShop.FrizzlenShop;
+import org.frizzlenpop.frizzlenShop.shops.Shop;
+import org.frizzlenpop.frizzlenShop.shops.ShopItem;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+
+/**
+ * Write-behind journal for shop transactions.
+ * Buys and sells are queued in memory on the calling thread and a background
+ * writer persists them in batches, so the main thread never waits on JDBC or file I/O.
+ * A batch the database rejects is kept and written again on a later flush, and it only
+ * reaches the market analyzer and the log files once it has been stored.
+ * Failed batches and transactions that find the queue full wait in a backlog of the same
+ * capacity; once that is full too, transactions are dropped, counted and warned about.
+ */
+public class TransactionJournal {
+
+    // How often each remaining batch is tried when the journal shuts down
+    private static final int SHUTDOWN_ATTEMPTS = 3;
+    // How often dropped transactions are warned about at most
+    private static final long DROP_WARNING_INTERVAL_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    private final FrizzlenShop plugin;
+    private final BlockingQueue<Entry> queue;
+    private final BlockingQueue<Entry> backlog;
+    private final AtomicLong dropped = new AtomicLong();
+    private volatile long lastDropWarning;
+    private final int batchSize;
+    private final long flushIntervalMillis;
+    private final Thread writerThread;
+    private volatile boolean running;
+
+    /**
+     * Creates a new transaction journal and starts its writer thread
+     *
+     * @param plugin The plugin instance
+     */
+    public TransactionJournal(FrizzlenShop plugin) {
+        this.plugin = plugin;
+        int capacity = Math.max(1, plugin.getConfigManager().getJournalQueueCapacity());
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.backlog = new ArrayBlockingQueue<>(capacity);
+        this.batchSize = Math.max(1, plugin.getConfigManager().getJournalBatchSize());
+        this.flushIntervalMillis = Math.max(50L, plugin.getConfigManager().getJournalFlushInterval());
+        this.running = true;
+
+        this.writerThread = new Thread(this::runWriter, "FrizzlenShop-TransactionJournal");
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+
+        plugin.getLogger().info("Transaction journal started (capacity: " + queue.remainingCapacity()
+                + ", batch size: " + batchSize + ", flush interval: " + flushIntervalMillis + "ms)");
+    }
+
+    /**
+     * Queue a completed transaction for persistence, market analysis and logging
+     *
+     * @param player   The player involved in the transaction
+     * @param shop     The shop involved in the transaction
+     * @param shopItem The shop item that was transacted
+     * @param item     The item stack as presented to the player
+     * @param amount   The amount of the item
+     * @param price    The total price of the transaction
+     * @param currency The currency used
+     * @param isBuy    True if the player bought from the shop, false if they sold to it
+     */
+    public void record(Player player, Shop shop, ShopItem shopItem, ItemStack item, int amount,
+                       double price, String currency, boolean isBuy) {
+        // The item may be a live inventory slot that is cleared right after the trade, so read it here
+        Entry entry = new Entry(shop.getId(), shop.getName(), player.getUniqueId(), player.getName(),
+                shopItem, getItemName(item), amount, price, currency, isBuy, System.currentTimeMillis());
+
+        if (!running) {
+            // Nothing drains the journal after shutdown, and this thread must not wait on the database
+            drop(1, "the journal is shut down");
+            return;
+        }
+
+        // Never block the caller: overflow into the backlog and drop only once that is full too
+        if (!queue.offer(entry) && !backlog.offer(entry)) {
+            drop(1, "the journal is full");
+        }
+    }
+
+    /**
+     * Get the number of transactions waiting to be written
+     *
+     * @return The number of pending transactions, including those waiting in the backlog
+     */
+    public int getPendingCount() {
+        return queue.size() + backlog.size();
+    }
+
+    /**
+     * Get the number of transactions that could not be kept and were never written
+     *
+     * @return The number of dropped transactions since the journal started
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * Stop the writer thread and drain every pending transaction.
+     * Blocks until the queue is empty.
+     */
+    public void shutdown() {
+        running = false;
+        try {
+            // The writer notices the flag within one flush interval and finishes its current batch
+            writerThread.join(flushIntervalMillis + TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        // Drain anything the writer didn't get to, the backlog first
+        int drained = 0;
+        int lost = 0;
+        List<Entry> batch = new ArrayList<>(batchSize);
+        while (fillBatch(batch)) {
+            drained += batch.size();
+            boolean written = false;
+            for (int attempt = 0; attempt < SHUTDOWN_ATTEMPTS && !written; attempt++) {
+                written = writeBatch(batch);
+            }
+            if (!written) {
+                lost += batch.size();
+            }
+            batch.clear();
+        }
+
+        if (drained > 0) {
+            plugin.getLogger().info("Drained " + drained + " pending transactions from the journal");
+        }
+        if (lost > 0) {
+            plugin.getLogger().severe("Could not write " + lost + " transactions to the database before shutdown, they are lost");
+        }
+        if (dropped.get() > 0) {
+            plugin.getLogger().severe(dropped.get() + " transactions were dropped while the journal was running");
+        }
+    }
+
+    /**
+     * Writer loop: wait for the first entry or the flush interval, then write the backlog
+     * and drain the queue up to a batch
+     */
+    private void runWriter() {
+        List<Entry> batch = new ArrayList<>(batchSize);
+
+        while (running) {
+            try {
+                if (backlog.isEmpty()) {
+                    Entry first = queue.poll(flushIntervalMillis, TimeUnit.MILLISECONDS);
+                    if (first == null) {
+                        continue;
+                    }
+                    batch.add(first);
+                }
+
+                fillBatch(batch);
+                if (!writeOrRetry(batch)) {
+                    // The database is failing, give it one flush interval before trying again
+                    Thread.sleep(flushIntervalMillis);
+                }
+                batch.clear();
+            } catch (InterruptedException e) {
+                // Leave whatever was taken for shutdown to write
+                keep(batch);
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Fill a batch with transactions from the backlog, then with queued transactions
+     *
+     * @param batch The batch to fill
+     * @return True if the batch holds any transactions
+     */
+    private boolean fillBatch(List<Entry> batch) {
+        backlog.drainTo(batch, batchSize - batch.size());
+        if (batch.size() < batchSize) {
+            queue.drainTo(batch, batchSize - batch.size());
+        }
+        return !batch.isEmpty();
+    }
+
+    /**
+     * Write a batch, keeping it to be retried on a later flush if the database rejects it
+     *
+     * @param batch The transactions to write
+     * @return True if the batch was written
+     */
+    private boolean writeOrRetry(List<Entry> batch) {
+        if (writeBatch(batch)) {
+            return true;
+        }
+        int kept = keep(batch);
+        plugin.getLogger().warning("Keeping " + kept + " transactions to retry on the next flush ("
+                + backlog.size() + " waiting)");
+        return false;
+    }
+
+    /**
+     * Put transactions in the backlog, dropping those that don't fit
+     *
+     * @param entries The transactions to keep
+     * @return The number of transactions kept
+     */
+    private int keep(List<Entry> entries) {
+        int kept = 0;
+        for (Entry entry : entries) {
+            if (backlog.offer(entry)) {
+                kept++;
+            }
+        }
+        if (kept < entries.size()) {
+            drop(entries.size() - kept, "the backlog is full");
+        }
+        return kept;
+    }
+
+    /**
+     * Count dropped transactions and warn about them, at most once per interval
+     *
+     * @param count  The number of transactions dropped
+     * @param reason Why they were dropped
+     */
+    private void drop(int count, String reason) {
+        long total = dropped.addAndGet(count);
+        long now = System.currentTimeMillis();
+        if (now - lastDropWarning >= DROP_WARNING_INTERVAL_MILLIS) {
+            lastDropWarning = now;
+            plugin.getLogger().warning("Dropped " + count + " transactions because " + reason + " ("
+                    + total + " dropped in total)");
+        }
+    }
+
+    /**
+     * Write a batch of transactions to the database, then to the market analyzer and log files.
+     * Nothing after the database insert runs if it fails, so a retried batch is analyzed and logged once.
+     *
+     * @param batch The transactions to write
+     * @return False if the database insert failed
+     */
+    private boolean writeBatch(List<Entry> batch) {
+        if (plugin.getDatabaseManager() != null && !plugin.getDatabaseManager().recordTransactions(batch)) {
+            return false;
+        }
+
+        try {
+            for (Entry entry : batch) {
+                if (plugin.getDynamicPricingManager() != null) {
+                    plugin.getDynamicPricingManager().recordTransaction(entry.getShopItem(), entry.getAmount(), entry.isBuy(),
+                            entry.getPrice());
+                }
+
+                plugin.getLogManager().logTransaction(entry.getPlayerName(), entry.getPlayerId(), entry.getShopName(),
+                        entry.getShopId(), entry.getItemName(), entry.getAmount(), entry.getPrice(), entry.getCurrency(),
+                        entry.isBuy());
+            }
+        } catch (Exception e) {
+            plugin.getLogger().log(Level.SEVERE, "Failed to analyze or log " + batch.size() + " journaled transactions", e);
+        }
+        return true;
+    }
+
+    /**
+     * Get the name of an item for logging
+     *
+     * @param item The item
+     * @return The display name, or the material name if the item has none
+     */
+    private static String getItemName(ItemStack item) {
+        if (item.hasItemMeta() && item.getItemMeta().hasDisplayName()) {
+            return item.getItemMeta().getDisplayName();
+        }
+        return item.getType().name();
+    }
+
+    /**
+     * A single journaled transaction
+     */
+    public static class Entry {
+        private final UUID shopId;
+        private final String shopName;
+        private final UUID playerId;
+        private final String playerName;
+        private final ShopItem shopItem;
+        private final String itemName;
+        private final int amount;
+        private final double price;
+        private final String currency;
+        private final boolean buy;
+        private final long timestamp;
+
+        /**
+         * Creates a new journal entry
+         *
+         * @param shopId The shop ID
+         * @param shopName The shop name
+         * @param playerId The player ID
+         * @param playerName The player name
+         * @param shopItem The shop item that was transacted
+         * @param itemName The name of the item as presented to the player
+         * @param amount The amount of the item
+         * @param price The total price
+         * @param currency The currency used
+         * @param buy True if the player bought from the shop
+         * @param timestamp The time of the transaction in milliseconds
+         */
+        public Entry(UUID shopId, String shopName, UUID playerId, String playerName, ShopItem shopItem,
+                     String itemName, int amount, double price, String currency, boolean buy, long timestamp) {
+            this.shopId = shopId;
+            this.shopName = shopName;
+            this.playerId = playerId;
+            this.playerName = playerName;
+            this.shopItem = shopItem;
+            this.itemName = itemName;
+            this.amount = amount;
+            this.price = price;
+            this.currency = currency;
+            this.buy = buy;
+            this.timestamp = timestamp;
+        }
+
+        public UUID getShopId() {
+            return shopId;
+        }
+
+        public String getShopName() {
+            return shopName;
+        }
+
+        public UUID getPlayerId() {
+            return playerId;
+        }
+
+        public String getPlayerName() {
+            return playerName;
+        }
+
+        public ShopItem getShopItem() {
+            return shopItem;
+        }
+
+        public String getItemName() {
+            return itemName;
+        }
+
+        public int getAmount() {
+            return amount;
+        }
+
+        public double getPrice() {
+            return price;
+        }
+
+        public String getCurrency() {
+            return currency;
+        }
+
+        public boolean isBuy() {
+            return buy;
+        }
+
+        public long getTimestamp() {
+            return timestamp;
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package org.frizzlenpop.frizzlenShop.economy;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Encodes a block of price candles into a compact byte array.
+ * Prices are stored as fixed-point integers, each candle relative to the previous one: the gap in periods since
+ * the previous candle, the open as a change from the previous close, the close as a change from the open, and
+ * the high and low as their distance outside the open and close. All of these are small numbers, so they are
+ * written as variable-length integers, signed values zigzag-encoded first.
+ */
+final class CandleCodec {
+
+    // Prices are stored in units of 1/10000
+    private static final double PRICE_SCALE = 10_000.0;
+
+    private CandleCodec() {
+    }
+
+    /**
+     * Encode a block of candles
+     *
+     * @param candles The candles, oldest first, all starting at or after the block start
+     * @param blockStart The start time of the block
+     * @param periodMillis The length of one candle period
+     * @return The encoded block
+     */
+    static byte[] encode(List<PriceHistory.Candle> candles, long blockStart, long periodMillis) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(8 + candles.size() * 8);
+        writeVarLong(out, candles.size());
+
+        long previousPeriod = -1;
+        long previousClose = 0;
+        for (PriceHistory.Candle candle : candles) {
+            long period = (candle.getStart() - blockStart) / periodMillis;
+            long open = toFixed(candle.getOpen());
+            long high = toFixed(candle.getHigh());
+            long low = toFixed(candle.getLow());
+            long close = toFixed(candle.getClose());
+
+            writeVarLong(out, period - previousPeriod - 1);
+            writeVarLong(out, zigzag(open - previousClose));
+            writeVarLong(out, zigzag(close - open));
+            writeVarLong(out, Math.max(0, high - Math.max(open, close)));
+            writeVarLong(out, Math.max(0, Math.min(open, close) - low));
+            writeVarLong(out, candle.getVolume());
+
+            previousPeriod = period;
+            previousClose = close;
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Decode a block of candles
+     *
+     * @param data The encoded block
+     * @param blockStart The start time of the block
+     * @param periodMillis The length of one candle period
+     * @return The candles, oldest first
+     */
+    static List<PriceHistory.Candle> decode(byte[] data, long blockStart, long periodMillis) {
+        int[] position = {0};
+        int count = (int) readVarLong(data, position);
+        List<PriceHistory.Candle> candles = new ArrayList<>(count);
+
+        long period = -1;
+        long close = 0;
+        for (int i = 0; i < count; i++) {
+            period += readVarLong(data, position) + 1;
+            long open = close + unzigzag(readVarLong(data, position));
+            close = open + unzigzag(readVarLong(data, position));
+            long high = Math.max(open, close) + readVarLong(data, position);
+            long low = Math.min(open, close) - readVarLong(data, position);
+            long volume = readVarLong(data, position);
+
+            candles.add(new PriceHistory.Candle(blockStart + period * periodMillis, fromFixed(open), fromFixed(high),
+                    fromFixed(low), fromFixed(close), volume));
+        }
+        return candles;
+    }
+
+    private static long toFixed(double price) {
+        return Math.round(price * PRICE_SCALE);
+    }
+
+    private static double fromFixed(long value) {
+        return value / PRICE_SCALE;
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static void writeVarLong(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long readVarLong(byte[] data, int[] position) {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = data[position[0]++];
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+}
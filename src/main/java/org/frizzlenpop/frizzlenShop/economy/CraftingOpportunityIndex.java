@@ -0,0 +1,113 @@
+package org.frizzlenpop.frizzlenShop.economy;
+
+import org.bukkit.Material;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Keeps the profitable crafting opportunities ranked by profit margin, highest first.
+ * Entries are replaced one material at a time whenever its craft cost or market value changes,
+ * so reading the top of the ranking never calculates any prices.
+ */
+public final class CraftingOpportunityIndex {
+
+    private static final Comparator<Opportunity> RANKING = Comparator
+            .comparingDouble(Opportunity::getProfitMargin).reversed()
+            .thenComparingInt(opportunity -> opportunity.getMaterial().ordinal());
+
+    private final NavigableSet<Opportunity> ranking = new ConcurrentSkipListSet<>(RANKING);
+    private final AtomicReferenceArray<Opportunity> entries = new AtomicReferenceArray<>(Material.values().length);
+
+    /**
+     * Update the opportunity of crafting a material
+     *
+     * @param material The crafted item
+     * @param craftCost The cost of crafting one item, including the crafting fee
+     * @param marketValue The market value of one item
+     */
+    void update(Material material, double craftCost, double marketValue) {
+        Opportunity opportunity = null;
+        if (craftCost > 0 && marketValue > craftCost) {
+            opportunity = new Opportunity(material, craftCost, marketValue);
+        }
+
+        Opportunity previous = entries.getAndSet(material.ordinal(), opportunity);
+        if (previous != null) {
+            ranking.remove(previous);
+        }
+        if (opportunity != null) {
+            ranking.add(opportunity);
+        }
+    }
+
+    /**
+     * Get the most profitable crafting opportunities
+     *
+     * @param limit The maximum number of opportunities
+     * @return The opportunities, most profitable first
+     */
+    public List<Opportunity> getTop(int limit) {
+        List<Opportunity> top = new ArrayList<>(Math.min(limit, 64));
+        Iterator<Opportunity> iterator = ranking.iterator();
+        while (top.size() < limit && iterator.hasNext()) {
+            top.add(iterator.next());
+        }
+        return top;
+    }
+
+    /**
+     * Get the current opportunity of crafting a material
+     *
+     * @param material The crafted item
+     * @return The opportunity, or null if crafting the material is not profitable
+     */
+    public Opportunity get(Material material) {
+        return entries.get(material.ordinal());
+    }
+
+    public int size() {
+        return ranking.size();
+    }
+
+    /**
+     * The profit of crafting one material at the prices it was ranked with
+     */
+    public static final class Opportunity {
+        private final Material material;
+        private final double craftCost;
+        private final double marketValue;
+        private final double profitMargin;
+
+        private Opportunity(Material material, double craftCost, double marketValue) {
+            this.material = material;
+            this.craftCost = craftCost;
+            this.marketValue = marketValue;
+            this.profitMargin = (marketValue - craftCost) / craftCost * 100.0;
+        }
+
+        public Material getMaterial() {
+            return material;
+        }
+
+        public double getCraftCost() {
+            return craftCost;
+        }
+
+        public double getMarketValue() {
+            return marketValue;
+        }
+
+        /**
+         * @return The profit as a percentage of the craft cost
+         */
+        public double getProfitMargin() {
+            return profitMargin;
+        }
+    }
+}
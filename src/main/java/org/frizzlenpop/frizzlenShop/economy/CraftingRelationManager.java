@@ -1,217 +1,521 @@
 package org.frizzlenpop.frizzlenShop.economy;
 
+import org.bukkit.Bukkit;
 import org.bukkit.Material;
+import org.bukkit.inventory.CookingRecipe;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.inventory.Recipe;
+import org.bukkit.inventory.RecipeChoice;
 import org.bukkit.inventory.ShapedRecipe;
 import org.bukkit.inventory.ShapelessRecipe;
 import org.frizzlenpop.frizzlenShop.FrizzlenShop;
 
 import java.util.*;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.logging.Level;
 
 /**
  * Manages relationships between crafted items and their components
- * for more realistic economic simulation
+ * for more realistic economic simulation.
+ * <p>
+ * The relationships form a graph built once at startup from the server's shaped, shapeless and cooking
+ * recipes. Every crafted item keeps exactly one recipe, chosen so that the graph has no cycles, and the
+ * materials are kept in topological order (components before the items made from them). Craft costs are
+ * memoized per material and recomputed bottom-up, and when a component's price moves only the items
+ * that depend on it are recomputed.
  */
 public class CraftingRelationManager {
-    
+
+    private static final Material[] MATERIALS = Material.values();
+
     private final FrizzlenShop plugin;
-    
-    // Maps crafted items to their component materials and quantities
+
+    // Maps crafted items to their component materials and quantities per craft
     private final Map<Material, Map<Material, Integer>> craftingComponents;
-    
+
+    // Number of items one craft produces
+    private final int[] resultAmounts = new int[MATERIALS.length];
+
     // Maps components to all items they're used in
     private final Map<Material, Set<Material>> componentUsages;
-    
+
+    // Crafted items, components first
+    private final List<Material> topologicalOrder;
+    private final int[] topologicalIndex = new int[MATERIALS.length];
+
+    // Memoized costs per unit, as raw double bits indexed by material ordinal
+    private final AtomicLongArray craftCosts = new AtomicLongArray(MATERIALS.length);
+    private final AtomicLongArray acquisitionCosts = new AtomicLongArray(MATERIALS.length);
+
+    // Profitable crafted items, ranked by profit margin
+    private final CraftingOpportunityIndex opportunityIndex = new CraftingOpportunityIndex();
+
     // Component demand multiplier (how much component prices are affected by crafted item demand)
     private double componentDemandMultiplier = 0.4; // Default value
-    
+
     /**
      * Creates a new crafting relation manager
-     * 
+     *
      * @param plugin The plugin instance
      */
     public CraftingRelationManager(FrizzlenShop plugin) {
         this.plugin = plugin;
-        this.craftingComponents = new HashMap<>();
-        this.componentUsages = new HashMap<>();
-        
+
         // Load component relationships
-        loadDefaultRecipes();
-        
-        // Apply custom crafting relationships from config
-        loadCustomRecipes();
-        
+        Map<Material, List<RecipeEdge>> candidates = loadServerRecipes();
+
+        // Keep one recipe per item so the graph has no cycles
+        Map<Material, RecipeEdge> chosen = chooseRecipes(candidates);
+
+        Map<Material, Map<Material, Integer>> components = new EnumMap<>(Material.class);
+        Map<Material, Set<Material>> usages = new EnumMap<>(Material.class);
+        for (Map.Entry<Material, RecipeEdge> entry : chosen.entrySet()) {
+            RecipeEdge recipe = entry.getValue();
+            components.put(entry.getKey(), Collections.unmodifiableMap(recipe.components));
+            resultAmounts[entry.getKey().ordinal()] = recipe.amount;
+            for (Material component : recipe.components.keySet()) {
+                usages.computeIfAbsent(component, k -> EnumSet.noneOf(Material.class)).add(entry.getKey());
+            }
+        }
+        usages.replaceAll((component, items) -> Collections.unmodifiableSet(items));
+        this.craftingComponents = Collections.unmodifiableMap(components);
+        this.componentUsages = Collections.unmodifiableMap(usages);
+
+        // Sort crafted items by recipe depth, which puts every component before the items made from it
+        List<Material> order = new ArrayList<>(chosen.keySet());
+        order.sort(Comparator.comparingInt(material -> chosen.get(material).depth));
+        this.topologicalOrder = Collections.unmodifiableList(order);
+        Arrays.fill(topologicalIndex, -1);
+        for (int i = 0; i < order.size(); i++) {
+            topologicalIndex[order.get(i).ordinal()] = i;
+        }
+
+        recalculateCosts();
+
         plugin.getLogger().info("Loaded " + craftingComponents.size() + " crafting relationships for dynamic pricing");
     }
-    
-    /**
-     * Loads default Minecraft recipes into the relationship maps
-     */
-    private void loadDefaultRecipes() {
-        // Diamond Pickaxe (3 Diamonds + 2 Sticks)
-        Map<Material, Integer> pickaxeComponents = new HashMap<>();
-        pickaxeComponents.put(Material.DIAMOND, 3);
-        pickaxeComponents.put(Material.STICK, 2);
-        craftingComponents.put(Material.DIAMOND_PICKAXE, pickaxeComponents);
-        
-        // Diamond Sword (2 Diamonds + 1 Stick)
-        Map<Material, Integer> swordComponents = new HashMap<>();
-        swordComponents.put(Material.DIAMOND, 2);
-        swordComponents.put(Material.STICK, 1);
-        craftingComponents.put(Material.DIAMOND_SWORD, swordComponents);
-        
-        // Diamond Axe (3 Diamonds + 2 Sticks)
-        Map<Material, Integer> axeComponents = new HashMap<>();
-        axeComponents.put(Material.DIAMOND, 3);
-        axeComponents.put(Material.STICK, 2);
-        craftingComponents.put(Material.DIAMOND_AXE, axeComponents);
-        
-        // Diamond Shovel (1 Diamond + 2 Sticks)
-        Map<Material, Integer> shovelComponents = new HashMap<>();
-        shovelComponents.put(Material.DIAMOND, 1);
-        shovelComponents.put(Material.STICK, 2);
-        craftingComponents.put(Material.DIAMOND_SHOVEL, shovelComponents);
-        
-        // Diamond Hoe (2 Diamonds + 2 Sticks)
-        Map<Material, Integer> hoeComponents = new HashMap<>();
-        hoeComponents.put(Material.DIAMOND, 2);
-        hoeComponents.put(Material.STICK, 2);
-        craftingComponents.put(Material.DIAMOND_HOE, hoeComponents);
-        
-        // Diamond Helmet (5 Diamonds)
-        Map<Material, Integer> helmetComponents = new HashMap<>();
-        helmetComponents.put(Material.DIAMOND, 5);
-        craftingComponents.put(Material.DIAMOND_HELMET, helmetComponents);
-        
-        // Diamond Chestplate (8 Diamonds)
-        Map<Material, Integer> chestplateComponents = new HashMap<>();
-        chestplateComponents.put(Material.DIAMOND, 8);
-        craftingComponents.put(Material.DIAMOND_CHESTPLATE, chestplateComponents);
-        
-        // Diamond Leggings (7 Diamonds)
-        Map<Material, Integer> leggingsComponents = new HashMap<>();
-        leggingsComponents.put(Material.DIAMOND, 7);
-        craftingComponents.put(Material.DIAMOND_LEGGINGS, leggingsComponents);
-        
-        // Diamond Boots (4 Diamonds)
-        Map<Material, Integer> bootsComponents = new HashMap<>();
-        bootsComponents.put(Material.DIAMOND, 4);
-        craftingComponents.put(Material.DIAMOND_BOOTS, bootsComponents);
-        
-        // Add more recipes as needed
-        
-        // Build the reverse mapping (components to crafted items)
-        buildComponentUsageMap();
-    }
-    
-    /**
-     * Builds the component usage map from the crafting components map
-     */
-    private void buildComponentUsageMap() {
-        componentUsages.clear();
-        
-        for (Map.Entry<Material, Map<Material, Integer>> entry : craftingComponents.entrySet()) {
-            Material craftedItem = entry.getKey();
-            Map<Material, Integer> components = entry.getValue();
-            
-            for (Material component : components.keySet()) {
-                componentUsages.computeIfAbsent(component, k -> new HashSet<>()).add(craftedItem);
+
+    /**
+     * Reads the shaped, shapeless and cooking recipes registered on the server
+     *
+     * @return Every usable recipe, grouped by the material it produces
+     */
+    private Map<Material, List<RecipeEdge>> loadServerRecipes() {
+        Map<Material, List<RecipeEdge>> candidates = new EnumMap<>(Material.class);
+        try {
+            Iterator<Recipe> recipes = Bukkit.recipeIterator();
+            while (recipes.hasNext()) {
+                RecipeEdge edge = toEdge(recipes.next());
+                if (edge != null) {
+                    candidates.computeIfAbsent(edge.result, k -> new ArrayList<>()).add(edge);
+                }
             }
+        } catch (Exception e) {
+            plugin.getLogger().log(Level.WARNING, "Failed to read server recipes for crafting relationships", e);
         }
+        return candidates;
     }
-    
+
     /**
-     * Loads custom recipes from config
+     * Converts a recipe to a graph edge
+     *
+     * @param recipe The recipe
+     * @return The edge, or null if the recipe is not a supported type or has no usable ingredients
      */
-    private void loadCustomRecipes() {
-        // Implementation would load custom recipes from config
-        // For now, we'll leave this as a stub for future enhancement
+    private RecipeEdge toEdge(Recipe recipe) {
+        ItemStack result = recipe.getResult();
+        if (result == null || result.getType().isAir() || result.getAmount() <= 0) {
+            return null;
+        }
+
+        Map<Material, Integer> components = new EnumMap<>(Material.class);
+        boolean cooking = false;
+        if (recipe instanceof ShapedRecipe shaped) {
+            Map<Character, RecipeChoice> choices = shaped.getChoiceMap();
+            for (String row : shaped.getShape()) {
+                for (char key : row.toCharArray()) {
+                    addComponent(components, choices.get(key));
+                }
+            }
+        } else if (recipe instanceof ShapelessRecipe shapeless) {
+            for (RecipeChoice choice : shapeless.getChoiceList()) {
+                addComponent(components, choice);
+            }
+        } else if (recipe instanceof CookingRecipe<?> cookingRecipe) {
+            addComponent(components, cookingRecipe.getInputChoice());
+            cooking = true;
+        } else {
+            return null;
+        }
+
+        // Skip recipes that consume their own result, such as copying or dyeing
+        if (components.isEmpty() || components.containsKey(result.getType())) {
+            return null;
+        }
+        return new RecipeEdge(result.getType(), components, result.getAmount(), cooking);
     }
-    
+
+    /**
+     * Adds one unit of a recipe ingredient. Ingredients that accept several materials count as the first one.
+     *
+     * @param components The components counted so far
+     * @param choice The ingredient, or null for an empty slot
+     */
+    private static void addComponent(Map<Material, Integer> components, RecipeChoice choice) {
+        Material material = null;
+        if (choice instanceof RecipeChoice.MaterialChoice materialChoice && !materialChoice.getChoices().isEmpty()) {
+            material = materialChoice.getChoices().get(0);
+        } else if (choice instanceof RecipeChoice.ExactChoice exactChoice && !exactChoice.getChoices().isEmpty()) {
+            material = exactChoice.getChoices().get(0).getType();
+        } else if (choice != null && choice.getItemStack() != null) {
+            material = choice.getItemStack().getType();
+        }
+        if (material != null && !material.isAir()) {
+            components.merge(material, 1, Integer::sum);
+        }
+    }
+
+    /**
+     * Chooses one recipe per material such that the chosen recipes form a directed acyclic graph.
+     * Materials without recipes are raw. A material is resolved by the shallowest recipe whose ingredients
+     * are all resolved; ties prefer cooking (ore to ingot) and then the smallest result amount. Materials
+     * that can only be made from each other, such as an item and its storage block, are broken up by
+     * treating the one used in the most recipes as raw.
+     *
+     * @param candidates Every recipe, grouped by result
+     * @return The chosen recipe per crafted material, with its depth set
+     */
+    private Map<Material, RecipeEdge> chooseRecipes(Map<Material, List<RecipeEdge>> candidates) {
+        int[] depth = new int[MATERIALS.length];
+        Arrays.fill(depth, -1);
+        int[] uses = new int[MATERIALS.length];
+        for (List<RecipeEdge> recipes : candidates.values()) {
+            for (RecipeEdge recipe : recipes) {
+                for (Material component : recipe.components.keySet()) {
+                    uses[component.ordinal()]++;
+                }
+            }
+        }
+        for (Material material : MATERIALS) {
+            if (!candidates.containsKey(material)) {
+                depth[material.ordinal()] = 0;
+            }
+        }
+
+        Map<Material, RecipeEdge> chosen = new EnumMap<>(Material.class);
+        Set<Material> unresolved = EnumSet.noneOf(Material.class);
+        unresolved.addAll(candidates.keySet());
+        while (!unresolved.isEmpty()) {
+            // Resolve in rounds, so a material only uses components resolved in earlier rounds
+            boolean progress = true;
+            while (progress) {
+                Map<Material, RecipeEdge> resolved = new EnumMap<>(Material.class);
+                for (Material material : unresolved) {
+                    RecipeEdge best = null;
+                    for (RecipeEdge recipe : candidates.get(material)) {
+                        int recipeDepth = getDepth(recipe, depth);
+                        if (recipeDepth >= 0 && (best == null || recipeDepth < best.depth
+                                || (recipeDepth == best.depth && recipe.isPreferredOver(best)))) {
+                            recipe.depth = recipeDepth;
+                            best = recipe;
+                        }
+                    }
+                    if (best != null) {
+                        resolved.put(material, best);
+                    }
+                }
+                for (Map.Entry<Material, RecipeEdge> entry : resolved.entrySet()) {
+                    depth[entry.getKey().ordinal()] = entry.getValue().depth;
+                    unresolved.remove(entry.getKey());
+                }
+                chosen.putAll(resolved);
+                progress = !resolved.isEmpty();
+            }
+
+            // Everything left depends on a cycle: break it at the most used material
+            Material raw = null;
+            for (Material material : unresolved) {
+                if (raw == null || uses[material.ordinal()] > uses[raw.ordinal()]) {
+                    raw = material;
+                }
+            }
+            if (raw != null) {
+                depth[raw.ordinal()] = 0;
+                unresolved.remove(raw);
+            }
+        }
+        return chosen;
+    }
+
+    /**
+     * Gets the depth a recipe's result would have
+     *
+     * @param recipe The recipe
+     * @param depth The depths resolved so far
+     * @return One more than the deepest component, or -1 if a component is not resolved yet
+     */
+    private static int getDepth(RecipeEdge recipe, int[] depth) {
+        int max = 0;
+        for (Material component : recipe.components.keySet()) {
+            int componentDepth = depth[component.ordinal()];
+            if (componentDepth < 0) {
+                return -1;
+            }
+            max = Math.max(max, componentDepth);
+        }
+        return max + 1;
+    }
+
+    /**
+     * Recomputes every memoized craft cost from current prices, components first
+     */
+    public synchronized void recalculateCosts() {
+        for (Material material : MATERIALS) {
+            if (!craftingComponents.containsKey(material)) {
+                setCost(acquisitionCosts, material, getMarketPrice(material));
+            }
+        }
+        for (Material material : topologicalOrder) {
+            updateCost(material);
+        }
+    }
+
+    /**
+     * Recomputes the craft costs that depend on a material after its price moved.
+     * Only items reachable through the usage edges are visited, in topological order, and the walk stops
+     * at items whose cost did not change.
+     *
+     * @param material The material whose price moved
+     */
+    public synchronized void priceChanged(Material material) {
+        boolean changed;
+        if (craftingComponents.containsKey(material)) {
+            changed = updateCost(material);
+        } else {
+            double price = getMarketPrice(material);
+            changed = price != getCost(acquisitionCosts, material);
+            setCost(acquisitionCosts, material, price);
+        }
+        if (!changed) {
+            return;
+        }
+
+        PriorityQueue<Material> queue = new PriorityQueue<>(Comparator.comparingInt(m -> topologicalIndex[m.ordinal()]));
+        Set<Material> queued = EnumSet.noneOf(Material.class);
+        for (Material item : getItemsUsingComponent(material)) {
+            if (queued.add(item)) {
+                queue.add(item);
+            }
+        }
+        while (!queue.isEmpty()) {
+            Material item = queue.poll();
+            if (updateCost(item)) {
+                for (Material next : getItemsUsingComponent(item)) {
+                    if (queued.add(next)) {
+                        queue.add(next);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Recomputes the craft and acquisition cost of a crafted item from its components' memoized costs
+     *
+     * @param material The crafted item
+     * @return True if the acquisition cost changed
+     */
+    private boolean updateCost(Material material) {
+        double total = 0.0;
+        for (Map.Entry<Material, Integer> entry : craftingComponents.get(material).entrySet()) {
+            total += getCost(acquisitionCosts, entry.getKey()) * entry.getValue();
+        }
+        double craftCost = total / resultAmounts[material.ordinal()];
+        setCost(craftCosts, material, craftCost);
+        updateOpportunity(material, craftCost);
+
+        // An item can be bought instead of crafted, whichever is cheaper
+        double acquisitionCost = Math.min(craftCost, getMarketPrice(material));
+        boolean changed = acquisitionCost != getCost(acquisitionCosts, material);
+        setCost(acquisitionCosts, material, acquisitionCost);
+        return changed;
+    }
+
+    /**
+     * Re-ranks the crafting opportunity of an item
+     *
+     * @param material The crafted item
+     * @param craftCost The craft cost per item
+     */
+    private void updateOpportunity(Material material, double craftCost) {
+        MarketAnalyzer marketAnalyzer = plugin.getMarketAnalyzer();
+        if (marketAnalyzer == null || !material.isItem()) {
+            return;
+        }
+
+        // Add a crafting fee (15% of component cost)
+        opportunityIndex.update(material, craftCost * 1.15, marketAnalyzer.getMarketValue(material, true));
+    }
+
+    /**
+     * Gets the current market price of a material
+     *
+     * @param material The material
+     * @return The default price adjusted by current demand and supply
+     */
+    private double getMarketPrice(Material material) {
+        double price = plugin.getShopManager().getDefaultBuyPrice(material);
+        MarketAnalyzer marketAnalyzer = plugin.getMarketAnalyzer();
+        return marketAnalyzer != null ? price * marketAnalyzer.getMarketMultiplier(material) : price;
+    }
+
+    private static double getCost(AtomicLongArray costs, Material material) {
+        return Double.longBitsToDouble(costs.get(material.ordinal()));
+    }
+
+    private static void setCost(AtomicLongArray costs, Material material, double cost) {
+        costs.set(material.ordinal(), Double.doubleToRawLongBits(cost));
+    }
+
     /**
      * Gets the components required to craft an item
-     * 
+     *
      * @param material The crafted item material
-     * @return Map of component materials to quantities, or empty map if not a crafted item
+     * @return Unmodifiable map of component materials to quantities per craft, or empty map if not a crafted item
      */
     public Map<Material, Integer> getComponents(Material material) {
         return craftingComponents.getOrDefault(material, Collections.emptyMap());
     }
-    
+
+    /**
+     * Gets the number of items one craft produces
+     *
+     * @param material The crafted item material
+     * @return The result amount, or 1 if not a crafted item
+     */
+    public int getResultAmount(Material material) {
+        return Math.max(1, resultAmounts[material.ordinal()]);
+    }
+
     /**
      * Gets all items that use a component in crafting
-     * 
+     *
      * @param component The component material
      * @return Set of materials that use this component, or empty set if not used
      */
     public Set<Material> getItemsUsingComponent(Material component) {
         return componentUsages.getOrDefault(component, Collections.emptySet());
     }
-    
+
+    /**
+     * Gets every crafted item, ordered so that each item comes after all of its components
+     *
+     * @return The crafted items in topological order
+     */
+    public List<Material> getTopologicalOrder() {
+        return topologicalOrder;
+    }
+
+    /**
+     * Gets the profitable crafting opportunities, ranked by profit margin.
+     * The ranking is updated whenever craft costs are recalculated or a trade moves a price.
+     *
+     * @return The crafting opportunity index
+     */
+    public CraftingOpportunityIndex getOpportunityIndex() {
+        return opportunityIndex;
+    }
+
     /**
      * Checks if a material is a crafted item with known components
-     * 
+     *
      * @param material The material to check
      * @return True if this is a crafted item with known components
      */
     public boolean isCraftedItem(Material material) {
         return craftingComponents.containsKey(material);
     }
-    
+
     /**
      * Checks if a material is used as a component in crafting
-     * 
+     *
      * @param material The material to check
      * @return True if this material is used as a component
      */
     public boolean isComponent(Material material) {
         return componentUsages.containsKey(material);
     }
-    
+
+    /**
+     * Gets the memoized cost of crafting one item from components bought or crafted, whichever is cheaper
+     *
+     * @param material The crafted item
+     * @return The craft cost per item, or -1 if not a crafted item
+     */
+    public double getCraftCost(Material material) {
+        if (!isCraftedItem(material)) {
+            return -1.0;
+        }
+        return getCost(craftCosts, material);
+    }
+
     /**
      * Gets the component demand multiplier
      * This controls how much component prices are affected by crafted item demand
-     * 
+     *
      * @return The component demand multiplier
      */
     public double getComponentDemandMultiplier() {
         return componentDemandMultiplier;
     }
-    
+
     /**
      * Sets the component demand multiplier
-     * 
+     *
      * @param multiplier The new multiplier value
      */
     public void setComponentDemandMultiplier(double multiplier) {
         this.componentDemandMultiplier = multiplier;
     }
-    
+
     /**
      * Calculates the theoretical craft value of an item based on its components
-     * 
+     *
      * @param material The crafted item
-     * @param marketAnalyzer The market analyzer to get component prices
      * @return The calculated craft value, or -1 if not a crafted item
      */
-    public double calculateCraftValue(Material material, MarketAnalyzer marketAnalyzer) {
-        Map<Material, Integer> components = getComponents(material);
-        if (components.isEmpty()) {
+    public double calculateCraftValue(Material material) {
+        double craftCost = getCraftCost(material);
+        if (craftCost < 0) {
             return -1.0;
         }
-        
-        double totalValue = 0.0;
-        for (Map.Entry<Material, Integer> entry : components.entrySet()) {
-            Material component = entry.getKey();
-            int quantity = entry.getValue();
-            
-            // Get the market price for this component
-            double componentPrice = marketAnalyzer.getBasePrice(component);
-            totalValue += componentPrice * quantity;
-        }
-        
+
         // Add a small crafting fee (10%)
-        return totalValue * 1.1;
+        return craftCost * 1.1;
+    }
+
+    /**
+     * One recipe in the crafting graph
+     */
+    private static final class RecipeEdge {
+        private final Material result;
+        private final Map<Material, Integer> components;
+        private final int amount;
+        private final boolean cooking;
+        private int depth;
+
+        private RecipeEdge(Material result, Map<Material, Integer> components, int amount, boolean cooking) {
+            this.result = result;
+            this.components = components;
+            this.amount = amount;
+            this.cooking = cooking;
+        }
+
+        private boolean isPreferredOver(RecipeEdge other) {
+            if (cooking != other.cooking) {
+                return cooking;
+            }
+            return amount < other.amount;
+        }
     }
-} 
\ No newline at end of file
+}
@@ -11,9 +11,15 @@ import org.frizzlenpop.frizzlenShop.shops.Shop;
 import org.frizzlenpop.frizzlenShop.shops.ShopItem;
 import org.frizzlenpop.frizzlenShop.utils.MessageUtils;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
 
 /**
  * Manages dynamic pricing for shop items
@@ -24,11 +30,14 @@ public class DynamicPricingManager {
     private MarketAnalyzer marketAnalyzer;
     private boolean isEnabled;
     
-    // Cache for dynamic prices to avoid frequent recalculations
-    private final Map<UUID, Double> dynamicBuyPriceCache;
-    private final Map<UUID, Double> dynamicSellPriceCache;
-    private long cacheExpiryTime = 300000; // 5 minutes in milliseconds
-    private long lastCacheCleanup = 0;
+    // Prices of the current pricing epoch, replaced as a whole by each rebuild
+    private volatile PriceBook priceBook = PriceBook.EMPTY;
+    private final AtomicBoolean priceBookBuilding = new AtomicBoolean();
+    
+    // Cache for prices of items that are not in the price book yet
+    private final PriceCache dynamicBuyPriceCache;
+    private final PriceCache dynamicSellPriceCache;
+    private final long cacheExpiryTime;
     
     /**
      * Creates a new dynamic pricing manager
@@ -37,8 +46,10 @@ public class DynamicPricingManager {
      */
     public DynamicPricingManager(FrizzlenShop plugin) {
         this.plugin = plugin;
-        this.dynamicBuyPriceCache = new HashMap<>();
-        this.dynamicSellPriceCache = new HashMap<>();
+        this.cacheExpiryTime = plugin.getConfigManager().getPriceCacheExpiryTime() * 1000L;
+        int cacheMaxSize = plugin.getConfigManager().getPriceCacheMaxSize();
+        this.dynamicBuyPriceCache = new PriceCache(cacheExpiryTime, cacheMaxSize);
+        this.dynamicSellPriceCache = new PriceCache(cacheExpiryTime, cacheMaxSize);
         this.isEnabled = plugin.getConfigManager().isDynamicPricingEnabled();
         
         // Initialize market analyzer
@@ -46,8 +57,8 @@ public class DynamicPricingManager {
             initializeMarketAnalyzer();
         }
         
-        // Schedule regular market analysis
-        scheduleMarketAnalysis();
+        // Schedule cache cleanup and price book rebuilds
+        scheduleTasks();
     }
     
     /**
@@ -65,52 +76,77 @@ public class DynamicPricingManager {
     }
     
     /**
-     * Schedules regular market analysis to update prices
+     * Schedules the cache cleanup and the price book rebuilds.
+     * Market data needs no task here; the market analyzer writes it back on its own flush interval.
      */
-    private void scheduleMarketAnalysis() {
-        // Run market analysis once per day
+    private void scheduleTasks() {
+        // Clean up price cache once per expiry period
+        long cleanupTicks = Math.max(20, cacheExpiryTime / 50);
         new BukkitRunnable() {
             @Override
             public void run() {
-                if (isEnabled && marketAnalyzer != null) {
-                    marketAnalyzer.performMarketAnalysis();
-                    
-                    // Clear price caches after analysis
-                    dynamicBuyPriceCache.clear();
-                    dynamicSellPriceCache.clear();
-                    
-                    // Apply dynamic prices to admin shop base prices
-                    updateAdminShopPrices();
-                }
+                cleanupPriceCache();
             }
-        }.runTaskTimerAsynchronously(plugin, 20 * 60 * 60, 20 * 60 * 60 * 24); // Start after 1 hour, run daily
+        }.runTaskTimerAsynchronously(plugin, cleanupTicks, cleanupTicks);
         
-        // Clean up price cache periodically
+        // Rebuild the price book every pricing epoch
+        long priceBookTicks = Math.max(1, plugin.getConfigManager().getPriceBookInterval()) * 20L;
         new BukkitRunnable() {
             @Override
             public void run() {
-                cleanupPriceCache();
+                rebuildPriceBook();
             }
-        }.runTaskTimerAsynchronously(plugin, 20 * 60 * 10, 20 * 60 * 10); // Run every 10 minutes
+        }.runTaskTimer(plugin, 20, priceBookTicks);
+    }
+    
+    /**
+     * Starts building the price book of the next pricing epoch.
+     * Only admin shops quote dynamic prices, so only their items are priced. The items and their static
+     * prices are collected on the main thread, the prices are calculated asynchronously, and the finished
+     * book replaces the current one in a single write.
+     */
+    public void rebuildPriceBook() {
+        if (!isEnabled || marketAnalyzer == null || !priceBookBuilding.compareAndSet(false, true)) {
+            return;
+        }
         
-        // Update admin shop prices hourly to reflect market changes
-        new BukkitRunnable() {
-            @Override
-            public void run() {
-                if (isEnabled && marketAnalyzer != null) {
-                    updateAdminShopPrices();
+        List<ShopItem> items = new ArrayList<>();
+        for (Shop shop : plugin.getShopManager().getAdminShops()) {
+            items.addAll(shop.getItems());
+        }
+        double[] baseBuyPrices = new double[items.size()];
+        double[] baseSellPrices = new double[items.size()];
+        for (int i = 0; i < items.size(); i++) {
+            baseBuyPrices[i] = items.get(i).getBuyPrice();
+            baseSellPrices[i] = items.get(i).getSellPrice();
+        }
+        long epoch = priceBook.getEpoch() + 1;
+        MarketAnalyzer analyzer = marketAnalyzer;
+        
+        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+            try {
+                // Demand and supply decay continuously, so refresh every craft cost before pricing
+                CraftingRelationManager craftingManager = plugin.getCraftingRelationManager();
+                if (craftingManager != null) {
+                    craftingManager.recalculateCosts();
                 }
+                priceBook = PriceBook.build(epoch, items, baseBuyPrices, baseSellPrices, analyzer);
+                
+                // Prices cached during the previous epoch would no longer match the book
+                dynamicBuyPriceCache.clear();
+                dynamicSellPriceCache.clear();
+            } catch (Exception e) {
+                plugin.getLogger().log(Level.SEVERE, "Failed to build the price book", e);
+            } finally {
+                priceBookBuilding.set(false);
             }
-        }.runTaskTimerAsynchronously(plugin, 20 * 60 * 30, 20 * 60 * 60); // Start after 30 minutes, run hourly
+        });
     }
     
     /**
      * Cleans up expired entries in the price cache
      */
     private void cleanupPriceCache() {
-        long currentTime = System.currentTimeMillis();
-        lastCacheCleanup = currentTime;
-        
         // If dynamic pricing is disabled, clear all caches
         if (!isEnabled) {
             dynamicBuyPriceCache.clear();
@@ -119,12 +155,8 @@ public class DynamicPricingManager {
         }
         
         // Remove expired cache entries (older than cacheExpiryTime)
-        // We would need timestamp storage for each entry, but this simple approach just clears all
-        // cache entries periodically to prevent stale prices
-        if (dynamicBuyPriceCache.size() > 100 || dynamicSellPriceCache.size() > 100) {
-            dynamicBuyPriceCache.clear();
-            dynamicSellPriceCache.clear();
-        }
+        dynamicBuyPriceCache.purgeExpired();
+        dynamicSellPriceCache.purgeExpired();
     }
     
     /**
@@ -141,17 +173,25 @@ public class DynamicPricingManager {
         }
         
         UUID itemId = item.getId();
+        PriceBook book = priceBook;
+        
+        // Quote from the price book of the current epoch
+        double bookPrice = book.getBuyPrice(itemId, staticPrice);
+        if (!Double.isNaN(bookPrice)) {
+            return bookPrice;
+        }
         
-        // Check cache first
-        if (dynamicBuyPriceCache.containsKey(itemId)) {
-            return dynamicBuyPriceCache.get(itemId);
+        // Check cache for items added or repriced since the book was built
+        double cachedPrice = dynamicBuyPriceCache.get(itemId, staticPrice);
+        if (!Double.isNaN(cachedPrice)) {
+            return cachedPrice;
         }
         
         // Calculate dynamic price using market analyzer
-        double dynamicPrice = marketAnalyzer.calculateDynamicPrice(staticPrice, item, true);
+        double dynamicPrice = marketAnalyzer.calculateDynamicPrice(staticPrice, item, true, book.getEpoch());
         
         // Cache the result
-        dynamicBuyPriceCache.put(itemId, dynamicPrice);
+        dynamicBuyPriceCache.put(itemId, staticPrice, dynamicPrice);
         
         return dynamicPrice;
     }
@@ -170,17 +210,25 @@ public class DynamicPricingManager {
         }
         
         UUID itemId = item.getId();
+        PriceBook book = priceBook;
         
-        // Check cache first
-        if (dynamicSellPriceCache.containsKey(itemId)) {
-            return dynamicSellPriceCache.get(itemId);
+        // Quote from the price book of the current epoch
+        double bookPrice = book.getSellPrice(itemId, staticPrice);
+        if (!Double.isNaN(bookPrice)) {
+            return bookPrice;
+        }
+        
+        // Check cache for items added or repriced since the book was built
+        double cachedPrice = dynamicSellPriceCache.get(itemId, staticPrice);
+        if (!Double.isNaN(cachedPrice)) {
+            return cachedPrice;
         }
         
         // Calculate dynamic price using market analyzer
-        double dynamicPrice = marketAnalyzer.calculateDynamicPrice(staticPrice, item, false);
+        double dynamicPrice = marketAnalyzer.calculateDynamicPrice(staticPrice, item, false, book.getEpoch());
         
         // Cache the result
-        dynamicSellPriceCache.put(itemId, dynamicPrice);
+        dynamicSellPriceCache.put(itemId, staticPrice, dynamicPrice);
         
         return dynamicPrice;
     }
@@ -191,14 +239,15 @@ public class DynamicPricingManager {
      * @param item The shop item that was transacted
      * @param quantity The quantity that was transacted
      * @param isBuy True if this was a buy transaction (player buying from shop), false for sell
+     * @param price The total price of the transaction
      */
-    public void recordTransaction(ShopItem item, int quantity, boolean isBuy) {
+    public void recordTransaction(ShopItem item, int quantity, boolean isBuy, double price) {
         if (isEnabled && marketAnalyzer != null) {
-            marketAnalyzer.recordTransaction(item, quantity, isBuy);
+            marketAnalyzer.recordTransaction(item, quantity, isBuy, price);
             
             // Invalidate cache entries for this item
-            dynamicBuyPriceCache.remove(item.getId());
-            dynamicSellPriceCache.remove(item.getId());
+            dynamicBuyPriceCache.invalidate(item.getId());
+            dynamicSellPriceCache.invalidate(item.getId());
         }
     }
     
@@ -233,6 +282,42 @@ public class DynamicPricingManager {
         }
     }
     
+    /**
+     * Saves the market state that has not been written to the database yet
+     */
+    public void shutdown() {
+        if (marketAnalyzer != null) {
+            marketAnalyzer.shutdown();
+        }
+    }
+    
+    /**
+     * Gets the price book of the current pricing epoch
+     * 
+     * @return The price book
+     */
+    public PriceBook getPriceBook() {
+        return priceBook;
+    }
+    
+    /**
+     * Gets the cache of dynamic buy prices
+     * 
+     * @return The buy price cache
+     */
+    public PriceCache getBuyPriceCache() {
+        return dynamicBuyPriceCache;
+    }
+    
+    /**
+     * Gets the cache of dynamic sell prices
+     * 
+     * @return The sell price cache
+     */
+    public PriceCache getSellPriceCache() {
+        return dynamicSellPriceCache;
+    }
+    
     /**
      * Gets the market analyzer
      * 
@@ -246,7 +331,7 @@ public class DynamicPricingManager {
      * Gets the trending items in the market
      * 
      * @param limit The maximum number of trending items to return
-     * @return A map of materials to their trend values (positive = rising price, negative = falling price)
+     * @return A map of materials to their trend values (positive = rising price), strongest rise first
      */
     public Map<Material, Double> getTrendingItems(int limit) {
         if (isEnabled && marketAnalyzer != null) {
@@ -255,6 +340,19 @@ public class DynamicPricingManager {
         return new HashMap<>();
     }
     
+    /**
+     * Gets the items whose prices are falling fastest
+     * 
+     * @param limit The maximum number of falling items to return
+     * @return A map of materials to their trend values, strongest fall first
+     */
+    public Map<Material, Double> getFallingItems(int limit) {
+        if (isEnabled && marketAnalyzer != null) {
+            return marketAnalyzer.getTopFallingItems(limit);
+        }
+        return new HashMap<>();
+    }
+    
     /**
      * Gets the trend value for a specific material
      * 
@@ -263,8 +361,7 @@ public class DynamicPricingManager {
      */
     public double getTrendValueForMaterial(Material material) {
         if (isEnabled && marketAnalyzer != null) {
-            Map<Material, Double> trends = marketAnalyzer.getMarketTrendSummary();
-            return trends.getOrDefault(material, 0.0);
+            return marketAnalyzer.getTrend(material);
         }
         return 0.0;
     }
@@ -279,8 +376,10 @@ public class DynamicPricingManager {
     }
     
     /**
-     * Updates the base prices of admin shop items based on dynamic pricing calculations
-     * This ensures that admin shop prices reflect market trends over time
+     * Updates the base prices of admin shop items based on dynamic pricing calculations.
+     * Admin shops charge and show prices from the price book, which is rebuilt with the decayed demand and
+     * supply every price book interval, so rewriting the base prices is only needed when an admin asks for it.
+     * The market data of every repriced material is reset afterwards, so the trend is not applied twice.
      */
     public void updateAdminShopPrices() {
         if (!isEnabled || marketAnalyzer == null) {
@@ -293,6 +392,8 @@ public class DynamicPricingManager {
         Bukkit.getScheduler().runTask(plugin, () -> {
             int updatedCount = 0;
             double totalPriceChange = 0;
+            List<Shop> changedShops = new ArrayList<>();
+            Set<Material> repricedMaterials = new HashSet<>();
             
             // Get all admin shops
             for (Shop shop : plugin.getShopManager().getAdminShops()) {
@@ -326,29 +427,33 @@ public class DynamicPricingManager {
                         item.setBuyPrice(newBuyPrice);
                         item.setSellPrice(newSellPrice);
                         
-                        try {
-                            // Save the item to the database
-                            plugin.getDatabaseManager().saveShopItem(item);
-                            
-                            updatedCount++;
-                            totalPriceChange += buyPriceChange;
-                        } catch (Exception e) {
-                            plugin.getLogger().warning("Failed to save shop item to database: " + e.getMessage());
+                        updatedCount++;
+                        totalPriceChange += buyPriceChange;
+                        repricedMaterials.add(item.getItem().getType());
+                        
+                        if (changedShops.isEmpty() || changedShops.get(changedShops.size() - 1) != shop) {
+                            changedShops.add(shop);
                         }
                     }
                 }
             }
             
+            // Save every changed shop to the database in one batch
+            if (!changedShops.isEmpty() && !plugin.getDatabaseManager().saveShops(changedShops)) {
+                plugin.getLogger().warning("Failed to save updated admin shop prices to database");
+            }
+            
             // Calculate the average price change percentage
             double avgPriceChange = updatedCount > 0 ? (totalPriceChange / updatedCount) * 100 : 0;
             
             plugin.getLogger().info("Updated " + updatedCount + " admin shop items with an average price change of " 
                 + String.format("%.2f", avgPriceChange) + "%");
             
-            // Clear market trends after price update
-            if (marketAnalyzer != null && updatedCount > 0) {
-                marketAnalyzer.clearTrendData();
-                plugin.getLogger().info("Market trends cleared after price update");
+            // The new base prices include the current trends of the repriced materials
+            if (marketAnalyzer != null && !repricedMaterials.isEmpty()) {
+                for (Material material : repricedMaterials) {
+                    marketAnalyzer.neutralizeMarketData(material);
+                }
             }
         });
     }
@@ -1,7 +1,8 @@
 package org.frizzlenpop.frizzlenShop.economy;
 
 import org.bukkit.Material;
-import org.bukkit.inventory.ItemStack;
+import org.bukkit.scheduler.BukkitRunnable;
+import org.bukkit.scheduler.BukkitTask;
 import org.frizzlenpop.frizzlenShop.FrizzlenShop;
 import org.frizzlenpop.frizzlenShop.shops.ShopItem;
 import org.frizzlenpop.frizzlenShop.utils.DatabaseManager;
@@ -12,11 +13,14 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 import java.util.logging.Level;
 
 /**
@@ -28,23 +32,24 @@ public class MarketAnalyzer {
     private final DatabaseManager databaseManager;
     private final ConfigManager configManager;
     
-    // Cache market data for performance
-    private Map<Material, MarketData> marketDataCache;
-    private Map<UUID, ItemTransactionData> itemTransactionCache;
+    // Market state is held in memory and is authoritative; the database is only written in periodic batches
+    private final MarketTable marketTable;
+    private final Map<UUID, ItemTransactionData> itemTransactions;
+    private final Set<UUID> dirtyItems = ConcurrentHashMap.newKeySet();
+    private final PriceHistory priceHistory;
+    private BukkitTask flushTask;
     
-    // Recent transaction tracking
-    private Map<Material, Integer> recentBuys = new ConcurrentHashMap<>();
-    private Map<Material, Integer> recentSells = new ConcurrentHashMap<>();
+    // Recent transaction tracking, indexed by material ordinal
+    private final AtomicIntegerArray recentBuys = new AtomicIntegerArray(Material.values().length);
+    private final AtomicIntegerArray recentSells = new AtomicIntegerArray(Material.values().length);
     
     // Market volatility factors (how quickly prices change)
     private static final double DEFAULT_VOLATILITY = 0.05; // 5% change per cycle
-    private static final int ANALYSIS_PERIOD_DAYS = 7; // Analyze data from the last 7 days
     
     // Config-based values
     private double volatilityMultiplier;
     private double maxPriceChange;
-    private double normalizationRate;
-    private long analysisIntervalMinutes;
+    private double decayHalfLife;
     private boolean useCraftingRelationships;
     private boolean fluctuationEnabled;
     private double fluctuationMagnitude;
@@ -58,25 +63,30 @@ public class MarketAnalyzer {
         this.plugin = plugin;
         this.databaseManager = plugin.getDatabaseManager();
         this.configManager = plugin.getConfigManager();
-        this.marketDataCache = new ConcurrentHashMap<>();
-        this.itemTransactionCache = new ConcurrentHashMap<>();
+        this.itemTransactions = new ConcurrentHashMap<>();
         
         // Load config values
         this.volatilityMultiplier = configManager.getVolatilityMultiplier();
         this.maxPriceChange = configManager.getMaxPriceChange();
-        this.normalizationRate = configManager.getNormalizationRate();
-        this.analysisIntervalMinutes = configManager.getAnalysisInterval();
+        this.decayHalfLife = configManager.getDecayHalfLife();
         this.useCraftingRelationships = configManager.useCraftingRelationships();
         this.fluctuationEnabled = configManager.isPriceFluctuationEnabled();
         this.fluctuationMagnitude = configManager.getFluctuationMagnitude();
+        this.marketTable = new MarketTable(DEFAULT_VOLATILITY, getDecayHalfLifeMillis());
+        this.priceHistory = new PriceHistory(plugin, databaseManager);
         
         // Initialize the database tables
         initializeDatabase();
+        priceHistory.initializeDatabase();
+        
+        // Load market state and start writing changes back in batches
+        loadMarketData();
+        priceHistory.load(marketTable.getMaterials());
+        startFlushTask();
         
         // Log initialization
         plugin.getLogger().info("Market analyzer initialized with volatility: " + volatilityMultiplier + 
                                 ", max price change: " + maxPriceChange +
-                                ", analysis interval: " + analysisIntervalMinutes + " minutes" +
                                 ", fluctuation: " + (fluctuationEnabled ? "enabled" : "disabled"));
     }
     
@@ -84,10 +94,14 @@ public class MarketAnalyzer {
      * Initializes the database tables required for market analysis
      */
     private void initializeDatabase() {
-        try {
+        try (Connection conn = databaseManager.getWriteConnection()) {
+            // Market data is written on every transaction, so it goes to the history database when one is attached
+            String marketTrendsTable = databaseManager.getHistoryTableName(conn, databaseManager.getTablePrefix() + "market_trends");
+            String itemTransactionsTable = databaseManager.getHistoryTableName(conn, databaseManager.getTablePrefix() + "item_transactions");
+            
             // Create market_trends table
             String createMarketTrendsTable = "CREATE TABLE IF NOT EXISTS " 
-                + databaseManager.getTablePrefix() + "market_trends ("
+                + marketTrendsTable + " ("
                 + "material VARCHAR(64) PRIMARY KEY, "
                 + "demand_index DOUBLE, "
                 + "supply_index DOUBLE, "
@@ -96,7 +110,7 @@ public class MarketAnalyzer {
             
             // Create item_transactions table
             String createItemTransactionsTable = "CREATE TABLE IF NOT EXISTS " 
-                + databaseManager.getTablePrefix() + "item_transactions ("
+                + itemTransactionsTable + " ("
                 + "item_id VARCHAR(36) PRIMARY KEY, "
                 + "material VARCHAR(64), "
                 + "buy_count INT, "
@@ -106,10 +120,8 @@ public class MarketAnalyzer {
                 + "price_adjustment_factor DOUBLE)";
             
             // Execute queries
-            Connection conn = databaseManager.getConnection();
             databaseManager.executeUpdate(conn, createMarketTrendsTable);
             databaseManager.executeUpdate(conn, createItemTransactionsTable);
-            conn.close();
             
         } catch (SQLException e) {
             plugin.getLogger().log(Level.SEVERE, "Failed to initialize market analyzer database tables", e);
@@ -117,193 +129,284 @@ public class MarketAnalyzer {
     }
     
     /**
-     * Records a transaction for market analysis
+     * Loads all market trends and item counters into memory
+     */
+    private void loadMarketData() {
+        try (Connection conn = databaseManager.getConnection()) {
+            try (PreparedStatement ps = conn.prepareStatement("SELECT material, demand_index, supply_index, volatility, last_updated FROM "
+                    + databaseManager.getTablePrefix() + "market_trends");
+                 ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    Material material = Material.matchMaterial(rs.getString("material"));
+                    if (material == null) {
+                        continue; // Skip materials that no longer exist
+                    }
+                    marketTable.put(
+                        material,
+                        rs.getDouble("demand_index"),
+                        rs.getDouble("supply_index"),
+                        rs.getDouble("volatility"),
+                        rs.getLong("last_updated")
+                    );
+                }
+            }
+            
+            try (PreparedStatement ps = conn.prepareStatement("SELECT item_id, material, buy_count, sell_count, last_buy_time, "
+                    + "last_sell_time, price_adjustment_factor FROM " + databaseManager.getTablePrefix() + "item_transactions");
+                 ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    Material material = Material.matchMaterial(rs.getString("material"));
+                    if (material == null) {
+                        continue;
+                    }
+                    UUID itemId = UUID.fromString(rs.getString("item_id"));
+                    itemTransactions.put(itemId, new ItemTransactionData(
+                        itemId,
+                        material,
+                        rs.getInt("buy_count"),
+                        rs.getInt("sell_count"),
+                        rs.getLong("last_buy_time"),
+                        rs.getLong("last_sell_time"),
+                        rs.getDouble("price_adjustment_factor")
+                    ));
+                }
+            }
+            
+            plugin.getLogger().info("Loaded market data for " + marketTable.size() + " materials and "
+                    + itemTransactions.size() + " shop items");
+        } catch (SQLException e) {
+            plugin.getLogger().log(Level.SEVERE, "Failed to load market data", e);
+        }
+    }
+    
+    /**
+     * Starts the task that writes changed market data to the database
+     */
+    private void startFlushTask() {
+        long intervalTicks = Math.max(1, configManager.getMarketFlushInterval()) * 20L;
+        flushTask = new BukkitRunnable() {
+            @Override
+            public void run() {
+                flush();
+                priceHistory.flush();
+            }
+        }.runTaskTimerAsynchronously(plugin, intervalTicks, intervalTicks);
+    }
+    
+    /**
+     * Writes every changed market trend and item counter to the database in one batched transaction.
+     * Rows that fail to save are marked changed again so the next flush retries them.
+     * 
+     * @return The number of rows written
+     */
+    public synchronized int flush() {
+        // Clear each flag before reading the value, so a change made meanwhile is flushed again next time
+        List<MarketData> trends = new ArrayList<>();
+        for (Material material : marketTable.getMaterials()) {
+            if (marketTable.clearDirty(material)) {
+                trends.add(marketTable.snapshot(material));
+            }
+        }
+        List<ItemTransactionData> items = new ArrayList<>();
+        for (Iterator<UUID> it = dirtyItems.iterator(); it.hasNext(); ) {
+            UUID itemId = it.next();
+            it.remove();
+            ItemTransactionData data = itemTransactions.get(itemId);
+            if (data != null) {
+                items.add(data);
+            }
+        }
+        if (trends.isEmpty() && items.isEmpty()) {
+            return 0;
+        }
+        
+        try (Connection conn = databaseManager.getWriteConnection()) {
+            boolean autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            try (PreparedStatement trendPs = conn.prepareStatement(databaseManager.buildUpsert(
+                    databaseManager.getTablePrefix() + "market_trends",
+                    new String[]{"material", "demand_index", "supply_index", "volatility", "last_updated"}));
+                 PreparedStatement itemPs = conn.prepareStatement(databaseManager.buildUpsert(
+                    databaseManager.getTablePrefix() + "item_transactions",
+                    new String[]{"item_id", "material", "buy_count", "sell_count", "last_buy_time", "last_sell_time",
+                            "price_adjustment_factor"}))) {
+                for (MarketData data : trends) {
+                    trendPs.setString(1, data.getMaterial().toString());
+                    trendPs.setDouble(2, data.getDemandIndex());
+                    trendPs.setDouble(3, data.getSupplyIndex());
+                    trendPs.setDouble(4, data.getVolatility());
+                    trendPs.setLong(5, data.getLastUpdated());
+                    trendPs.addBatch();
+                }
+                for (ItemTransactionData data : items) {
+                    itemPs.setString(1, data.getItemId().toString());
+                    itemPs.setString(2, data.getMaterial().toString());
+                    itemPs.setInt(3, data.getBuyCount());
+                    itemPs.setInt(4, data.getSellCount());
+                    itemPs.setLong(5, data.getLastBuyTime());
+                    itemPs.setLong(6, data.getLastSellTime());
+                    itemPs.setDouble(7, data.getPriceAdjustmentFactor());
+                    itemPs.addBatch();
+                }
+                
+                if (!trends.isEmpty()) {
+                    trendPs.executeBatch();
+                }
+                if (!items.isEmpty()) {
+                    itemPs.executeBatch();
+                }
+                conn.commit();
+                return trends.size() + items.size();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(autoCommit);
+            }
+        } catch (SQLException e) {
+            for (MarketData data : trends) {
+                marketTable.markDirty(data.getMaterial());
+            }
+            for (ItemTransactionData data : items) {
+                dirtyItems.add(data.getItemId());
+            }
+            plugin.getLogger().log(Level.SEVERE, "Failed to save " + trends.size() + " market trends and "
+                    + items.size() + " item transaction counters", e);
+            return 0;
+        }
+    }
+    
+    /**
+     * Stops the flush task and writes any remaining changes
+     */
+    public void shutdown() {
+        if (flushTask != null) {
+            flushTask.cancel();
+            flushTask = null;
+        }
+        flush();
+        priceHistory.flush();
+    }
+    
+    /**
+     * Records a transaction for market analysis.
+     * Only the in-memory market state is updated; the change reaches the database with the next flush.
      * 
      * @param item The shop item that was transacted
      * @param quantity The quantity that was transacted
      * @param isBuy True if this was a buy transaction (player buying from shop), false for sell
+     * @param price The total price of the transaction
      */
-    public void recordTransaction(ShopItem item, int quantity, boolean isBuy) {
+    public void recordTransaction(ShopItem item, int quantity, boolean isBuy, double price) {
         if (item == null || quantity <= 0) {
             return;
         }
         
         UUID itemId = item.getId();
         Material material = item.getItem().getType();
-        String materialName = material.toString();
+        long currentTime = System.currentTimeMillis();
         
-        // Record the transaction for this item
-        try {
-            Connection conn = databaseManager.getConnection();
-            
-            // Update item transaction data
-            updateItemTransactionData(conn, itemId, material, quantity, isBuy);
-            
-            // Update market trends
-            updateMarketTrends(conn, material, quantity, isBuy);
+        // Update item transaction data
+        updateItemTransactionData(itemId, material, quantity, isBuy, currentTime);
+        
+        // Add the trade to the price history
+        priceHistory.record(material, price / quantity, quantity);
+        
+        // Update market trends
+        updateMarketTrends(material, quantity, isBuy);
+        
+        // Propagate effects to components if this is a crafted item
+        CraftingRelationManager craftingManager = plugin.getCraftingRelationManager();
+        if (craftingManager != null && craftingManager.isCraftedItem(material)) {
+            Map<Material, Integer> components = craftingManager.getComponents(material);
+            double componentMultiplier = item.getCraftingMultiplier();
+            int resultAmount = craftingManager.getResultAmount(material);
             
-            // Propagate effects to components if this is a crafted item
-            if (item.isCrafted()) {
-                Map<Material, Integer> components = item.getCraftingComponents();
-                double componentMultiplier = item.getCraftingMultiplier();
+            for (Map.Entry<Material, Integer> entry : components.entrySet()) {
+                Material componentMaterial = entry.getKey();
                 
-                for (Map.Entry<Material, Integer> entry : components.entrySet()) {
-                    Material componentMaterial = entry.getKey();
-                    int componentQuantity = entry.getValue() * quantity;
-                    
-                    // Scale the effect based on component multiplier
-                    int scaledQuantity = (int)(componentQuantity * componentMultiplier);
-                    if (scaledQuantity > 0) {
-                        // We propagate the OPPOSITE transaction type to components
-                        // If an item is bought (demand increases), then demand for components increases (as if they were sold)
-                        updateMarketTrends(conn, componentMaterial, scaledQuantity, !isBuy);
-                    }
+                // Components used per item, scaled by the component multiplier
+                int scaledQuantity = (int)(entry.getValue() * quantity * componentMultiplier / resultAmount);
+                if (scaledQuantity > 0) {
+                    // We propagate the OPPOSITE transaction type to components
+                    // If an item is bought (demand increases), then demand for components increases (as if they were sold)
+                    updateMarketTrends(componentMaterial, scaledQuantity, !isBuy);
+                    craftingManager.priceChanged(componentMaterial);
                 }
             }
-            
-            conn.close();
-            
-            // Cache this transaction in memory for quick access
-            if (material.isBlock() || material.isItem()) {
-                synchronized (this) {
-                    if (isBuy) {
-                        recentBuys.put(material, recentBuys.getOrDefault(material, 0) + quantity);
-                    } else {
-                        recentSells.put(material, recentSells.getOrDefault(material, 0) + quantity);
-                    }
-                }
+        }
+        
+        // Update the memoized craft costs of items made from this material
+        if (craftingManager != null) {
+            craftingManager.priceChanged(material);
+        }
+        
+        // Cache this transaction in memory for quick access
+        if (material.isBlock() || material.isItem()) {
+            if (isBuy) {
+                recentBuys.addAndGet(material.ordinal(), quantity);
+            } else {
+                recentSells.addAndGet(material.ordinal(), quantity);
             }
-            
-        } catch (SQLException e) {
-            plugin.getLogger().severe("Error recording transaction: " + e.getMessage());
         }
     }
     
     /**
-     * Updates the item transaction data in the database
+     * Updates the transaction counters of a shop item
      * 
-     * @param conn The database connection
      * @param itemId The UUID of the shop item
      * @param material The material of the item
      * @param quantity The quantity that was transacted
      * @param isBuy Whether this was a buy transaction
-     * @throws SQLException If a database error occurs
+     * @param currentTime The time of the transaction
      */
-    private void updateItemTransactionData(Connection conn, UUID itemId, Material material, int quantity, boolean isBuy) throws SQLException {
-        // Check if item already exists in database
-        String query = "SELECT * FROM " + databaseManager.getTablePrefix() + "item_transactions WHERE item_id = ?";
-        PreparedStatement ps = conn.prepareStatement(query);
-        ps.setString(1, itemId.toString());
-        ResultSet rs = ps.executeQuery();
-        
-        if (rs.next()) {
-            // Update existing entry
-            String update = "UPDATE " + databaseManager.getTablePrefix() + "item_transactions SET "
-                + (isBuy ? "buy_count = buy_count + ?, last_buy_time = ?" : "sell_count = sell_count + ?, last_sell_time = ?")
-                + " WHERE item_id = ?";
-            PreparedStatement updatePs = conn.prepareStatement(update);
-            updatePs.setInt(1, quantity);
-            updatePs.setLong(2, System.currentTimeMillis());
-            updatePs.setString(3, itemId.toString());
-            updatePs.executeUpdate();
-            updatePs.close();
-        } else {
-            // Insert new entry
-            String insert = "INSERT INTO " + databaseManager.getTablePrefix() + "item_transactions "
-                + "(item_id, material, buy_count, sell_count, last_buy_time, last_sell_time, price_adjustment_factor) "
-                + "VALUES (?, ?, ?, ?, ?, ?, ?)";
-            PreparedStatement insertPs = conn.prepareStatement(insert);
-            insertPs.setString(1, itemId.toString());
-            insertPs.setString(2, material.toString());
-            insertPs.setInt(3, isBuy ? quantity : 0);
-            insertPs.setInt(4, isBuy ? 0 : quantity);
-            insertPs.setLong(5, isBuy ? System.currentTimeMillis() : 0);
-            insertPs.setLong(6, isBuy ? 0 : System.currentTimeMillis());
-            insertPs.setDouble(7, 1.0); // Start with neutral adjustment factor
-            insertPs.executeUpdate();
-            insertPs.close();
-        }
-        
-        rs.close();
-        ps.close();
+    private void updateItemTransactionData(UUID itemId, Material material, int quantity, boolean isBuy, long currentTime) {
+        itemTransactions.compute(itemId, (id, data) -> {
+            if (data == null) {
+                // Start with neutral adjustment factor
+                return new ItemTransactionData(id, material,
+                        isBuy ? quantity : 0, isBuy ? 0 : quantity,
+                        isBuy ? currentTime : 0, isBuy ? 0 : currentTime, 1.0);
+            }
+            return new ItemTransactionData(id, data.getMaterial(),
+                    data.getBuyCount() + (isBuy ? quantity : 0),
+                    data.getSellCount() + (isBuy ? 0 : quantity),
+                    isBuy ? currentTime : data.getLastBuyTime(),
+                    isBuy ? data.getLastSellTime() : currentTime,
+                    data.getPriceAdjustmentFactor());
+        });
+        dirtyItems.add(itemId);
     }
     
     /**
      * Updates the global market trends for a material
      * 
-     * @param conn The database connection
      * @param material The material being updated
      * @param quantity The quantity that was transacted
      * @param isBuy Whether this was a buy transaction
-     * @throws SQLException If a database error occurs
      */
-    private void updateMarketTrends(Connection conn, Material material, int quantity, boolean isBuy) throws SQLException {
-        String materialName = material.toString();
-        long currentTime = System.currentTimeMillis();
-        
-        // Check if material already exists in database
-        String query = "SELECT * FROM " + databaseManager.getTablePrefix() + "market_trends WHERE material = ?";
-        PreparedStatement ps = conn.prepareStatement(query);
-        ps.setString(1, materialName);
-        ResultSet rs = ps.executeQuery();
-        
-        if (rs.next()) {
-            // Update existing entry
-            double demandIndex = rs.getDouble("demand_index");
-            double supplyIndex = rs.getDouble("supply_index");
-            
-            // Adjust indices based on transaction
+    private void updateMarketTrends(Material material, int quantity, boolean isBuy) {
+        if (marketTable.claim(material)) {
+            // First transaction for this material: adjust from neutral without limits
             if (isBuy) {
-                // Buying increases demand
-                demandIndex = Math.min(2.0, demandIndex + (quantity * 0.01));
-                
-                // If demand is high, supply might decrease slightly
-                supplyIndex = Math.max(0.5, supplyIndex - (quantity * 0.002));
+                marketTable.adjustDemand(material, quantity * 0.01, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY);
             } else {
-                // Selling increases supply
-                supplyIndex = Math.min(2.0, supplyIndex + (quantity * 0.01));
-                
-                // If supply is high, demand might decrease slightly
-                demandIndex = Math.max(0.5, demandIndex - (quantity * 0.002));
+                marketTable.adjustSupply(material, quantity * 0.01, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY);
             }
+        } else if (isBuy) {
+            // Buying increases demand
+            marketTable.adjustDemand(material, quantity * 0.01, 0.5, 2.0);
             
-            // Update database
-            String update = "UPDATE " + databaseManager.getTablePrefix() + "market_trends SET "
-                + "demand_index = ?, supply_index = ?, last_updated = ? WHERE material = ?";
-            PreparedStatement updatePs = conn.prepareStatement(update);
-            updatePs.setDouble(1, demandIndex);
-            updatePs.setDouble(2, supplyIndex);
-            updatePs.setLong(3, currentTime);
-            updatePs.setString(4, materialName);
-            updatePs.executeUpdate();
-            updatePs.close();
+            // If demand is high, supply might decrease slightly
+            marketTable.adjustSupply(material, -quantity * 0.002, 0.5, 2.0);
         } else {
-            // Insert new entry with default values
-            double demandIndex = 1.0; // Neutral demand
-            double supplyIndex = 1.0; // Neutral supply
-            
-            // Adjust based on the first transaction
-            if (isBuy) {
-                demandIndex += (quantity * 0.01);
-            } else {
-                supplyIndex += (quantity * 0.01);
-            }
+            // Selling increases supply
+            marketTable.adjustSupply(material, quantity * 0.01, 0.5, 2.0);
             
-            String insert = "INSERT INTO " + databaseManager.getTablePrefix() + "market_trends "
-                + "(material, demand_index, supply_index, volatility, last_updated) "
-                + "VALUES (?, ?, ?, ?, ?)";
-            PreparedStatement insertPs = conn.prepareStatement(insert);
-            insertPs.setString(1, materialName);
-            insertPs.setDouble(2, demandIndex);
-            insertPs.setDouble(3, supplyIndex);
-            insertPs.setDouble(4, DEFAULT_VOLATILITY);
-            insertPs.setLong(5, currentTime);
-            insertPs.executeUpdate();
-            insertPs.close();
+            // If supply is high, demand might decrease slightly
+            marketTable.adjustDemand(material, -quantity * 0.002, 0.5, 2.0);
         }
-        
-        rs.close();
-        ps.close();
+        marketTable.markDirty(material);
     }
     
     /**
@@ -312,9 +415,10 @@ public class MarketAnalyzer {
      * @param basePrice The static base price for the item
      * @param item The shop item
      * @param isBuyPrice Whether this is a buy price calculation (true) or sell price (false)
+     * @param epoch The pricing epoch, which fixes the price fluctuation until the next epoch
      * @return The calculated dynamic price
      */
-    public double calculateDynamicPrice(double basePrice, ShopItem item, boolean isBuyPrice) {
+    public double calculateDynamicPrice(double basePrice, ShopItem item, boolean isBuyPrice, long epoch) {
         // Don't process null items
         if (item == null) {
             return basePrice;
@@ -323,17 +427,14 @@ public class MarketAnalyzer {
         // Get the material for this item
         Material material = item.getItem().getType();
         
-        // Get market data for this material
-        MarketData marketData = getMarketData(material);
-        
         // If no market data, return base price
-        if (marketData == null) {
+        if (!marketTable.contains(material)) {
             return basePrice;
         }
         
         // Calculate market multiplier based on supply and demand
-        double demandIndex = marketData.getDemandIndex();
-        double supplyIndex = marketData.getSupplyIndex();
+        double demandIndex = marketTable.getDemandIndex(material);
+        double supplyIndex = marketTable.getSupplyIndex(material);
         double marketMultiplier;
         
         if (isBuyPrice) {
@@ -354,8 +455,8 @@ public class MarketAnalyzer {
         // Apply natural price fluctuation if enabled
         double fluctuation = 0.0;
         if (fluctuationEnabled) {
-            // Random fluctuation within the configured magnitude
-            fluctuation = (Math.random() * 2 - 1) * fluctuationMagnitude;
+            // Fluctuation within the configured magnitude, the same for every quote in an epoch
+            fluctuation = (getEpochRandom(item.getId(), epoch) * 2 - 1) * fluctuationMagnitude;
         }
         
         // Calculate final price
@@ -370,309 +471,111 @@ public class MarketAnalyzer {
     }
     
     /**
-     * Calculates a price fluctuation factor based on time
+     * Gets a pseudo-random number that only changes when the item or the epoch changes
      * 
-     * @param material The material to calculate for
-     * @return The fluctuation factor
+     * @param itemId The shop item
+     * @param epoch The pricing epoch
+     * @return A number between 0 (inclusive) and 1 (exclusive)
      */
-    private double calculateFluctuationFactor(Material material) {
-        // Use a sine wave to create natural price fluctuations over time
-        // Each material has a slightly different phase to ensure prices don't all move together
-        double phase = material.ordinal() % 10 * 0.1;
-        double dayFraction = (System.currentTimeMillis() % 86400000) / 86400000.0;
-        double fluctuation = Math.sin(2 * Math.PI * (dayFraction + phase));
-        
-        // Get the market volatility
-        MarketData marketData = getMarketData(material);
-        double volatility = marketData != null ? marketData.getVolatility() : DEFAULT_VOLATILITY;
-        
-        // Calculate the fluctuation factor (range: 1-volatility to 1+volatility)
-        return 1.0 + (fluctuation * volatility);
+    private static double getEpochRandom(UUID itemId, long epoch) {
+        // SplitMix64 finalizer over the item id and epoch
+        long hash = itemId.getMostSignificantBits() ^ itemId.getLeastSignificantBits() ^ (epoch * 0x9E3779B97F4A7C15L);
+        hash = (hash ^ (hash >>> 30)) * 0xBF58476D1CE4E5B9L;
+        hash = (hash ^ (hash >>> 27)) * 0x94D049BB133111EBL;
+        hash ^= hash >>> 31;
+        return (hash >>> 11) * 0x1.0p-53;
     }
     
     /**
-     * Gets the market data for a material
+     * Gets a copy of the market data for a material
      * 
      * @param material The material to get data for
-     * @return The market data, or null if not found
+     * @return The market data, or null if the material has never been traded
      */
     public MarketData getMarketData(Material material) {
-        // Check cache first
-        if (marketDataCache.containsKey(material)) {
-            return marketDataCache.get(material);
-        }
-        
-        try {
-            Connection conn = databaseManager.getConnection();
-            String query = "SELECT * FROM " + databaseManager.getTablePrefix() + "market_trends WHERE material = ?";
-            PreparedStatement ps = conn.prepareStatement(query);
-            ps.setString(1, material.toString());
-            ResultSet rs = ps.executeQuery();
-            
-            MarketData data = null;
-            if (rs.next()) {
-                data = new MarketData(
-                    material,
-                    rs.getDouble("demand_index"),
-                    rs.getDouble("supply_index"),
-                    rs.getDouble("volatility"),
-                    rs.getLong("last_updated")
-                );
-                
-                // Cache the data
-                marketDataCache.put(material, data);
-            }
-            
-            rs.close();
-            ps.close();
-            conn.close();
-            
-            return data;
-        } catch (SQLException e) {
-            plugin.getLogger().log(Level.SEVERE, "Failed to retrieve market data for " + material, e);
-            return null;
-        }
+        return marketTable.snapshot(material);
     }
     
     /**
      * Gets the transaction data for a specific shop item
      * 
      * @param itemId The UUID of the shop item
-     * @return The transaction data, or null if not found
+     * @return The transaction data, or null if the item has never been traded
      */
     public ItemTransactionData getItemTransactionData(UUID itemId) {
-        // Check cache first
-        if (itemTransactionCache.containsKey(itemId)) {
-            return itemTransactionCache.get(itemId);
-        }
-        
-        try {
-            Connection conn = databaseManager.getConnection();
-            String query = "SELECT * FROM " + databaseManager.getTablePrefix() + "item_transactions WHERE item_id = ?";
-            PreparedStatement ps = conn.prepareStatement(query);
-            ps.setString(1, itemId.toString());
-            ResultSet rs = ps.executeQuery();
-            
-            ItemTransactionData data = null;
-            if (rs.next()) {
-                data = new ItemTransactionData(
-                    UUID.fromString(rs.getString("item_id")),
-                    Material.valueOf(rs.getString("material")),
-                    rs.getInt("buy_count"),
-                    rs.getInt("sell_count"),
-                    rs.getLong("last_buy_time"),
-                    rs.getLong("last_sell_time"),
-                    rs.getDouble("price_adjustment_factor")
-                );
-                
-                // Cache the data
-                itemTransactionCache.put(itemId, data);
-            }
-            
-            rs.close();
-            ps.close();
-            conn.close();
-            
-            return data;
-        } catch (SQLException e) {
-            plugin.getLogger().log(Level.SEVERE, "Failed to retrieve transaction data for item " + itemId, e);
-            return null;
-        }
+        return itemTransactions.get(itemId);
     }
     
     /**
-     * Performs a full market analysis to update prices based on trends
-     * Should be called periodically (e.g., once per day)
+     * Writes pending market data and price history right away rather than on the next flush interval.
+     * Demand and supply decay towards neutral whenever they are read, so there is nothing else to update.
+     * 
+     * @return The number of rows saved, including price history blocks
      */
-    public void performMarketAnalysis() {
-        if (!plugin.getConfigManager().isDynamicPricingEnabled()) {
-            return; // Dynamic pricing is disabled
-        }
-        
-        plugin.getLogger().info("Performing market analysis for dynamic pricing...");
-        
-        try {
-            Connection conn = databaseManager.getConnection();
-            
-            // Get all materials from the database
-            String query = "SELECT material FROM " + databaseManager.getTablePrefix() + "market_trends";
-            PreparedStatement ps = conn.prepareStatement(query);
-            ResultSet rs = ps.executeQuery();
-            
-            long currentTime = System.currentTimeMillis();
-            List<String> materials = new ArrayList<>();
-            
-            while (rs.next()) {
-                materials.add(rs.getString("material"));
-            }
-            
-            rs.close();
-            ps.close();
-            
-            // Analyze each material
-            for (String materialName : materials) {
-                try {
-                    Material material = Material.valueOf(materialName);
-                    normalizeMarketData(conn, material, currentTime);
-                } catch (IllegalArgumentException e) {
-                    // Skip invalid materials
-                    continue;
-                }
-            }
-            
-            conn.close();
-            
-            // Clear caches to ensure fresh data is loaded
-            marketDataCache.clear();
-            
-            plugin.getLogger().info("Market analysis completed for " + materials.size() + " materials");
-            
-        } catch (SQLException e) {
-            plugin.getLogger().severe("Error performing market analysis: " + e.getMessage());
-        }
+    public int flushMarketData() {
+        long start = System.nanoTime();
+        int saved = flush() + priceHistory.flush();
+        
+        long elapsed = (System.nanoTime() - start) / 1_000_000;
+        plugin.getLogger().info("Flushed market data in " + elapsed + " ms: " + marketTable.size()
+                + " materials tracked, saved " + saved + " rows");
+        return saved;
     }
     
     /**
-     * Normalizes market data for a material over time
-     * This gradually returns prices to baseline if there's no activity
+     * Gets the half-life of demand and supply indices
      * 
-     * @param conn The database connection
-     * @param material The material to normalize
-     * @param currentTime The current time in milliseconds
-     * @throws SQLException If a database error occurs
+     * @return The half-life in milliseconds, or 0 if indices do not decay
      */
-    private void normalizeMarketData(Connection conn, Material material, long currentTime) throws SQLException {
-        String query = "SELECT * FROM " + databaseManager.getTablePrefix() + "market_trends WHERE material = ?";
-        PreparedStatement ps = conn.prepareStatement(query);
-        ps.setString(1, material.toString());
-        ResultSet rs = ps.executeQuery();
-        
-        if (rs.next()) {
-            double demandIndex = rs.getDouble("demand_index");
-            double supplyIndex = rs.getDouble("supply_index");
-            long lastUpdated = rs.getLong("last_updated");
-            
-            // Calculate how long it's been since the last update
-            // The longer it's been, the more we normalize
-            double daysSinceUpdate = (currentTime - lastUpdated) / (1000.0 * 60 * 60 * 24);
-            
-            // Skip recent updates
-            if (daysSinceUpdate < 0.5) { // Less than 12 hours
-                return;
-            }
-            
-            // Calculate normalization factor based on time and config
-            double normalizationFactor = daysSinceUpdate * normalizationRate;
-            
-            // Limit the maximum normalization
-            normalizationFactor = Math.min(normalizationFactor, 0.5);
-            
-            // Normalize demand and supply indices towards 1.0 (neutral)
-            demandIndex = demandIndex + normalizationFactor * (1.0 - demandIndex);
-            supplyIndex = supplyIndex + normalizationFactor * (1.0 - supplyIndex);
-            
-            // Update the database
-            String update = "UPDATE " + databaseManager.getTablePrefix() + "market_trends SET " +
-                    "demand_index = ?, supply_index = ?, last_updated = ? WHERE material = ?";
-            PreparedStatement updatePs = conn.prepareStatement(update);
-            updatePs.setDouble(1, demandIndex);
-            updatePs.setDouble(2, supplyIndex);
-            updatePs.setLong(3, currentTime);
-            updatePs.setString(4, material.toString());
-            updatePs.executeUpdate();
-            updatePs.close();
-        }
-        
-        rs.close();
-        ps.close();
+    private long getDecayHalfLifeMillis() {
+        return (long) (Math.max(0, decayHalfLife) * 60 * 60 * 1000);
     }
     
     /**
-     * Gets a summary of current market trends
+     * Gets the price history of every traded material
      * 
-     * @return A map containing material to price trend (positive = rising, negative = falling)
+     * @return The price history
      */
-    public Map<Material, Double> getMarketTrendSummary() {
-        Map<Material, Double> trends = new HashMap<>();
-        
-        try {
-            Connection conn = databaseManager.getConnection();
-            String query = "SELECT material, demand_index, supply_index FROM " 
-                + databaseManager.getTablePrefix() + "market_trends";
-            PreparedStatement ps = conn.prepareStatement(query);
-            ResultSet rs = ps.executeQuery();
-            
-            while (rs.next()) {
-                String materialName = rs.getString("material");
-                double demandIndex = rs.getDouble("demand_index");
-                double supplyIndex = rs.getDouble("supply_index");
-                
-                try {
-                    Material material = Material.valueOf(materialName);
-                    
-                    // Calculate price trend (-1.0 to 1.0, where positive means rising price)
-                    double trend = demandIndex - supplyIndex;
-                    trends.put(material, trend);
-                } catch (IllegalArgumentException e) {
-                    // Invalid material name, ignore
-                }
-            }
-            
-            rs.close();
-            ps.close();
-            conn.close();
-        } catch (SQLException e) {
-            plugin.getLogger().log(Level.SEVERE, "Failed to get market trend summary", e);
-        }
-        
-        return trends;
+    public PriceHistory getPriceHistory() {
+        return priceHistory;
+    }
+    
+    /**
+     * Gets the current price trend of a material
+     * 
+     * @param material The material
+     * @return The trend value (positive = rising price, negative = falling price), or 0 if the material is neutral
+     */
+    public double getTrend(Material material) {
+        return marketTable.getTrend(material);
     }
     
     /**
      * Gets the top trending items (highest price increases)
      * 
      * @param limit The maximum number of items to return
-     * @return A map of materials to price trend values, sorted by highest trend
+     * @return A map of materials to price trend values, in order of highest trend first
      */
     public Map<Material, Double> getTopTrendingItems(int limit) {
-        Map<Material, Double> trends = getMarketTrendSummary();
-        
-        // Sort by trend value (highest first)
-        return trends.entrySet().stream()
-            .sorted(Map.Entry.<Material, Double>comparingByValue().reversed())
-            .limit(limit)
-            .collect(java.util.stream.Collectors.toMap(
-                Map.Entry::getKey, 
-                Map.Entry::getValue, 
-                (e1, e2) -> e1, 
-                HashMap::new
-            ));
+        return withTrends(marketTable.getRising(limit));
     }
     
     /**
-     * Clears the trend data after prices have been updated
-     * This prevents the same trends from affecting prices again
+     * Gets the top falling items (highest price decreases)
+     * 
+     * @param limit The maximum number of items to return
+     * @return A map of materials to price trend values, in order of lowest trend first
      */
-    public void clearTrendData() {
-        try {
-            Connection conn = databaseManager.getConnection();
-            
-            // Reset all demand and supply indices to 1.0 (neutral)
-            String update = "UPDATE " + databaseManager.getTablePrefix() + "market_trends " +
-                            "SET demand_index = 1.0, supply_index = 1.0";
-            
-            PreparedStatement ps = conn.prepareStatement(update);
-            ps.executeUpdate();
-            ps.close();
-            conn.close();
-            
-            // Also clear the cache
-            marketDataCache.clear();
-            
-            plugin.getLogger().info("Market trend data has been cleared after price updates");
-        } catch (SQLException e) {
-            plugin.getLogger().log(Level.SEVERE, "Failed to clear market trend data", e);
+    public Map<Material, Double> getTopFallingItems(int limit) {
+        return withTrends(marketTable.getFalling(limit));
+    }
+    
+    private Map<Material, Double> withTrends(List<Material> materials) {
+        Map<Material, Double> trends = new LinkedHashMap<>();
+        for (Material material : materials) {
+            trends.put(material, marketTable.getTrend(material));
         }
+        return trends;
     }
     
     /**
@@ -826,32 +729,39 @@ public class MarketAnalyzer {
      * @return The suggested price
      */
     public double getSuggestedPrice(Material material, boolean isBuyPrice) {
+        double suggestedPrice = getMarketValue(material, isBuyPrice);
+        
+        // Add a small random factor for variety (±5%)
+        double randomFactor = 0.95 + Math.random() * 0.1;
+        suggestedPrice *= randomFactor;
+        
+        // Round to nearest 0.5
+        return Math.round(suggestedPrice * 2) / 2.0;
+    }
+
+    /**
+     * Gets the market value of a material from its base price and current market trends
+     * 
+     * @param material The material
+     * @param isBuyPrice Whether this is for a buy price or sell price
+     * @return The market value
+     */
+    public double getMarketValue(Material material, boolean isBuyPrice) {
         // Get base price
         double basePrice = getBasePrice(material);
         
-        // Get market data
-        MarketData marketData = getMarketData(material);
-        
-        // Calculate adjustment based on market trends
-        double demandIndex = marketData.getDemandIndex();
-        double supplyIndex = marketData.getSupplyIndex();
+        // Calculate adjustment based on market trends (untraded materials are neutral)
+        double demandIndex = marketTable.getDemandIndex(material);
+        double supplyIndex = marketTable.getSupplyIndex(material);
         
         // Different calculations for buy and sell prices
-        double suggestedPrice;
         if (isBuyPrice) {
             // Buy price increases with demand, decreases with supply
-            suggestedPrice = basePrice * (1 + (demandIndex - 0.5) * 0.4 - (supplyIndex - 0.5) * 0.3);
+            return basePrice * (1 + (demandIndex - 0.5) * 0.4 - (supplyIndex - 0.5) * 0.3);
         } else {
             // Sell price increases with supply, decreases with demand
-            suggestedPrice = basePrice * 0.8 * (1 - (demandIndex - 0.5) * 0.3 + (supplyIndex - 0.5) * 0.4);
+            return basePrice * 0.8 * (1 - (demandIndex - 0.5) * 0.3 + (supplyIndex - 0.5) * 0.4);
         }
-        
-        // Add a small random factor for variety (±5%)
-        double randomFactor = 0.95 + Math.random() * 0.1;
-        suggestedPrice *= randomFactor;
-        
-        // Round to nearest 0.5
-        return Math.round(suggestedPrice * 2) / 2.0;
     }
 
     /**
@@ -862,16 +772,14 @@ public class MarketAnalyzer {
      * @return The profit margin percentage (positive means profitable), or 0 if not applicable
      */
     public double getCraftingProfitMargin(Material material) {
-        // Create a dummy item to check crafting info
-        ItemStack itemStack = new ItemStack(material);
-        ShopItem dummyItem = new ShopItem(itemStack, 0.0, 0.0, "coin", -1);
-        
-        if (!dummyItem.isCrafted()) {
+        CraftingRelationManager craftingManager = plugin.getCraftingRelationManager();
+        if (craftingManager == null || !craftingManager.isCraftedItem(material)) {
             return 0.0;
         }
         
-        double craftCost = dummyItem.getCraftingValue();
-        double marketValue = getSuggestedPrice(material, true);
+        // Add a crafting fee (15% of component cost)
+        double craftCost = craftingManager.getCraftCost(material) * 1.15;
+        double marketValue = getMarketValue(material, true);
         
         if (craftCost <= 0 || marketValue <= 0) {
             return 0.0;
@@ -915,10 +823,9 @@ public class MarketAnalyzer {
      * @return The volatility factor (higher = more volatile)
      */
     private double getMaterialVolatility(Material material) {
-        // Get from database if available
-        MarketData marketData = getMarketData(material);
-        if (marketData != null && marketData.getVolatility() > 0) {
-            return marketData.getVolatility();
+        // Get from market data if available
+        if (marketTable.contains(material) && marketTable.getVolatility(material) > 0) {
+            return marketTable.getVolatility(material);
         }
         
         // Default volatilities for material categories
@@ -953,8 +860,8 @@ public class MarketAnalyzer {
     public void updateConfigSettings() {
         this.volatilityMultiplier = configManager.getVolatilityMultiplier();
         this.maxPriceChange = configManager.getMaxPriceChange();
-        this.normalizationRate = configManager.getNormalizationRate();
-        this.analysisIntervalMinutes = configManager.getAnalysisInterval();
+        this.decayHalfLife = configManager.getDecayHalfLife();
+        marketTable.setHalfLife(getDecayHalfLifeMillis());
         this.useCraftingRelationships = configManager.useCraftingRelationships();
         this.fluctuationEnabled = configManager.isPriceFluctuationEnabled();
         this.fluctuationMagnitude = configManager.getFluctuationMagnitude();
@@ -969,42 +876,17 @@ public class MarketAnalyzer {
      * @return A multiplier for the price based on crafting costs
      */
     private double getCraftingMultiplier(ShopItem item) {
-        if (!item.isCrafted()) {
+        CraftingRelationManager craftingManager = plugin.getCraftingRelationManager();
+        Material material = item.getItem().getType();
+        if (craftingManager == null || !craftingManager.isCraftedItem(material)) {
             return 1.0;
         }
         
-        // Get the components and their costs
-        Map<Material, Integer> components = item.getCraftingComponents();
-        if (components == null || components.isEmpty()) {
-            return 1.0;
-        }
-        
-        // Calculate the base cost of crafting
-        double craftingCost = 0.0;
-        for (Map.Entry<Material, Integer> entry : components.entrySet()) {
-            Material componentMaterial = entry.getKey();
-            int quantity = entry.getValue();
-            
-            // Get component's market value
-            MarketData componentData = getMarketData(componentMaterial);
-            double componentPrice = plugin.getShopManager().getDefaultBuyPrice(new ItemStack(componentMaterial));
-            
-            // Adjust component price by market data if available
-            if (componentData != null) {
-                double demandIndex = componentData.getDemandIndex();
-                double supplyIndex = componentData.getSupplyIndex();
-                componentPrice *= (demandIndex / supplyIndex);
-            }
-            
-            // Add to total cost
-            craftingCost += componentPrice * quantity;
-        }
-        
-        // Add crafting fee (15% of component cost)
-        craftingCost *= 1.15;
+        // Memoized cost of the cheapest way to obtain the components, plus a crafting fee (15%)
+        double craftingCost = craftingManager.getCraftCost(material) * 1.15;
         
         // Calculate the multiplier based on the relation between crafting cost and item's base price
-        double basePrice = plugin.getShopManager().getDefaultBuyPrice(item.getItem());
+        double basePrice = plugin.getShopManager().getDefaultBuyPrice(material);
         
         if (basePrice <= 0) {
             return 1.0;
@@ -1019,18 +901,40 @@ public class MarketAnalyzer {
     }
 
     /**
-     * Clears the cache for a specific material
-     * Used when resetting pricing data for a material
+     * Gets the current demand to supply ratio of a material
      * 
-     * @param material The material to clear from cache
+     * @param material The material
+     * @return The ratio, or 1.0 if the material has no market data
      */
-    public void clearCacheForMaterial(Material material) {
+    public double getMarketMultiplier(Material material) {
+        if (!marketTable.contains(material)) {
+            return 1.0;
+        }
+        return marketTable.getDemandIndex(material) / marketTable.getSupplyIndex(material);
+    }
+
+    /**
+     * Sets the demand and supply of a material back to neutral, keeping its volatility
+     * 
+     * @param material The material
+     */
+    public void neutralizeMarketData(Material material) {
+        if (material != null && marketTable.contains(material)) {
+            marketTable.put(material, 1.0, 1.0, marketTable.getVolatility(material), System.currentTimeMillis());
+            marketTable.markDirty(material);
+        }
+    }
+    
+    /**
+     * Resets the market data for a specific material to neutral demand and supply
+     * 
+     * @param material The material to reset
+     * @param volatility The volatility to start from
+     */
+    public void resetMarketData(Material material, double volatility) {
         if (material != null) {
-            // Remove from market data cache
-            marketDataCache.remove(material);
-            
-            // Log the cache clear
-            plugin.getLogger().info("Cleared market data cache for " + material.name());
+            marketTable.put(material, 1.0, 1.0, volatility, System.currentTimeMillis());
+            marketTable.markDirty(material);
         }
     }
 } 
\ No newline at end of file
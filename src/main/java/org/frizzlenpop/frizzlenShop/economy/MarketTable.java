@@ -0,0 +1,294 @@
+package org.frizzlenpop.frizzlenShop.economy;
+
+import org.bukkit.Material;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Holds the market indices of every material in parallel primitive arrays indexed by {@link Material#ordinal()}.
+ * Fields are stored as raw long bits so each one can be updated lock-free with compare-and-set,
+ * and reads never allocate. The fields of one row are updated independently, so a reader can see a row
+ * halfway through a reset, but every field on its own is always a valid value.
+ * <p>
+ * Demand and supply decay exponentially towards the neutral 1.0 with a configurable half-life. Each index
+ * is stored as its distance from neutral, as a float, packed together with the second it was measured at.
+ * The decay is applied whenever the index is read or changed, so no table-wide sweep is needed.
+ */
+final class MarketTable {
+
+    private static final Material[] MATERIALS = Material.values();
+
+    // Largest exponent of a trend score, far below where a double overflows
+    private static final double MAX_SCORE_EXPONENT = 600;
+
+    private final AtomicLongArray demand = new AtomicLongArray(MATERIALS.length);
+    private final AtomicLongArray supply = new AtomicLongArray(MATERIALS.length);
+    private final AtomicLongArray volatility = new AtomicLongArray(MATERIALS.length);
+    private final AtomicIntegerArray present = new AtomicIntegerArray(MATERIALS.length);
+    private final AtomicIntegerArray dirty = new AtomicIntegerArray(MATERIALS.length);
+    private final TrendTracker trends = new TrendTracker();
+
+    // Packed timestamps count seconds from this time
+    private final long baseTime = System.currentTimeMillis();
+    private volatile double decayRate;
+
+    // Trend scores grow from this second on; moved forward before they could overflow
+    private int scoreEpoch;
+
+    /**
+     * Create a table where every material starts at neutral demand and supply
+     *
+     * @param defaultVolatility The volatility of materials that have never been traded
+     * @param halfLife The half-life of demand and supply, in milliseconds
+     */
+    MarketTable(double defaultVolatility, long halfLife) {
+        setHalfLife(halfLife);
+        long volatilityBits = Double.doubleToRawLongBits(defaultVolatility);
+        for (int i = 0; i < MATERIALS.length; i++) {
+            volatility.set(i, volatilityBits);
+        }
+    }
+
+    /**
+     * Set how fast demand and supply return to neutral
+     *
+     * @param halfLife The half-life in milliseconds, or 0 to keep indices until they are traded again
+     */
+    void setHalfLife(long halfLife) {
+        decayRate = halfLife > 0 ? Math.log(2) / (halfLife / 1000.0) : 0;
+
+        // Trend scores depend on the decay rate
+        for (int i = 0; i < MATERIALS.length; i++) {
+            if (present.get(i) == 1) {
+                rescore(MATERIALS[i]);
+            }
+        }
+    }
+
+    /**
+     * Check whether a material has market data
+     *
+     * @param material The material
+     * @return True if the material has been traded or loaded
+     */
+    boolean contains(Material material) {
+        return present.get(material.ordinal()) == 1;
+    }
+
+    /**
+     * Mark a material as traded
+     *
+     * @param material The material
+     * @return True if this call added the material, false if it already had market data
+     */
+    boolean claim(Material material) {
+        return present.compareAndSet(material.ordinal(), 0, 1);
+    }
+
+    /**
+     * Set every field of a material at once
+     *
+     * @param material The material
+     * @param demandIndex The demand index
+     * @param supplyIndex The supply index
+     * @param volatilityValue The volatility
+     * @param measuredAt The time the indices were measured at; they decay from there
+     */
+    void put(Material material, double demandIndex, double supplyIndex, double volatilityValue, long measuredAt) {
+        int i = material.ordinal();
+        demand.set(i, pack(demandIndex, measuredAt));
+        supply.set(i, pack(supplyIndex, measuredAt));
+        volatility.set(i, Double.doubleToRawLongBits(volatilityValue));
+        present.set(i, 1);
+        rescore(material);
+    }
+
+    double getDemandIndex(Material material) {
+        return valueAt(demand.get(material.ordinal()), System.currentTimeMillis());
+    }
+
+    double getSupplyIndex(Material material) {
+        return valueAt(supply.get(material.ordinal()), System.currentTimeMillis());
+    }
+
+    double getVolatility(Material material) {
+        return Double.longBitsToDouble(volatility.get(material.ordinal()));
+    }
+
+    /**
+     * Add to the demand index. Increases are capped at {@code max} and decreases at {@code min},
+     * so a value that is already outside the range is never pulled into it by a change the other way.
+     *
+     * @param material The material
+     * @param delta The change
+     * @param min The lower limit for decreases
+     * @param max The upper limit for increases
+     */
+    void adjustDemand(Material material, double delta, double min, double max) {
+        adjust(demand, material.ordinal(), delta, min, max);
+        rescore(material);
+    }
+
+    /**
+     * Add to the supply index, limited the same way as {@link #adjustDemand}
+     *
+     * @param material The material
+     * @param delta The change
+     * @param min The lower limit for decreases
+     * @param max The upper limit for increases
+     */
+    void adjustSupply(Material material, double delta, double min, double max) {
+        adjust(supply, material.ordinal(), delta, min, max);
+        rescore(material);
+    }
+
+    /**
+     * Get the price trend of a material: its demand index minus its supply index
+     *
+     * @param material The material
+     * @return The trend (positive = rising price, negative = falling price)
+     */
+    double getTrend(Material material) {
+        return getDemandIndex(material) - getSupplyIndex(material);
+    }
+
+    /**
+     * Get a score that orders materials the same way as their current trend at any point in time.
+     * The trend is the score times {@code exp(-decayRate * (now - scoreEpoch))}, a factor shared by every
+     * material, so the score only changes when the material is traded.
+     *
+     * @param material The material
+     * @return The trend score
+     */
+    double getTrendScore(Material material) {
+        int i = material.ordinal();
+        return scoreOf(demand.get(i)) - scoreOf(supply.get(i));
+    }
+
+    /**
+     * Get the materials with the strongest rising trend
+     *
+     * @param limit The maximum number of materials
+     * @return The materials with a positive trend, strongest first
+     */
+    List<Material> getRising(int limit) {
+        return trends.getRising(limit);
+    }
+
+    /**
+     * Get the materials with the strongest falling trend
+     *
+     * @param limit The maximum number of materials
+     * @return The materials with a negative trend, strongest first
+     */
+    List<Material> getFalling(int limit) {
+        return trends.getFalling(limit);
+    }
+
+    void markDirty(Material material) {
+        dirty.set(material.ordinal(), 1);
+    }
+
+    /**
+     * Clear the changed flag of a material
+     *
+     * @param material The material
+     * @return True if the material had changed since the flag was last cleared
+     */
+    boolean clearDirty(Material material) {
+        return dirty.getAndSet(material.ordinal(), 0) == 1;
+    }
+
+    /**
+     * Copy the current values of a material, decayed to the current time
+     *
+     * @param material The material
+     * @return The market data, or null if the material has no market data
+     */
+    MarketAnalyzer.MarketData snapshot(Material material) {
+        if (!contains(material)) {
+            return null;
+        }
+        int i = material.ordinal();
+        long now = System.currentTimeMillis();
+        return new MarketAnalyzer.MarketData(material, valueAt(demand.get(i), now), valueAt(supply.get(i), now),
+                getVolatility(material), now);
+    }
+
+    /**
+     * Get every material that has market data
+     *
+     * @return The materials
+     */
+    List<Material> getMaterials() {
+        List<Material> materials = new ArrayList<>();
+        for (int i = 0; i < MATERIALS.length; i++) {
+            if (present.get(i) == 1) {
+                materials.add(MATERIALS[i]);
+            }
+        }
+        return materials;
+    }
+
+    /**
+     * Count the materials that have market data
+     *
+     * @return The number of materials
+     */
+    int size() {
+        int size = 0;
+        for (int i = 0; i < MATERIALS.length; i++) {
+            size += present.get(i);
+        }
+        return size;
+    }
+
+    private void adjust(AtomicLongArray array, int index, double delta, double min, double max) {
+        long now = System.currentTimeMillis();
+        long current;
+        long updated;
+        do {
+            current = array.get(index);
+            double value = valueAt(current, now) + delta;
+            value = delta >= 0 ? Math.min(max, value) : Math.max(min, value);
+            updated = pack(value, now);
+        } while (!array.compareAndSet(index, current, updated));
+    }
+
+    private void rescore(Material material) {
+        synchronized (trends) {
+            int now = (int) Math.floorDiv(System.currentTimeMillis() - baseTime, 1000L);
+            if ((now - scoreEpoch) * decayRate > MAX_SCORE_EXPONENT) {
+                scoreEpoch = now;
+                for (int i = 0; i < MATERIALS.length; i++) {
+                    if (present.get(i) == 1) {
+                        trends.update(MATERIALS[i], getTrendScore(MATERIALS[i]));
+                    }
+                }
+            }
+            trends.update(material, getTrendScore(material));
+        }
+    }
+
+    private double scoreOf(long packed) {
+        double deviation = Float.intBitsToFloat((int) (packed >>> 32));
+        return decayRate == 0 ? deviation : deviation * Math.exp(decayRate * ((int) packed - scoreEpoch));
+    }
+
+    private long pack(double value, long time) {
+        int seconds = (int) Math.floorDiv(time - baseTime, 1000L);
+        return ((long) Float.floatToRawIntBits((float) (value - 1.0)) << 32) | (seconds & 0xFFFFFFFFL);
+    }
+
+    private double valueAt(long packed, long time) {
+        double deviation = Float.intBitsToFloat((int) (packed >>> 32));
+        double elapsed = (time - baseTime) / 1000.0 - (int) packed;
+        if (elapsed <= 0 || decayRate == 0) {
+            return 1.0 + deviation;
+        }
+        return 1.0 + deviation * Math.exp(-decayRate * elapsed);
+    }
+}
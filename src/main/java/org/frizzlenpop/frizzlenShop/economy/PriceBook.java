@@ -0,0 +1,106 @@
+package org.frizzlenpop.frizzlenShop.economy;
+
+import org.frizzlenpop.frizzlenShop.shops.ShopItem;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * An immutable table of the dynamic buy and sell prices of every shop item for one pricing epoch.
+ * A price book is built off the main thread and then published as a whole, so every quote taken during
+ * an epoch, whether shown in a menu or charged for a purchase, reads the same price.
+ */
+public final class PriceBook {
+
+    static final PriceBook EMPTY = new PriceBook(0, 0, new HashMap<>(), new double[0], new double[0], new double[0], new double[0]);
+
+    private final long epoch;
+    private final long createdAt;
+    private final Map<UUID, Integer> slots;
+    private final double[] baseBuyPrices;
+    private final double[] baseSellPrices;
+    private final double[] buyPrices;
+    private final double[] sellPrices;
+
+    private PriceBook(long epoch, long createdAt, Map<UUID, Integer> slots, double[] baseBuyPrices,
+                      double[] baseSellPrices, double[] buyPrices, double[] sellPrices) {
+        this.epoch = epoch;
+        this.createdAt = createdAt;
+        this.slots = slots;
+        this.baseBuyPrices = baseBuyPrices;
+        this.baseSellPrices = baseSellPrices;
+        this.buyPrices = buyPrices;
+        this.sellPrices = sellPrices;
+    }
+
+    /**
+     * Calculate the prices of a set of shop items
+     *
+     * @param epoch The pricing epoch of the new book
+     * @param items The shop items
+     * @param baseBuyPrices The static buy price of each item, read when the items were collected
+     * @param baseSellPrices The static sell price of each item, read when the items were collected
+     * @param analyzer The market analyzer to calculate prices with
+     * @return The price book
+     */
+    static PriceBook build(long epoch, List<ShopItem> items, double[] baseBuyPrices, double[] baseSellPrices,
+                           MarketAnalyzer analyzer) {
+        int size = items.size();
+        Map<UUID, Integer> slots = new HashMap<>(size * 4 / 3 + 1);
+        double[] buyPrices = new double[size];
+        double[] sellPrices = new double[size];
+
+        for (int i = 0; i < size; i++) {
+            ShopItem item = items.get(i);
+            slots.put(item.getId(), i);
+            buyPrices[i] = analyzer.calculateDynamicPrice(baseBuyPrices[i], item, true, epoch);
+            sellPrices[i] = analyzer.calculateDynamicPrice(baseSellPrices[i], item, false, epoch);
+        }
+
+        return new PriceBook(epoch, System.currentTimeMillis(), slots, baseBuyPrices, baseSellPrices, buyPrices, sellPrices);
+    }
+
+    /**
+     * Get the buy price of an item
+     *
+     * @param itemId The shop item
+     * @param staticPrice The current static buy price of the item
+     * @return The buy price, or {@link Double#NaN} if the item is not in this book or its static price has changed
+     */
+    public double getBuyPrice(UUID itemId, double staticPrice) {
+        Integer slot = slots.get(itemId);
+        if (slot == null || baseBuyPrices[slot] != staticPrice) {
+            return Double.NaN;
+        }
+        return buyPrices[slot];
+    }
+
+    /**
+     * Get the sell price of an item
+     *
+     * @param itemId The shop item
+     * @param staticPrice The current static sell price of the item
+     * @return The sell price, or {@link Double#NaN} if the item is not in this book or its static price has changed
+     */
+    public double getSellPrice(UUID itemId, double staticPrice) {
+        Integer slot = slots.get(itemId);
+        if (slot == null || baseSellPrices[slot] != staticPrice) {
+            return Double.NaN;
+        }
+        return sellPrices[slot];
+    }
+
+    public long getEpoch() {
+        return epoch;
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    public int size() {
+        return buyPrices.length;
+    }
+}
@@ -0,0 +1,148 @@
+package org.frizzlenpop.frizzlenShop.economy;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A thread-safe, size-bounded cache of calculated prices per shop item.
+ * Every entry expires a fixed time after it was stored, and an entry is only used while the base price it was
+ * calculated from is unchanged. Since all entries live equally long, insertion order is also expiry order,
+ * so expired and surplus entries are evicted from the head of a queue without scanning the map.
+ */
+public final class PriceCache {
+
+    private final Map<UUID, Entry> entries = new ConcurrentHashMap<>();
+    private final Queue<Entry> order = new ConcurrentLinkedQueue<>();
+    private final long expiryTime;
+    private final int maxSize;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Create a price cache
+     *
+     * @param expiryTime How long an entry stays valid, in milliseconds
+     * @param maxSize The maximum number of entries
+     */
+    public PriceCache(long expiryTime, int maxSize) {
+        this.expiryTime = expiryTime;
+        this.maxSize = Math.max(1, maxSize);
+    }
+
+    /**
+     * Get a cached price
+     *
+     * @param itemId The shop item
+     * @param basePrice The base price the caller would calculate from
+     * @return The cached price, or {@link Double#NaN} if there is no valid entry
+     */
+    public double get(UUID itemId, double basePrice) {
+        Entry entry = entries.get(itemId);
+        if (entry == null || entry.basePrice != basePrice || entry.expiresAt <= System.currentTimeMillis()) {
+            misses.increment();
+            return Double.NaN;
+        }
+        hits.increment();
+        return entry.price;
+    }
+
+    /**
+     * Store a calculated price
+     *
+     * @param itemId The shop item
+     * @param basePrice The base price the price was calculated from
+     * @param price The calculated price
+     */
+    public void put(UUID itemId, double basePrice, double price) {
+        Entry entry = new Entry(itemId, basePrice, price, System.currentTimeMillis() + expiryTime);
+        entries.put(itemId, entry);
+        order.add(entry);
+
+        if (entries.size() > maxSize) {
+            synchronized (order) {
+                while (entries.size() > maxSize) {
+                    Entry oldest = order.poll();
+                    if (oldest == null) {
+                        break;
+                    }
+                    evict(oldest);
+                }
+            }
+        }
+    }
+
+    /**
+     * Remove the cached price of one shop item
+     *
+     * @param itemId The shop item
+     */
+    public void invalidate(UUID itemId) {
+        entries.remove(itemId);
+    }
+
+    /**
+     * Remove every cached price
+     */
+    public void clear() {
+        synchronized (order) {
+            entries.clear();
+            order.clear();
+        }
+    }
+
+    /**
+     * Remove every expired entry
+     */
+    public void purgeExpired() {
+        long now = System.currentTimeMillis();
+        synchronized (order) {
+            Entry oldest;
+            while ((oldest = order.peek()) != null && oldest.expiresAt <= now) {
+                evict(order.poll());
+            }
+        }
+    }
+
+    private void evict(Entry entry) {
+        // Entries that were replaced or invalidated are no longer mapped and only leave the queue
+        if (entries.remove(entry.itemId, entry)) {
+            evictions.increment();
+        }
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    private static final class Entry {
+        private final UUID itemId;
+        private final double basePrice;
+        private final double price;
+        private final long expiresAt;
+
+        private Entry(UUID itemId, double basePrice, double price, long expiresAt) {
+            this.itemId = itemId;
+            this.basePrice = basePrice;
+            this.price = price;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,542 @@
+package org.frizzlenpop.frizzlenShop.economy;
+
+import org.bukkit.Material;
+import org.frizzlenpop.frizzlenShop.FrizzlenShop;
+import org.frizzlenpop.frizzlenShop.utils.DatabaseManager;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.logging.Level;
+
+/**
+ * Records the price of every trade as open/high/low/close candles per material, at one-minute, one-hour and
+ * one-day resolution.
+ * <p>
+ * Recent candles are kept in a fixed-size ring buffer per material and resolution, so menus and commands read
+ * them without touching the database. Every candle is also persisted, grouped into blocks of consecutive periods
+ * that are encoded with {@link CandleCodec} and stored one row per material, resolution and block. The rows are
+ * keyed in that order, so a range query only reads the blocks that overlap the requested window.
+ */
+public final class PriceHistory {
+
+    private static final Material[] MATERIALS = Material.values();
+    private static final Resolution[] RESOLUTIONS = Resolution.values();
+
+    private final FrizzlenShop plugin;
+    private final DatabaseManager databaseManager;
+
+    // Ring buffers per material ordinal, one per resolution, created on the first trade
+    private final AtomicReferenceArray<CandleRing[]> series = new AtomicReferenceArray<>(MATERIALS.length);
+
+    /**
+     * Create an empty price history
+     *
+     * @param plugin The plugin instance
+     * @param databaseManager The database manager to persist candles with
+     */
+    PriceHistory(FrizzlenShop plugin, DatabaseManager databaseManager) {
+        this.plugin = plugin;
+        this.databaseManager = databaseManager;
+    }
+
+    /**
+     * Create the price history table
+     */
+    void initializeDatabase() {
+        try (Connection conn = databaseManager.getWriteConnection()) {
+            // Candles are written continuously, so they go to the history database when one is attached
+            String table = databaseManager.getHistoryTableName(conn, getTableName());
+            databaseManager.executeUpdate(conn, "CREATE TABLE IF NOT EXISTS " + table + " ("
+                    + "material VARCHAR(64) NOT NULL, "
+                    + "resolution VARCHAR(8) NOT NULL, "
+                    + "block_start BIGINT NOT NULL, "
+                    + "candles BLOB, "
+                    + "PRIMARY KEY (material, resolution, block_start))");
+        } catch (SQLException e) {
+            plugin.getLogger().log(Level.SEVERE, "Failed to initialize price history table", e);
+        }
+    }
+
+    /**
+     * Load the two most recent blocks of every resolution into the ring buffers, so candles that were
+     * still open at the last shutdown continue where they left off
+     *
+     * @param materials The materials to load history for
+     */
+    void load(Collection<Material> materials) {
+        long now = System.currentTimeMillis();
+        int loaded = 0;
+        try (Connection conn = databaseManager.getConnection();
+             PreparedStatement ps = conn.prepareStatement("SELECT block_start, candles FROM " + getTableName()
+                     + " WHERE material = ? AND resolution = ? AND block_start >= ? ORDER BY block_start")) {
+            for (Material material : materials) {
+                CandleRing[] rings = getSeries(material);
+                for (Resolution resolution : RESOLUTIONS) {
+                    ps.setString(1, material.toString());
+                    ps.setString(2, resolution.getLabel());
+                    ps.setLong(3, resolution.getBlockStart(now) - resolution.getBlockMillis());
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            for (Candle candle : CandleCodec.decode(rs.getBytes("candles"), rs.getLong("block_start"),
+                                    resolution.getPeriodMillis())) {
+                                rings[resolution.ordinal()].load(candle);
+                                loaded++;
+                            }
+                        }
+                    }
+                }
+            }
+            plugin.getLogger().info("Loaded " + loaded + " recent price candles");
+        } catch (SQLException e) {
+            plugin.getLogger().log(Level.SEVERE, "Failed to load price history", e);
+        }
+    }
+
+    /**
+     * Record a trade
+     *
+     * @param material The material that was traded
+     * @param price The price per item
+     * @param quantity The number of items
+     */
+    public void record(Material material, double price, int quantity) {
+        if (material == null || quantity <= 0 || !(price > 0) || Double.isInfinite(price)) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        for (CandleRing ring : getSeries(material)) {
+            ring.record(now, price, quantity);
+        }
+    }
+
+    /**
+     * Get the most recent candles of a material from memory
+     *
+     * @param material The material
+     * @param resolution The candle resolution
+     * @param count The maximum number of candles
+     * @return The candles, oldest first
+     */
+    public List<Candle> getRecentCandles(Material material, Resolution resolution, int count) {
+        CandleRing[] rings = series.get(material.ordinal());
+        if (rings == null) {
+            return Collections.emptyList();
+        }
+        return rings[resolution.ordinal()].getRecent(count);
+    }
+
+    /**
+     * Get the candles of a material in a time range. Ranges that reach further back than the ring buffer
+     * are read from the database, so this should be called off the main thread.
+     *
+     * @param material The material
+     * @param resolution The candle resolution
+     * @param from The start of the range, inclusive
+     * @param to The end of the range, inclusive
+     * @return The candles that start in the range, oldest first
+     */
+    public List<Candle> getCandles(Material material, Resolution resolution, long from, long to) {
+        CandleRing[] rings = series.get(material.ordinal());
+        CandleRing ring = rings != null ? rings[resolution.ordinal()] : null;
+        List<Candle> recent = ring != null ? ring.getRange(from, to) : Collections.emptyList();
+
+        // The ring holds every candle from its oldest one on
+        if (ring != null && from >= ring.getOldestStart()) {
+            return recent;
+        }
+
+        Map<Long, Candle> candles = new TreeMap<>();
+        try (Connection conn = databaseManager.getConnection();
+             PreparedStatement ps = conn.prepareStatement("SELECT block_start, candles FROM " + getTableName()
+                     + " WHERE material = ? AND resolution = ? AND block_start >= ? AND block_start <= ? ORDER BY block_start")) {
+            ps.setString(1, material.toString());
+            ps.setString(2, resolution.getLabel());
+            ps.setLong(3, resolution.getBlockStart(from));
+            ps.setLong(4, to);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    for (Candle candle : CandleCodec.decode(rs.getBytes("candles"), rs.getLong("block_start"),
+                            resolution.getPeriodMillis())) {
+                        if (candle.getStart() >= from && candle.getStart() <= to) {
+                            candles.put(candle.getStart(), candle);
+                        }
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            plugin.getLogger().log(Level.SEVERE, "Failed to read price history of " + material, e);
+        }
+
+        // Candles in memory may be newer than what was saved
+        for (Candle candle : recent) {
+            candles.put(candle.getStart(), candle);
+        }
+        return new ArrayList<>(candles.values());
+    }
+
+    /**
+     * Get the price change of a material over recent periods
+     *
+     * @param material The material
+     * @param resolution The candle resolution
+     * @param periods The number of periods, including the current one
+     * @return The change in percent from the first open to the last close, or {@link Double#NaN} without trades
+     */
+    public double getChange(Material material, Resolution resolution, int periods) {
+        long from = resolution.getPeriodStart(System.currentTimeMillis()) - (long) (periods - 1) * resolution.getPeriodMillis();
+        CandleRing[] rings = series.get(material.ordinal());
+        if (rings == null) {
+            return Double.NaN;
+        }
+
+        List<Candle> candles = rings[resolution.ordinal()].getRange(from, Long.MAX_VALUE);
+        if (candles.isEmpty()) {
+            return Double.NaN;
+        }
+        double open = candles.get(0).getOpen();
+        double close = candles.get(candles.size() - 1).getClose();
+        return (close - open) / open * 100.0;
+    }
+
+    /**
+     * Write every block with changed candles to the database in one batched transaction.
+     * Blocks that fail to save are marked changed again so the next flush retries them.
+     *
+     * @return The number of blocks written
+     */
+    synchronized int flush() {
+        List<PendingBlock> blocks = new ArrayList<>();
+        for (int i = 0; i < MATERIALS.length; i++) {
+            CandleRing[] rings = series.get(i);
+            if (rings == null) {
+                continue;
+            }
+            for (CandleRing ring : rings) {
+                for (Map.Entry<Long, byte[]> block : ring.takeChangedBlocks().entrySet()) {
+                    blocks.add(new PendingBlock(MATERIALS[i], ring, block.getKey(), block.getValue()));
+                }
+            }
+        }
+        if (blocks.isEmpty()) {
+            return 0;
+        }
+
+        try (Connection conn = databaseManager.getWriteConnection()) {
+            boolean autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            try (PreparedStatement ps = conn.prepareStatement(databaseManager.buildUpsert(getTableName(), 3,
+                    new String[]{"material", "resolution", "block_start", "candles"}))) {
+                for (PendingBlock block : blocks) {
+                    ps.setString(1, block.material.toString());
+                    ps.setString(2, block.ring.resolution.getLabel());
+                    ps.setLong(3, block.blockStart);
+                    ps.setBytes(4, block.data);
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+                conn.commit();
+                return blocks.size();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(autoCommit);
+            }
+        } catch (SQLException e) {
+            for (PendingBlock block : blocks) {
+                block.ring.markChanged(block.blockStart);
+            }
+            plugin.getLogger().log(Level.SEVERE, "Failed to save " + blocks.size() + " price history blocks", e);
+            return 0;
+        }
+    }
+
+    private CandleRing[] getSeries(Material material) {
+        int i = material.ordinal();
+        CandleRing[] rings = series.get(i);
+        if (rings == null) {
+            rings = new CandleRing[RESOLUTIONS.length];
+            for (Resolution resolution : RESOLUTIONS) {
+                rings[resolution.ordinal()] = new CandleRing(resolution);
+            }
+            if (!series.compareAndSet(i, null, rings)) {
+                rings = series.get(i);
+            }
+        }
+        return rings;
+    }
+
+    private String getTableName() {
+        return databaseManager.getTablePrefix() + "price_history";
+    }
+
+    /**
+     * The length of one candle and how many of them are kept in memory and stored per row
+     */
+    public enum Resolution {
+        MINUTE("1m", 60_000L, 120, 60),
+        HOUR("1h", 3_600_000L, 168, 24),
+        DAY("1d", 86_400_000L, 90, 30);
+
+        private final String label;
+        private final long periodMillis;
+        private final int capacity;
+        private final int blockSize;
+
+        Resolution(String label, long periodMillis, int capacity, int blockSize) {
+            this.label = label;
+            this.periodMillis = periodMillis;
+            this.capacity = capacity;
+            this.blockSize = blockSize;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+
+        public long getPeriodMillis() {
+            return periodMillis;
+        }
+
+        /**
+         * @return The number of candles kept in memory, at least two blocks
+         */
+        public int getCapacity() {
+            return capacity;
+        }
+
+        long getBlockMillis() {
+            return periodMillis * blockSize;
+        }
+
+        long getPeriodStart(long time) {
+            return Math.floorDiv(time, periodMillis) * periodMillis;
+        }
+
+        long getBlockStart(long time) {
+            return Math.floorDiv(time, getBlockMillis()) * getBlockMillis();
+        }
+
+        /**
+         * Find a resolution by its label
+         *
+         * @param label The label, such as {@code 1h}
+         * @return The resolution, or null if there is none with that label
+         */
+        public static Resolution fromLabel(String label) {
+            for (Resolution resolution : values()) {
+                if (resolution.label.equalsIgnoreCase(label)) {
+                    return resolution;
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * The trades of one material in one period
+     */
+    public static final class Candle {
+        private final long start;
+        private final double open;
+        private final double high;
+        private final double low;
+        private final double close;
+        private final long volume;
+
+        Candle(long start, double open, double high, double low, double close, long volume) {
+            this.start = start;
+            this.open = open;
+            this.high = high;
+            this.low = low;
+            this.close = close;
+            this.volume = volume;
+        }
+
+        public long getStart() {
+            return start;
+        }
+
+        public double getOpen() {
+            return open;
+        }
+
+        public double getHigh() {
+            return high;
+        }
+
+        public double getLow() {
+            return low;
+        }
+
+        public double getClose() {
+            return close;
+        }
+
+        /**
+         * @return The number of items traded
+         */
+        public long getVolume() {
+            return volume;
+        }
+    }
+
+    /**
+     * The most recent candles of one material at one resolution, in parallel arrays used as a ring
+     */
+    private static final class CandleRing {
+        private final Resolution resolution;
+        private final long[] starts;
+        private final double[] opens;
+        private final double[] highs;
+        private final double[] lows;
+        private final double[] closes;
+        private final long[] volumes;
+        private int head = -1;
+        private int size;
+
+        // Start of the oldest candle changed since the last flush
+        private long changedFrom = Long.MAX_VALUE;
+        // Start of the newest candle pushed out of the ring; blocks up to it can no longer be rewritten from memory
+        private long evictedUntil = Long.MIN_VALUE;
+
+        private CandleRing(Resolution resolution) {
+            this.resolution = resolution;
+            int capacity = resolution.getCapacity();
+            this.starts = new long[capacity];
+            this.opens = new double[capacity];
+            this.highs = new double[capacity];
+            this.lows = new double[capacity];
+            this.closes = new double[capacity];
+            this.volumes = new long[capacity];
+        }
+
+        synchronized void record(long time, double price, int quantity) {
+            long start = resolution.getPeriodStart(time);
+            if (size > 0 && start <= starts[head]) {
+                // Same period, or the clock went back: extend the newest candle
+                highs[head] = Math.max(highs[head], price);
+                lows[head] = Math.min(lows[head], price);
+                closes[head] = price;
+                volumes[head] += quantity;
+                changedFrom = Math.min(changedFrom, starts[head]);
+            } else {
+                append(start, price, price, price, price, quantity);
+                changedFrom = Math.min(changedFrom, start);
+            }
+        }
+
+        synchronized void load(Candle candle) {
+            if (size == 0 || candle.getStart() > starts[head]) {
+                append(candle.getStart(), candle.getOpen(), candle.getHigh(), candle.getLow(), candle.getClose(),
+                        candle.getVolume());
+            }
+        }
+
+        synchronized List<Candle> getRecent(int count) {
+            int n = Math.min(Math.max(0, count), size);
+            List<Candle> candles = new ArrayList<>(n);
+            for (int i = size - n; i < size; i++) {
+                candles.add(get(i));
+            }
+            return candles;
+        }
+
+        synchronized List<Candle> getRange(long from, long to) {
+            List<Candle> candles = new ArrayList<>();
+            for (int i = 0; i < size; i++) {
+                long start = starts[index(i)];
+                if (start > to) {
+                    break;
+                }
+                if (start >= from) {
+                    candles.add(get(i));
+                }
+            }
+            return candles;
+        }
+
+        synchronized long getOldestStart() {
+            return size > 0 ? starts[index(0)] : Long.MAX_VALUE;
+        }
+
+        /**
+         * Encode every block that has changed since the last call and is still complete in memory
+         *
+         * @return The encoded blocks by block start
+         */
+        synchronized Map<Long, byte[]> takeChangedBlocks() {
+            Map<Long, byte[]> blocks = new LinkedHashMap<>();
+            if (changedFrom == Long.MAX_VALUE) {
+                return blocks;
+            }
+
+            long blockMillis = resolution.getBlockMillis();
+            long newestBlock = resolution.getBlockStart(starts[head]);
+            for (long block = resolution.getBlockStart(changedFrom); block <= newestBlock; block += blockMillis) {
+                if (block <= evictedUntil) {
+                    continue;
+                }
+                List<Candle> candles = getRange(block, block + blockMillis - 1);
+                if (!candles.isEmpty()) {
+                    blocks.put(block, CandleCodec.encode(candles, block, resolution.getPeriodMillis()));
+                }
+            }
+            changedFrom = Long.MAX_VALUE;
+            return blocks;
+        }
+
+        synchronized void markChanged(long from) {
+            changedFrom = Math.min(changedFrom, from);
+        }
+
+        private void append(long start, double open, double high, double low, double close, long volume) {
+            head = (head + 1) % starts.length;
+            if (size == starts.length) {
+                evictedUntil = starts[head];
+            } else {
+                size++;
+            }
+            starts[head] = start;
+            opens[head] = open;
+            highs[head] = high;
+            lows[head] = low;
+            closes[head] = close;
+            volumes[head] = volume;
+        }
+
+        private Candle get(int i) {
+            int j = index(i);
+            return new Candle(starts[j], opens[j], highs[j], lows[j], closes[j], volumes[j]);
+        }
+
+        private int index(int i) {
+            return (head - size + 1 + i + starts.length) % starts.length;
+        }
+    }
+
+    private static final class PendingBlock {
+        private final Material material;
+        private final CandleRing ring;
+        private final long blockStart;
+        private final byte[] data;
+
+        private PendingBlock(Material material, CandleRing ring, long blockStart, byte[] data) {
+            this.material = material;
+            this.ring = ring;
+            this.blockStart = blockStart;
+            this.data = data;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package org.frizzlenpop.frizzlenShop.economy;
+
+import org.bukkit.Material;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Keeps the traded materials ordered by price trend, so the strongest risers and fallers can be read
+ * from either end without scanning or sorting the market.
+ * <p>
+ * The trend of a material is its demand index minus its supply index, and both decay towards neutral at
+ * the same rate. Multiplying every trend by the same growing factor does not change their order, so each
+ * material is ranked by a score that is only recalculated when the material is traded, see
+ * {@link MarketTable#getTrendScore(Material)}.
+ */
+final class TrendTracker {
+
+    private static final Comparator<Entry> ORDER = Comparator
+            .comparingDouble((Entry entry) -> entry.score)
+            .thenComparingInt(entry -> entry.material.ordinal());
+
+    private final NavigableSet<Entry> ranking = new ConcurrentSkipListSet<>(ORDER);
+    private final AtomicReferenceArray<Entry> entries = new AtomicReferenceArray<>(Material.values().length);
+
+    /**
+     * Re-rank a material. Callers hold the tracker's lock while they read the score and update it,
+     * so the last update of a material always carries its latest score.
+     *
+     * @param material The material
+     * @param score The trend score of the material
+     */
+    void update(Material material, double score) {
+        Entry entry = new Entry(material, score);
+        Entry previous = entries.getAndSet(material.ordinal(), entry);
+        if (previous != null) {
+            ranking.remove(previous);
+        }
+        ranking.add(entry);
+    }
+
+    /**
+     * Get the materials with the strongest rising trend
+     *
+     * @param limit The maximum number of materials
+     * @return The materials with a positive trend, strongest first
+     */
+    List<Material> getRising(int limit) {
+        return collect(ranking.descendingIterator(), limit, 1);
+    }
+
+    /**
+     * Get the materials with the strongest falling trend
+     *
+     * @param limit The maximum number of materials
+     * @return The materials with a negative trend, strongest first
+     */
+    List<Material> getFalling(int limit) {
+        return collect(ranking.iterator(), limit, -1);
+    }
+
+    private static List<Material> collect(Iterator<Entry> iterator, int limit, int sign) {
+        List<Material> materials = new ArrayList<>(Math.min(limit, 64));
+        while (materials.size() < limit && iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (Math.signum(entry.score) != sign) {
+                break;
+            }
+            materials.add(entry.material);
+        }
+        return materials;
+    }
+
+    private static final class Entry {
+        private final Material material;
+        private final double score;
+
+        private Entry(Material material, double score) {
+            this.material = material;
+            this.score = score;
+        }
+    }
+}
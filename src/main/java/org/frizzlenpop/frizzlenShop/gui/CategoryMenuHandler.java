@@ -7,8 +7,7 @@ import org.bukkit.inventory.CreativeCategory;
 import org.bukkit.inventory.Inventory;
 import org.bukkit.inventory.ItemStack;
 import org.frizzlenpop.frizzlenShop.FrizzlenShop;
-import org.frizzlenpop.frizzlenShop.shops.Shop;
-import org.frizzlenpop.frizzlenShop.shops.ShopItem;
+import org.frizzlenpop.frizzlenShop.shops.ShopListing;
 import org.frizzlenpop.frizzlenShop.utils.MessageUtils;
 
 import java.util.*;
@@ -185,56 +184,51 @@ public class CategoryMenuHandler {
     private static List<ShopItemData> getCategoryItems(FrizzlenShop plugin, String category) {
         List<ShopItemData> items = new ArrayList<>();
 
-        // Get all shops
-        Collection<Shop> shops = plugin.getShopManager().getAllShops();
-
-        // For each shop, collect items that match the category
-        for (Shop shop : shops) {
-            if (!shop.isOpen()) {
+        // Only materials listed by an open shop are looked at, and each one is checked against the category once
+        for (Material material : Material.values()) {
+            List<ShopListing> listings = plugin.getShopManager().getListings(material);
+            if (listings.isEmpty() || !isInCategory(material, category)) {
                 continue;
             }
 
-            for (ShopItem shopItem : shop.getItems()) {
-                // Check if the item belongs to the category
-                Material material = shopItem.getItem().getType();
-
-                boolean inCategory;
-
-                CreativeCategory creativeCategory = material.getCreativeCategory();
-                // Remove the debug messages that are printing to chat
-                // Bukkit.broadcastMessage(category);
-                // Bukkit.broadcastMessage(creativeCategory.name());
-
-                if (category.equalsIgnoreCase("all")) {
-                    inCategory = true;
-
-                } else if (category.equalsIgnoreCase("tools")) {
-                    inCategory = creativeCategory.equals(CreativeCategory.TOOLS);
-                } else if (category.equalsIgnoreCase("weapons")) {
-                    inCategory = material.name().contains("SWORD") || material.name().contains("AXE") || material.name().contains("TRIDENT") || material.name().contains("MACE") || material.name().contains("BOW") || material.name().contains("CROSSBOW") || material.name().contains("SHIELD");
-                } else if (category.equalsIgnoreCase("armor")) {
-                    inCategory = material.name().contains("HELMET") || material.name().contains("CHESTPLATE") || material.name().contains("LEGGINGS") || material.name().contains("BOOTS");
-                } else if (category.equalsIgnoreCase("blocks")) {
-                    inCategory = creativeCategory.equals(CreativeCategory.BUILDING_BLOCKS);
-                } else if (category.equalsIgnoreCase("potions")) {
-                    inCategory = creativeCategory.equals(CreativeCategory.BREWING);
-                } else if (category.equalsIgnoreCase("miscellaneous")) {
-                    inCategory = creativeCategory.equals(CreativeCategory.MISC);
-                } else if (category.equalsIgnoreCase("food")) {
-                    inCategory = creativeCategory.equals(CreativeCategory.FOOD);
-                }else{
-                    inCategory = true;
-                }
-
-                if (inCategory) {
-                    items.add(new ShopItemData(shop, shopItem));
-                }
+            for (ShopListing listing : listings) {
+                items.add(new ShopItemData(listing.getShop(), listing.getItem()));
             }
         }
 
         return items;
     }
 
+    /**
+     * Check whether a material belongs to a category
+     *
+     * @param material The material
+     * @param category The category
+     * @return True if the material is shown in the category
+     */
+    private static boolean isInCategory(Material material, String category) {
+        CreativeCategory creativeCategory = material.getCreativeCategory();
+
+        if (category.equalsIgnoreCase("all")) {
+            return true;
+        } else if (category.equalsIgnoreCase("tools")) {
+            return creativeCategory.equals(CreativeCategory.TOOLS);
+        } else if (category.equalsIgnoreCase("weapons")) {
+            return material.name().contains("SWORD") || material.name().contains("AXE") || material.name().contains("TRIDENT") || material.name().contains("MACE") || material.name().contains("BOW") || material.name().contains("CROSSBOW") || material.name().contains("SHIELD");
+        } else if (category.equalsIgnoreCase("armor")) {
+            return material.name().contains("HELMET") || material.name().contains("CHESTPLATE") || material.name().contains("LEGGINGS") || material.name().contains("BOOTS");
+        } else if (category.equalsIgnoreCase("blocks")) {
+            return creativeCategory.equals(CreativeCategory.BUILDING_BLOCKS);
+        } else if (category.equalsIgnoreCase("potions")) {
+            return creativeCategory.equals(CreativeCategory.BREWING);
+        } else if (category.equalsIgnoreCase("miscellaneous")) {
+            return creativeCategory.equals(CreativeCategory.MISC);
+        } else if (category.equalsIgnoreCase("food")) {
+            return creativeCategory.equals(CreativeCategory.FOOD);
+        }
+        return true;
+    }
+
     /**
      * Format a category name for display
      *
@@ -8,6 +8,9 @@ import org.bukkit.inventory.Inventory;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.inventory.meta.ItemMeta;
 import org.frizzlenpop.frizzlenShop.FrizzlenShop;
+import org.frizzlenpop.frizzlenShop.shops.ListingBook;
+import org.frizzlenpop.frizzlenShop.shops.ShopItem;
+import org.frizzlenpop.frizzlenShop.shops.ShopListing;
 import org.frizzlenpop.frizzlenShop.utils.MessageUtils;
 
 import java.util.ArrayList;
@@ -20,6 +23,9 @@ import java.util.List;
  */
 public class ItemDetailsMenuHandler {
 
+    // Number of shops shown in the cheapest sellers list
+    private static final int CHEAPEST_SELLERS_SHOWN = 5;
+
     /**
      * Open the item details menu for a player
      *
@@ -44,8 +50,8 @@ public class ItemDetailsMenuHandler {
         lore.add(ChatColor.GRAY + "Shop: " + ChatColor.YELLOW + shopItemData.getShopName());
         lore.add(ChatColor.GRAY + "Type: " + ChatColor.YELLOW + (shopItemData.isAdminShop() ? "Admin Shop" : "Player Shop"));
         lore.add("");
-        lore.add(ChatColor.GRAY + "Buy Price: " + ChatColor.YELLOW + plugin.getEconomyManager().formatCurrency(shopItemData.getBuyPrice(), shopItemData.getCurrency()));
-        lore.add(ChatColor.GRAY + "Sell Price: " + ChatColor.YELLOW + plugin.getEconomyManager().formatCurrency(shopItemData.getSellPrice(), shopItemData.getCurrency()));
+        lore.add(ChatColor.GRAY + "Buy Price: " + ChatColor.YELLOW + plugin.getEconomyManager().formatCurrency(shopItemData.calculateBuyPrice(1), shopItemData.getCurrency()));
+        lore.add(ChatColor.GRAY + "Sell Price: " + ChatColor.YELLOW + plugin.getEconomyManager().formatCurrency(shopItemData.calculateSellPrice(1), shopItemData.getCurrency()));
         lore.add(ChatColor.GRAY + "Stock: " + ChatColor.YELLOW + (shopItemData.getStock() == -1 ? "Unlimited" : shopItemData.getStock()));
         
         meta.setLore(lore);
@@ -57,7 +63,7 @@ public class ItemDetailsMenuHandler {
         
         for (int i = 0; i < buySlots.length; i++) {
             int amount = buyAmounts[i];
-            double price = shopItemData.getBuyPrice() * amount;
+            double price = shopItemData.calculateBuyPrice(amount);
             
             ItemStack buyItem = guiManager.createGuiItem(Material.EMERALD, "&a&lBuy " + amount, 
                     Arrays.asList(
@@ -70,7 +76,7 @@ public class ItemDetailsMenuHandler {
         }
         
         // Sell option
-        double sellPrice = shopItemData.getSellPrice();
+        double sellPrice = shopItemData.calculateSellPrice(1);
         ItemStack sellItem = guiManager.createGuiItem(Material.GOLD_INGOT, "&6&lSell", 
                 Arrays.asList(
                     "&7Sell " + itemName,
@@ -86,6 +92,9 @@ public class ItemDetailsMenuHandler {
                 Collections.singletonList("&7Return to previous menu"));
         inventory.setItem(31, backItem);
         
+        // Cheapest sellers of the same item across all open shops
+        inventory.setItem(8, createCheapestSellersItem(guiManager, plugin, shopItemData));
+        
         // Place the display item in the center of the top row
         inventory.setItem(4, displayItem);
         
@@ -197,9 +206,11 @@ public class ItemDetailsMenuHandler {
                 return true;
             }
             
+            // Quote before the sale, as the sale itself moves the market
+            double price = shopItemData.calculateSellPrice(1);
+            
             // Process the sale through the shop
             if (shopItemData.getShop().sellItem(player, shopItemData.getItem(), 1, shopItemData.getCurrency())) {
-                double price = shopItemData.getSellPrice();
                 MessageUtils.sendSuccessMessage(player, "You sold 1x " + getItemName(shopItemData.getItem()) + 
                         " for " + plugin.getEconomyManager().formatCurrency(price, shopItemData.getCurrency()));
                 
@@ -232,6 +243,37 @@ public class ItemDetailsMenuHandler {
         return false;
     }
     
+    /**
+     * Create the item listing the cheapest shops selling an item, read from the item's listing book
+     *
+     * @param guiManager The GUI manager
+     * @param plugin The plugin instance
+     * @param shopItemData The shop item being shown
+     * @return The display item
+     */
+    private static ItemStack createCheapestSellersItem(GuiManager guiManager, FrizzlenShop plugin, ShopItemData shopItemData) {
+        ListingBook book = plugin.getShopManager().getListingBook(shopItemData.getItem());
+        String currency = shopItemData.getCurrency();
+        
+        List<String> lore = new ArrayList<>();
+        int rank = 1;
+        for (ShopListing listing : book.getCheapestSellers(currency, CHEAPEST_SELLERS_SHOWN)) {
+            ShopItem item = listing.getItem();
+            lore.add("&e" + rank++ + ". &f" + listing.getShop().getName() + " &7- &e"
+                    + plugin.getEconomyManager().formatCurrency(listing.getShop().quoteBuyPrice(item, 1), currency)
+                    + " &7(" + (item.getStock() == -1 ? "Unlimited" : item.getStock()) + ")");
+        }
+        if (lore.isEmpty()) {
+            lore.add("&7No shop has this item in stock");
+        }
+        
+        lore.add("");
+        lore.add("&7Market stock: &e" + (book.hasUnlimitedStock() ? "Unlimited" : book.getAvailableStock()));
+        lore.add("&7Shops listing this item: &e" + book.size());
+        
+        return guiManager.createGuiItem(Material.SPYGLASS, "&b&lCheapest Sellers", lore);
+    }
+    
     /**
      * Get the display name of an item, or its material name if it doesn't have a display name
      *
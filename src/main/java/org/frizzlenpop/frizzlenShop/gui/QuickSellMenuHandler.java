@@ -11,6 +11,8 @@ import org.frizzlenpop.frizzlenShop.FrizzlenShop;
 import org.frizzlenpop.frizzlenShop.shops.AdminShop;
 import org.frizzlenpop.frizzlenShop.shops.Shop;
 import org.frizzlenpop.frizzlenShop.shops.ShopItem;
+import org.frizzlenpop.frizzlenShop.shops.ShopListing;
+import org.frizzlenpop.frizzlenShop.shops.ShopManager;
 import org.frizzlenpop.frizzlenShop.utils.MessageUtils;
 
 import java.util.*;
@@ -149,14 +151,14 @@ public class QuickSellMenuHandler {
             }
             
             // Try to find the best shop to sell this item to
-            Map.Entry<Shop, ShopItem> bestMatch = findBestShopForItem(adminShops, itemStack);
+            ShopListing bestMatch = findBestShopForItem(plugin.getShopManager(), itemStack);
             
             if (bestMatch != null) {
-                Shop shop = bestMatch.getKey();
-                ShopItem shopItem = bestMatch.getValue();
+                Shop shop = bestMatch.getShop();
+                ShopItem shopItem = bestMatch.getItem();
                 
                 int amount = itemStack.getAmount();
-                double price = shopItem.calculateSellPrice(amount);
+                double price = shop.quoteSellPrice(shopItem, amount);
                 String currency = shopItem.getCurrency();
                 
                 // Attempt to sell the item
@@ -231,23 +233,22 @@ public class QuickSellMenuHandler {
     /**
      * Find the best shop to sell an item to
      *
-     * @param adminShops All admin shops
+     * @param shopManager The shop manager
      * @param itemStack The item to sell
-     * @return The best shop and shop item to sell to, or null if no match
+     * @return The listing of the admin shop paying the most for the item, or null if no match
      */
-    private static Map.Entry<Shop, ShopItem> findBestShopForItem(Collection<Shop> adminShops, ItemStack itemStack) {
+    private static ShopListing findBestShopForItem(ShopManager shopManager, ItemStack itemStack) {
         double bestPrice = -1;
-        Map.Entry<Shop, ShopItem> bestMatch = null;
+        ShopListing bestMatch = null;
         
-        for (Shop shop : adminShops) {
-            for (ShopItem shopItem : shop.getItems()) {
-                if (shopItem.matches(itemStack)) {
-                    double price = shopItem.getSellPrice();
-                    if (price > bestPrice) {
-                        bestPrice = price;
-                        bestMatch = new AbstractMap.SimpleEntry<>(shop, shopItem);
-                    }
-                }
+        for (ShopListing listing : shopManager.getListings(itemStack)) {
+            if (!listing.getShop().isAdminShop()) {
+                continue;
+            }
+            double price = listing.getShop().quoteSellPrice(listing.getItem(), 1);
+            if (price > bestPrice) {
+                bestPrice = price;
+                bestMatch = listing;
             }
         }
         
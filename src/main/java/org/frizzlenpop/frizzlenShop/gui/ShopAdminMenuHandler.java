@@ -16,15 +16,17 @@ import org.frizzlenpop.frizzlenShop.shops.ShopManager;
 import org.frizzlenpop.frizzlenShop.utils.MessageUtils;
 import org.frizzlenpop.frizzlenShop.utils.GuiUtils;
 import org.frizzlenpop.frizzlenShop.economy.MarketAnalyzer;
+import org.frizzlenpop.frizzlenShop.economy.PriceHistory;
+import org.frizzlenpop.frizzlenShop.economy.CraftingOpportunityIndex;
 import org.frizzlenpop.frizzlenShop.economy.CraftingRelationManager;
 
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.UUID;
 import java.util.Map;
 import java.util.ArrayList;
-import java.util.Comparator;
 
 /**
  * Handles the shop admin menu GUI
@@ -1158,8 +1160,12 @@ public class ShopAdminMenuHandler {
             );
             inventory.setItem(22, infoItem);
         } else {
-            // Get trending items
-            Map<Material, Double> trendingItems = plugin.getDynamicPricingManager().getTrendingItems(27);
+            MarketAnalyzer marketAnalyzer = plugin.getMarketAnalyzer();
+            PriceHistory priceHistory = marketAnalyzer != null ? marketAnalyzer.getPriceHistory() : null;
+            
+            // Get the strongest risers followed by the strongest fallers
+            Map<Material, Double> trendingItems = new LinkedHashMap<>(plugin.getDynamicPricingManager().getTrendingItems(14));
+            trendingItems.putAll(plugin.getDynamicPricingManager().getFallingItems(27 - trendingItems.size()));
             
             if (trendingItems.isEmpty()) {
                 // No market data yet
@@ -1211,6 +1217,15 @@ public class ShopAdminMenuHandler {
                     lore.add("&7Trend value: &f" + trendFormat);
                     lore.add("&7(Positive = rising, negative = falling)");
                     
+                    // Add the price over the last day
+                    if (priceHistory != null) {
+                        double change = priceHistory.getChange(material, PriceHistory.Resolution.HOUR, 24);
+                        if (!Double.isNaN(change)) {
+                            lore.add("&724h change: " + (change >= 0 ? "&a+" : "&c") + String.format("%.1f%%", change));
+                            lore.add("&7" + formatSparkline(priceHistory.getRecentCandles(material, PriceHistory.Resolution.HOUR, 24)));
+                        }
+                    }
+                    
                     // Add market advice
                     lore.add("");
                     if (trend > 0) {
@@ -1348,6 +1363,29 @@ public class ShopAdminMenuHandler {
         return result.toString().trim();
     }
 
+    /**
+     * Draws the closing prices of candles as a line of block characters, scaled between the lowest and highest close
+     *
+     * @param candles The candles, oldest first
+     * @return The chart
+     */
+    private static String formatSparkline(List<PriceHistory.Candle> candles) {
+        String bars = "▁▂▃▄▅▆▇█";
+        double min = Double.MAX_VALUE;
+        double max = -Double.MAX_VALUE;
+        for (PriceHistory.Candle candle : candles) {
+            min = Math.min(min, candle.getClose());
+            max = Math.max(max, candle.getClose());
+        }
+        
+        StringBuilder chart = new StringBuilder();
+        for (PriceHistory.Candle candle : candles) {
+            int level = max > min ? (int) Math.round((candle.getClose() - min) / (max - min) * (bars.length() - 1)) : 0;
+            chart.append(bars.charAt(level));
+        }
+        return chart.toString();
+    }
+
     /**
      * Opens the crafting opportunities menu
      * This menu shows items that are profitable to craft based on current market prices
@@ -1369,44 +1407,28 @@ public class ShopAdminMenuHandler {
             return;
         }
         
-        // Create item list with profit margins
-        List<ProfitableItem> profitableItems = new ArrayList<>();
-        
-        // Check all craftable items
-        for (Material material : Material.values()) {
-            if (craftingManager.isCraftedItem(material) && material.isItem()) {
-                double profitMargin = marketAnalyzer.getCraftingProfitMargin(material);
-                if (profitMargin > 0) {
-                    profitableItems.add(new ProfitableItem(material, profitMargin));
-                }
-            }
-        }
-        
-        // Sort by profit margin (highest first)
-        profitableItems.sort(Comparator.comparing(ProfitableItem::getProfitMargin).reversed());
-        
-        // Limit to top 45 items (to fit in the inventory)
-        int count = Math.min(profitableItems.size(), 45);
+        // Top 45 items (to fit in the inventory), already ranked by profit margin (highest first)
+        List<CraftingOpportunityIndex.Opportunity> opportunities = craftingManager.getOpportunityIndex().getTop(45);
         
         // Add items to inventory
-        for (int i = 0; i < count; i++) {
-            ProfitableItem profitItem = profitableItems.get(i);
+        for (int i = 0; i < opportunities.size(); i++) {
+            CraftingOpportunityIndex.Opportunity opportunity = opportunities.get(i);
             
             // Create item with profit information
-            ItemStack item = new ItemStack(profitItem.getMaterial());
+            ItemStack item = new ItemStack(opportunity.getMaterial());
             ItemMeta meta = item.getItemMeta();
             
             // Format name
-            String name = ChatColor.GREEN + formatMaterialName(profitItem.getMaterial().toString());
+            String name = ChatColor.GREEN + formatMaterialName(opportunity.getMaterial().toString());
             meta.setDisplayName(name);
             
             // Create lore with crafting and profit information
             List<String> lore = new ArrayList<>();
             lore.add(ChatColor.GOLD + "Profit Margin: " + ChatColor.YELLOW + 
-                    String.format("%.1f%%", profitItem.getProfitMargin()));
+                    String.format("%.1f%%", opportunity.getProfitMargin()));
             
             // Get component information
-            Map<Material, Integer> components = craftingManager.getComponents(profitItem.getMaterial());
+            Map<Material, Integer> components = craftingManager.getComponents(opportunity.getMaterial());
             
             lore.add(ChatColor.LIGHT_PURPLE + "Components:");
             for (Map.Entry<Material, Integer> entry : components.entrySet()) {
@@ -1419,12 +1441,12 @@ public class ShopAdminMenuHandler {
             }
             
             // Add total craft cost
-            double craftCost = craftingManager.calculateCraftValue(profitItem.getMaterial(), marketAnalyzer);
+            double craftCost = opportunity.getCraftCost();
             lore.add(ChatColor.AQUA + "Total Cost: " + 
                     ChatColor.WHITE + plugin.getEconomyManager().formatCurrency(craftCost, "coin"));
             
             // Add market value
-            double marketValue = marketAnalyzer.getSuggestedPrice(profitItem.getMaterial(), true);
+            double marketValue = opportunity.getMarketValue();
             lore.add(ChatColor.AQUA + "Market Value: " + 
                     ChatColor.WHITE + plugin.getEconomyManager().formatCurrency(marketValue, "coin"));
             
@@ -1487,25 +1509,4 @@ public class ShopAdminMenuHandler {
         
         return true; // Consume all clicks to prevent item taking
     }
-    
-    /**
-     * Helper class to track profitable items for the crafting opportunities menu
-     */
-    private static class ProfitableItem {
-        private final Material material;
-        private final double profitMargin;
-        
-        public ProfitableItem(Material material, double profitMargin) {
-            this.material = material;
-            this.profitMargin = profitMargin;
-        }
-        
-        public Material getMaterial() {
-            return material;
-        }
-        
-        public double getProfitMargin() {
-            return profitMargin;
-        }
-    }
 } 
\ No newline at end of file
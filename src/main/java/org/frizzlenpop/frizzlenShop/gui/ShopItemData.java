@@ -238,6 +238,9 @@ public class ShopItemData {
      * @return The total price
      */
     public double calculateBuyPrice(int amount) {
+        if (shop != null && shopItem != null) {
+            return shop.quoteBuyPrice(shopItem, amount);
+        }
         if (shopItem != null) {
             return shopItem.calculateBuyPrice(amount);
         }
@@ -251,6 +254,9 @@ public class ShopItemData {
      * @return The total price
      */
     public double calculateSellPrice(int amount) {
+        if (shop != null && shopItem != null) {
+            return shop.quoteSellPrice(shopItem, amount);
+        }
         if (shopItem != null) {
             return shopItem.calculateSellPrice(amount);
         }
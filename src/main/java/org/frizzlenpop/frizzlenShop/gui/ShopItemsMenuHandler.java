@@ -172,9 +172,9 @@ public class ShopItemsMenuHandler {
             
             // Add price information
             lore.add(ChatColor.GRAY + "Buy Price: " + ChatColor.YELLOW + 
-                    plugin.getEconomyManager().formatCurrency(shopItem.getBuyPrice(), shopItem.getCurrency()));
+                    plugin.getEconomyManager().formatCurrency(shop.quoteBuyPrice(shopItem, 1), shopItem.getCurrency()));
             lore.add(ChatColor.GRAY + "Sell Price: " + ChatColor.YELLOW + 
-                    plugin.getEconomyManager().formatCurrency(shopItem.getSellPrice(), shopItem.getCurrency()));
+                    plugin.getEconomyManager().formatCurrency(shop.quoteSellPrice(shopItem, 1), shopItem.getCurrency()));
             
             // Add stock information
             String stockText = shopItem.getStock() == -1 ? "Unlimited" : String.valueOf(shopItem.getStock());
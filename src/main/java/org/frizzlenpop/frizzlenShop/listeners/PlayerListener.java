@@ -75,7 +75,7 @@ public class PlayerListener implements Listener {
         }
         
         // Check if there's a shop at this location
-        Shop shop = plugin.getShopManager().getShopAtLocation(block.getLocation());
+        Shop shop = plugin.getShopManager().getShopAt(block);
         if (shop == null) {
             return;
         }
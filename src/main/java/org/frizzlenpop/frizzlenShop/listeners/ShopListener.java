@@ -27,14 +27,14 @@ public class ShopListener implements Listener {
 
     @EventHandler
     public void onBlockBreak(BlockBreakEvent event) {
-        Player player = event.getPlayer();
-        
         // Check if there's a shop at this location
-        Shop shop = plugin.getShopManager().getShopAtLocation(event.getBlock().getLocation());
+        Shop shop = plugin.getShopManager().getShopAt(event.getBlock());
         if (shop == null) {
             return;
         }
         
+        Player player = event.getPlayer();
+        
         // Check if the player has permission to remove shops
         boolean canRemove = shop.isAdminShop() ? 
                 player.hasPermission("frizzlenshop.admin.remove") : 
@@ -60,14 +60,14 @@ public class ShopListener implements Listener {
 
     @EventHandler
     public void onBlockPlace(BlockPlaceEvent event) {
-        Player player = event.getPlayer();
-        
         // Check if there's a shop at this location
-        Shop shop = plugin.getShopManager().getShopAtLocation(event.getBlock().getLocation());
+        Shop shop = plugin.getShopManager().getShopAt(event.getBlock());
         if (shop == null) {
             return;
         }
         
+        Player player = event.getPlayer();
+        
         // Prevent placing blocks at shop locations
         event.setCancelled(true);
         MessageUtils.sendErrorMessage(player, "You cannot place blocks at a shop location.");
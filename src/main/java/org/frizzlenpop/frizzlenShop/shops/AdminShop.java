@@ -8,6 +8,7 @@ import org.frizzlenpop.frizzlenShop.FrizzlenShop;
 import org.frizzlenpop.frizzlenShop.utils.MessageUtils;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Implementation of an admin shop with infinite stock
@@ -30,6 +31,9 @@ public class AdminShop implements Shop {
     private boolean notificationsEnabled = true;
     private int tier = 1;
     private String category = "misc";
+    private boolean dirty = true;
+    private boolean statsDirty;
+    private final Set<ShopItem> dirtyItems = ConcurrentHashMap.newKeySet();
 
     /**
      * Create a new admin shop
@@ -101,6 +105,7 @@ public class AdminShop implements Shop {
     @Override
     public void setName(String name) {
         this.name = name;
+        dirty = true;
     }
 
     @Override
@@ -116,6 +121,7 @@ public class AdminShop implements Shop {
     @Override
     public void setLocation(Location location) {
         this.location = location;
+        dirty = true;
     }
 
     @Override
@@ -164,6 +170,13 @@ public class AdminShop implements Shop {
         
         // Add the item
         items.add(shopItem);
+        dirty = true;
+        
+        // Make the item findable by other shops' customers
+        ShopManager shopManager = plugin.getShopManager();
+        if (shopManager != null) {
+            shopManager.listingAdded(this, shopItem);
+        }
         
         // Update last accessed
         updateLastAccessed();
@@ -177,6 +190,12 @@ public class AdminShop implements Shop {
             ShopItem shopItem = iterator.next();
             if (shopItem.matches(item)) {
                 iterator.remove();
+                dirtyItems.remove(shopItem);
+                dirty = true;
+                ShopManager shopManager = plugin.getShopManager();
+                if (shopManager != null) {
+                    shopManager.listingRemoved(shopItem);
+                }
                 return true;
             }
         }
@@ -225,6 +244,19 @@ public class AdminShop implements Shop {
         return shopItem != null ? shopItem.getSellPrice() : -1;
     }
 
+    /**
+     * Admin shop prices follow the market, quoted from the current dynamic price book
+     */
+    @Override
+    public double quoteBuyPrice(ShopItem shopItem, int amount) {
+        return shopItem.calculateBuyPrice(amount, plugin);
+    }
+
+    @Override
+    public double quoteSellPrice(ShopItem shopItem, int amount) {
+        return shopItem.calculateSellPrice(amount, plugin);
+    }
+
     @Override
     public boolean setSellPrice(ItemStack item, double price) {
         ShopItem shopItem = getShopItem(item);
@@ -292,7 +324,7 @@ public class AdminShop implements Shop {
         }
         
         // Calculate price with tax
-        double price = shopItem.calculateBuyPrice(amount);
+        double price = quoteBuyPrice(shopItem, amount);
         double taxAmount = price * (taxRate / 100.0);
         double totalPrice = price + taxAmount;
         
@@ -329,13 +361,8 @@ public class AdminShop implements Shop {
         updateStat("transactionCount", 1);
         updateStat("uniqueCustomers", 0.1); // This is a simplistic way to track unique customers
         
-        // Record transaction with DynamicPricingManager
-        if (plugin.getDynamicPricingManager() != null) {
-            plugin.getDynamicPricingManager().recordTransaction(shopItem, amount, true);
-        }
-        
-        // Log the transaction
-        plugin.getLogManager().logTransaction(player, this, item, amount, totalPrice, currency, true);
+        // Journal the transaction for persistence, market analysis and logging
+        plugin.getTransactionJournal().record(player, this, shopItem, item, amount, totalPrice, currency, true);
         
         // Send success message
         String formattedPrice = plugin.getEconomyManager().formatCurrency(totalPrice, currency);
@@ -374,7 +401,7 @@ public class AdminShop implements Shop {
         }
         
         // Calculate the sell price
-        double price = shopItem.calculateSellPrice(amount);
+        double price = quoteSellPrice(shopItem, amount);
         
         // Create a copy of the item with the correct amount
         ItemStack soldItem = shopItem.getItem().clone();
@@ -395,13 +422,8 @@ public class AdminShop implements Shop {
         updateStat("totalExpenditure", price);
         updateStat("transactionCount", 1);
         
-        // Record transaction with DynamicPricingManager
-        if (plugin.getDynamicPricingManager() != null) {
-            plugin.getDynamicPricingManager().recordTransaction(shopItem, amount, false);
-        }
-        
-        // Log the transaction
-        plugin.getLogManager().logTransaction(player, this, item, amount, price, currency, false);
+        // Journal the transaction for persistence, market analysis and logging
+        plugin.getTransactionJournal().record(player, this, shopItem, item, amount, price, currency, false);
         
         // Send success message
         String formattedPrice = plugin.getEconomyManager().formatCurrency(price, currency);
@@ -418,6 +440,7 @@ public class AdminShop implements Shop {
     @Override
     public void setDescription(String description) {
         this.description = description;
+        dirty = true;
     }
 
     @Override
@@ -428,6 +451,7 @@ public class AdminShop implements Shop {
     @Override
     public void setTaxRate(double taxRate) {
         this.taxRate = taxRate;
+        dirty = true;
     }
 
     @Override
@@ -439,6 +463,7 @@ public class AdminShop implements Shop {
     public void updateStat(String stat, double value) {
         double currentValue = stats.getOrDefault(stat, 0.0);
         stats.put(stat, currentValue + value);
+        statsDirty = true;
     }
 
     /**
@@ -480,6 +505,11 @@ public class AdminShop implements Shop {
     @Override
     public void setOpen(boolean open) {
         this.open = open;
+        dirty = true;
+        ShopManager shopManager = plugin.getShopManager();
+        if (shopManager != null) {
+            shopManager.shopOpenChanged(this);
+        }
     }
 
     @Override
@@ -739,6 +769,7 @@ public class AdminShop implements Shop {
     @Override
     public void setPublic(boolean isPublic) {
         this.isPublic = isPublic;
+        dirty = true;
     }
 
     @Override
@@ -749,6 +780,7 @@ public class AdminShop implements Shop {
     @Override
     public void setTheme(String theme) {
         this.theme = theme;
+        dirty = true;
     }
 
     @Override
@@ -759,6 +791,7 @@ public class AdminShop implements Shop {
     @Override
     public void setNotificationsEnabled(boolean enabled) {
         this.notificationsEnabled = enabled;
+        dirty = true;
     }
 
     @Override
@@ -769,6 +802,7 @@ public class AdminShop implements Shop {
     @Override
     public void setTier(int tier) {
         this.tier = Math.max(1, Math.min(3, tier));
+        dirty = true;
     }
 
     @Override
@@ -779,5 +813,45 @@ public class AdminShop implements Shop {
     @Override
     public void setCategory(String category) {
         this.category = category;
+        dirty = true;
+    }
+
+    @Override
+    public boolean isDirty() {
+        return dirty;
+    }
+
+    @Override
+    public boolean isStatsDirty() {
+        return statsDirty;
+    }
+
+    @Override
+    public Collection<ShopItem> getDirtyItems() {
+        return new ArrayList<>(dirtyItems);
+    }
+
+    @Override
+    public void itemChanged(ShopItem item) {
+        // A removed item may still be changed through a stale reference and must not be saved again
+        if (items.contains(item)) {
+            dirtyItems.add(item);
+        }
+    }
+
+    @Override
+    public void markDirty() {
+        dirty = true;
+    }
+
+    @Override
+    public void markClean() {
+        // A full save wrote every item, otherwise only the changed ones were written
+        for (ShopItem shopItem : dirty ? items : dirtyItems) {
+            shopItem.markClean();
+        }
+        dirtyItems.clear();
+        statsDirty = false;
+        dirty = false;
     }
 } 
\ No newline at end of file
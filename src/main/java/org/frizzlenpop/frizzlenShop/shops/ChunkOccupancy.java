@@ -0,0 +1,189 @@
+package org.frizzlenpop.frizzlenShop.shops;
+
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The set of chunks that contain at least one shop, per world.
+ * Each world has an open-addressing hash table of packed chunk keys, so checking a chunk is one probe of a
+ * primitive array in the common case and never allocates. Nearly every block event happens in a chunk without
+ * shops, and this lets them be rejected before the location index is touched.
+ * <p>
+ * Lookups never lock. Changes are made by {@link ShopLocationIndex} while holding its lock: a chunk is added
+ * when it gets its first shop and removed when its last shop goes. Removed keys leave a marker behind so
+ * concurrent probes keep walking past them, and the table is rebuilt once markers and keys fill half of it.
+ */
+final class ChunkOccupancy {
+
+    // Neither value is a possible chunk key, as chunk coordinates stay far inside the int range
+    private static final long FREE = Long.MIN_VALUE;
+    private static final long REMOVED = Long.MAX_VALUE;
+
+    private static final int MIN_CAPACITY = 16;
+    private static final Table[] NO_WORLDS = new Table[0];
+
+    // One table per world with shops; replaced rather than changed when a world is added or removed
+    private volatile Table[] worlds = NO_WORLDS;
+
+    /**
+     * Check whether a chunk contains any shops
+     *
+     * @param worldId The world UUID
+     * @param chunkKey The chunk key, see {@link ShopLocationIndex#chunkKey(int, int)}
+     * @return True if at least one shop is in the chunk
+     */
+    boolean contains(UUID worldId, long chunkKey) {
+        for (Table table : worlds) {
+            if (table.worldId.equals(worldId)) {
+                return table.contains(chunkKey);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Mark a chunk as containing shops. Called only for chunks that were not marked yet.
+     *
+     * @param worldId The world UUID
+     * @param chunkKey The chunk key
+     */
+    void add(UUID worldId, long chunkKey) {
+        Table table = find(worldId);
+        if (table == null) {
+            table = new Table(worldId, MIN_CAPACITY);
+            Table[] current = worlds;
+            Table[] updated = Arrays.copyOf(current, current.length + 1);
+            updated[current.length] = table;
+            worlds = updated;
+        }
+        table.add(chunkKey);
+    }
+
+    /**
+     * Mark a chunk as no longer containing shops
+     *
+     * @param worldId The world UUID
+     * @param chunkKey The chunk key
+     */
+    void remove(UUID worldId, long chunkKey) {
+        Table table = find(worldId);
+        if (table == null || !table.remove(chunkKey) || table.size > 0) {
+            return;
+        }
+        worlds = Arrays.stream(worlds).filter(other -> other != table).toArray(Table[]::new);
+    }
+
+    /**
+     * @return The number of chunks that contain shops, across all worlds
+     */
+    int size() {
+        int size = 0;
+        for (Table table : worlds) {
+            size += table.size;
+        }
+        return size;
+    }
+
+    private Table find(UUID worldId) {
+        for (Table table : worlds) {
+            if (table.worldId.equals(worldId)) {
+                return table;
+            }
+        }
+        return null;
+    }
+
+    private static int slot(long chunkKey, int mask) {
+        long hash = chunkKey * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    private static final class Table {
+        private final UUID worldId;
+        private volatile AtomicLongArray keys;
+
+        // Only read and written under the index lock
+        private int size;
+        private int used;
+
+        private Table(UUID worldId, int capacity) {
+            this.worldId = worldId;
+            this.keys = emptyKeys(capacity);
+        }
+
+        private boolean contains(long chunkKey) {
+            AtomicLongArray keys = this.keys;
+            int mask = keys.length() - 1;
+            for (int i = slot(chunkKey, mask); ; i = (i + 1) & mask) {
+                long key = keys.get(i);
+                if (key == chunkKey) {
+                    return true;
+                }
+                if (key == FREE) {
+                    return false;
+                }
+            }
+        }
+
+        private void add(long chunkKey) {
+            if ((used + 1) * 2 > keys.length()) {
+                rehash(Math.max(MIN_CAPACITY, Integer.highestOneBit(Math.max(1, size + 1) * 4)));
+            }
+            if (insert(keys, chunkKey)) {
+                used++;
+            }
+            size++;
+        }
+
+        private boolean remove(long chunkKey) {
+            AtomicLongArray keys = this.keys;
+            int mask = keys.length() - 1;
+            for (int i = slot(chunkKey, mask); ; i = (i + 1) & mask) {
+                long key = keys.get(i);
+                if (key == chunkKey) {
+                    keys.set(i, REMOVED);
+                    size--;
+                    return true;
+                }
+                if (key == FREE) {
+                    return false;
+                }
+            }
+        }
+
+        // Build a new table without removal markers and publish it whole, so probes never see it half filled
+        private void rehash(int capacity) {
+            AtomicLongArray current = keys;
+            AtomicLongArray rebuilt = emptyKeys(capacity);
+            for (int i = 0; i < current.length(); i++) {
+                long key = current.get(i);
+                if (key != FREE && key != REMOVED) {
+                    insert(rebuilt, key);
+                }
+            }
+            keys = rebuilt;
+            used = size;
+        }
+
+        // Returns true if the key took a free slot rather than reusing a removal marker
+        private static boolean insert(AtomicLongArray keys, long chunkKey) {
+            int mask = keys.length() - 1;
+            for (int i = slot(chunkKey, mask); ; i = (i + 1) & mask) {
+                long key = keys.get(i);
+                if (key == FREE || key == REMOVED) {
+                    keys.set(i, chunkKey);
+                    return key == FREE;
+                }
+            }
+        }
+
+        private static AtomicLongArray emptyKeys(int capacity) {
+            AtomicLongArray keys = new AtomicLongArray(capacity);
+            for (int i = 0; i < capacity; i++) {
+                keys.set(i, FREE);
+            }
+            return keys;
+        }
+    }
+}
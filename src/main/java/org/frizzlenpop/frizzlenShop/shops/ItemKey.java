@@ -0,0 +1,102 @@
+package org.frizzlenpop.frizzlenShop.shops;
+
+import org.bukkit.Material;
+import org.bukkit.enchantments.Enchantment;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.meta.Damageable;
+import org.bukkit.inventory.meta.ItemMeta;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * The identity of an item for trading, ignoring its amount.
+ * Two item stacks have equal keys exactly when {@link ShopItem#matches(ItemStack)} considers them the same item:
+ * same material, and the same display name, lore, enchantments, damage and custom model data.
+ */
+public final class ItemKey {
+
+    private final Material material;
+    private final boolean hasMeta;
+    private final String displayName;
+    private final List<String> lore;
+    private final Map<Enchantment, Integer> enchants;
+    private final int damage;
+    private final Integer customModelData;
+    private final int hash;
+
+    private ItemKey(Material material, boolean hasMeta, String displayName, List<String> lore,
+                    Map<Enchantment, Integer> enchants, int damage, Integer customModelData) {
+        this.material = material;
+        this.hasMeta = hasMeta;
+        this.displayName = displayName;
+        this.lore = lore;
+        this.enchants = enchants;
+        this.damage = damage;
+        this.customModelData = customModelData;
+        this.hash = Objects.hash(material, hasMeta, displayName, lore, enchants, damage, customModelData);
+    }
+
+    /**
+     * Get the key of an item
+     *
+     * @param item The item
+     * @return The key of the item
+     */
+    public static ItemKey of(ItemStack item) {
+        if (!item.hasItemMeta()) {
+            return new ItemKey(item.getType(), false, null, null, null, -1, null);
+        }
+
+        ItemMeta meta = item.getItemMeta();
+        int damage = meta instanceof Damageable damageable && damageable.hasDamage() ? damageable.getDamage() : -1;
+        return new ItemKey(item.getType(), true,
+                meta.hasDisplayName() ? meta.getDisplayName() : null,
+                meta.hasLore() ? List.copyOf(meta.getLore()) : null,
+                meta.hasEnchants() ? Map.copyOf(meta.getEnchants()) : null,
+                damage,
+                meta.hasCustomModelData() ? Integer.valueOf(meta.getCustomModelData()) : null);
+    }
+
+    public Material getMaterial() {
+        return material;
+    }
+
+    /**
+     * @return The display name, or null if the item has none
+     */
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    /**
+     * @return The lore lines, or null if the item has no lore
+     */
+    public List<String> getLore() {
+        return lore;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ItemKey other)) {
+            return false;
+        }
+        return hash == other.hash
+                && material == other.material
+                && hasMeta == other.hasMeta
+                && damage == other.damage
+                && Objects.equals(customModelData, other.customModelData)
+                && Objects.equals(displayName, other.displayName)
+                && Objects.equals(lore, other.lore)
+                && Objects.equals(enchants, other.enchants);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+}
@@ -0,0 +1,230 @@
+package org.frizzlenpop.frizzlenShop.shops;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * The listings of one item in all open shops, kept in price order.
+ * Shops selling the item to players are ordered by buy price, cheapest first, and shops buying it from players
+ * by sell price, highest first. Each listing is ranked by an entry holding the prices and stock it was last
+ * ranked with, and a price or stock change replaces that entry, which moves the listing in O(log n). The stock
+ * of all listings is summed as it changes, so the depth of the market is known without visiting them.
+ * <p>
+ * Dynamic pricing scales every listing of a material by the same market multiplier, apart from a small
+ * fluctuation per listing, so the order of listed prices is also the order of the prices players pay.
+ */
+public final class ListingBook {
+
+    static final ListingBook EMPTY = new ListingBook(null);
+
+    private static final ShopListing[] NONE = new ShopListing[0];
+
+    private static final Comparator<Entry> CHEAPEST_FIRST = Comparator
+            .comparingDouble((Entry entry) -> entry.buyPrice)
+            .thenComparingLong(entry -> entry.sequence);
+    private static final Comparator<Entry> HIGHEST_FIRST = Comparator
+            .comparingDouble((Entry entry) -> -entry.sellPrice)
+            .thenComparingLong(entry -> entry.sequence);
+
+    private final ItemKey key;
+    private final NavigableSet<Entry> sellers = new ConcurrentSkipListSet<>(CHEAPEST_FIRST);
+    private final NavigableSet<Entry> buyers = new ConcurrentSkipListSet<>(HIGHEST_FIRST);
+    private volatile ShopListing[] listings = NONE;
+
+    // Only read and written while holding the book's lock
+    private final Map<ShopItem, Entry> entries = new IdentityHashMap<>();
+    private long nextSequence;
+    private long finiteStock;
+    private int unlimitedListings;
+
+    // Search id of the book in the search index, assigned while the listing index lock is held
+    volatile int searchId = -1;
+
+    ListingBook(ItemKey key) {
+        this.key = key;
+    }
+
+    /**
+     * @return The key of the listed item
+     */
+    public ItemKey getKey() {
+        return key;
+    }
+
+    /**
+     * Add a listing. Adding an item that is already listed does nothing.
+     *
+     * @param listing The listing
+     * @return True if the listing was added
+     */
+    synchronized boolean add(ShopListing listing) {
+        if (entries.containsKey(listing.getItem())) {
+            return false;
+        }
+        ShopListing[] current = listings;
+        ShopListing[] updated = Arrays.copyOf(current, current.length + 1);
+        updated[current.length] = listing;
+        listings = updated;
+        place(listing);
+        return true;
+    }
+
+    /**
+     * Remove the listing of an item
+     *
+     * @param item The item
+     * @return True if the item was listed
+     */
+    synchronized boolean remove(ShopItem item) {
+        Entry entry = entries.remove(item);
+        if (entry == null) {
+            return false;
+        }
+        unplace(entry);
+        listings = Arrays.stream(listings).filter(listing -> listing.getItem() != item).toArray(ShopListing[]::new);
+        return true;
+    }
+
+    /**
+     * Move the listing of an item after its price or stock has changed
+     *
+     * @param item The item
+     */
+    synchronized void update(ShopItem item) {
+        Entry entry = entries.remove(item);
+        if (entry != null) {
+            unplace(entry);
+            place(entry.listing);
+        }
+    }
+
+    private void place(ShopListing listing) {
+        ShopItem item = listing.getItem();
+        Entry entry = new Entry(listing, item.getBuyPrice(), item.getSellPrice(), item.getStock(), nextSequence++);
+        entries.put(item, entry);
+        sellers.add(entry);
+        buyers.add(entry);
+        if (entry.stock < 0) {
+            unlimitedListings++;
+        } else {
+            finiteStock += entry.stock;
+        }
+    }
+
+    private void unplace(Entry entry) {
+        sellers.remove(entry);
+        buyers.remove(entry);
+        if (entry.stock < 0) {
+            unlimitedListings--;
+        } else {
+            finiteStock -= entry.stock;
+        }
+    }
+
+    /**
+     * Get the cheapest shops selling the item that have any stock left
+     *
+     * @param currency The currency, or null for any currency
+     * @param limit The maximum number of listings
+     * @return The listings, cheapest first
+     */
+    public List<ShopListing> getCheapestSellers(String currency, int limit) {
+        return collect(sellers.iterator(), currency, limit, true);
+    }
+
+    /**
+     * Get the shops paying the most for the item
+     *
+     * @param currency The currency, or null for any currency
+     * @param limit The maximum number of listings
+     * @return The listings, highest price first
+     */
+    public List<ShopListing> getBestBuyers(String currency, int limit) {
+        return collect(buyers.iterator(), currency, limit, false);
+    }
+
+    /**
+     * Get the cheapest shop selling the item that has any stock left
+     *
+     * @param currency The currency, or null for any currency
+     * @return The listing, or null if no shop sells the item
+     */
+    public ShopListing getCheapestSeller(String currency) {
+        List<ShopListing> best = getCheapestSellers(currency, 1);
+        return best.isEmpty() ? null : best.get(0);
+    }
+
+    /**
+     * Get the shop paying the most for the item
+     *
+     * @param currency The currency, or null for any currency
+     * @return The listing, or null if no shop buys the item
+     */
+    public ShopListing getBestBuyer(String currency) {
+        List<ShopListing> best = getBestBuyers(currency, 1);
+        return best.isEmpty() ? null : best.get(0);
+    }
+
+    /**
+     * @return All listings, in the order they were added
+     */
+    public List<ShopListing> getListings() {
+        return List.of(listings);
+    }
+
+    /**
+     * @return The total stock of the listings with limited stock
+     */
+    public synchronized long getAvailableStock() {
+        return finiteStock;
+    }
+
+    /**
+     * @return True if at least one listing has unlimited stock
+     */
+    public synchronized boolean hasUnlimitedStock() {
+        return unlimitedListings > 0;
+    }
+
+    public int size() {
+        return listings.length;
+    }
+
+    private static List<ShopListing> collect(Iterator<Entry> iterator, String currency, int limit, boolean inStock) {
+        List<ShopListing> result = new ArrayList<>(Math.min(limit, 16));
+        while (result.size() < limit && iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (inStock && entry.stock == 0) {
+                continue;
+            }
+            if (currency != null && !currency.equals(entry.listing.getItem().getCurrency())) {
+                continue;
+            }
+            result.add(entry.listing);
+        }
+        return result;
+    }
+
+    private static final class Entry {
+        private final ShopListing listing;
+        private final double buyPrice;
+        private final double sellPrice;
+        private final int stock;
+        private final long sequence;
+
+        private Entry(ShopListing listing, double buyPrice, double sellPrice, int stock, long sequence) {
+            this.listing = listing;
+            this.buyPrice = buyPrice;
+            this.sellPrice = sellPrice;
+            this.stock = stock;
+            this.sequence = sequence;
+        }
+    }
+}
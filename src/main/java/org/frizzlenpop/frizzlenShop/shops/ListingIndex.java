@@ -0,0 +1,135 @@
+package org.frizzlenpop.frizzlenShop.shops;
+
+import org.bukkit.Material;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Finds the listings of an item across all open shops.
+ * Listings are grouped by {@link ItemKey} into a {@link ListingBook} that keeps them in price order, and also by
+ * material for browsing. The listed items are indexed by the words of their names and lore for searching, see
+ * {@link ListingSearchIndex}. The material groups are arrays that are replaced rather than changed, so lookups
+ * never lock and never scan other items; changes are serialized. The shop manager keeps the index up to date as
+ * items are added, removed and repriced and as shops open, close and are deleted.
+ */
+final class ListingIndex {
+
+    private static final ShopListing[] NONE = new ShopListing[0];
+
+    private final Map<ItemKey, ListingBook> byKey = new ConcurrentHashMap<>();
+    private final AtomicReferenceArray<ShopListing[]> byMaterial = new AtomicReferenceArray<>(Material.values().length);
+    private final ListingSearchIndex search = new ListingSearchIndex();
+    private int size;
+
+    /**
+     * Add the listing of an item in a shop. Adding a listing that is already indexed does nothing.
+     *
+     * @param shop The shop
+     * @param item The item
+     */
+    synchronized void add(Shop shop, ShopItem item) {
+        ItemKey key = item.getKey();
+        ShopListing listing = new ShopListing(shop, item);
+        ListingBook book = byKey.get(key);
+        if (book == null) {
+            book = new ListingBook(key);
+            book.add(listing);
+            byKey.put(key, book);
+            search.add(book);
+        } else if (book.add(listing)) {
+            search.listingsChanged(book);
+        } else {
+            return;
+        }
+
+        int ordinal = key.getMaterial().ordinal();
+        byMaterial.set(ordinal, append(materialListings(ordinal), listing));
+        size++;
+    }
+
+    /**
+     * Remove the listing of an item in a shop
+     *
+     * @param item The item
+     */
+    synchronized void remove(ShopItem item) {
+        ItemKey key = item.getKey();
+        ListingBook book = byKey.get(key);
+        if (book == null || !book.remove(item)) {
+            return;
+        }
+
+        if (book.size() == 0) {
+            byKey.remove(key);
+            search.remove(book);
+        } else {
+            search.listingsChanged(book);
+        }
+        int ordinal = key.getMaterial().ordinal();
+        ShopListing[] materialRemaining = without(materialListings(ordinal), item);
+        byMaterial.set(ordinal, materialRemaining.length > 0 ? materialRemaining : null);
+        size--;
+    }
+
+    /**
+     * Move the listing of an item within its book after its price or stock has changed
+     *
+     * @param item The item
+     */
+    void update(ShopItem item) {
+        ListingBook book = byKey.get(item.getKey());
+        if (book != null) {
+            book.update(item);
+        }
+    }
+
+    /**
+     * Get the listings of an item
+     *
+     * @param key The item key
+     * @return The book of listings, which is empty if no open shop lists the item
+     */
+    ListingBook get(ItemKey key) {
+        return byKey.getOrDefault(key, ListingBook.EMPTY);
+    }
+
+    /**
+     * Get the listings of every item of a material, whatever its name, lore or enchantments
+     *
+     * @param material The material
+     * @return The listings, in no particular order
+     */
+    List<ShopListing> get(Material material) {
+        return List.of(materialListings(material.ordinal()));
+    }
+
+    /**
+     * @return The word index over the listed items
+     */
+    ListingSearchIndex getSearchIndex() {
+        return search;
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    private ShopListing[] materialListings(int ordinal) {
+        ShopListing[] listings = byMaterial.get(ordinal);
+        return listings != null ? listings : NONE;
+    }
+
+    private static ShopListing[] append(ShopListing[] listings, ShopListing listing) {
+        ShopListing[] result = Arrays.copyOf(listings, listings.length + 1);
+        result[listings.length] = listing;
+        return result;
+    }
+
+    private static ShopListing[] without(ShopListing[] listings, ShopItem item) {
+        return Arrays.stream(listings).filter(listing -> listing.getItem() != item).toArray(ShopListing[]::new);
+    }
+}
@@ -0,0 +1,437 @@
+package org.frizzlenpop.frizzlenShop.shops;
+
+import org.bukkit.ChatColor;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.regex.Pattern;
+
+/**
+ * Finds listed items by words in their material name, display name and lore.
+ * The text of every listed item is split into lower-case words, with colors stripped. Words are kept sorted, so a
+ * query word matches all words it is a prefix of with one range lookup, and each word is also filed under the
+ * variants that have one character deleted, so words one typo away from a query word are found with a few hash
+ * lookups instead of comparing against every word.
+ * <p>
+ * Items are indexed rather than listings, since many shops usually list the same item. Each item gets a small
+ * search id, and each word keeps a plain array of the ids of the items containing it. Scoring and ranking only
+ * touch int arrays indexed by search id, and only the {@link ListingBook}s of the best items are read. The listing
+ * index adds a book when the first listing of its item appears, removes it when the last one goes, and reports
+ * the listing counts in between, all while holding its lock.
+ */
+public final class ListingSearchIndex {
+
+    private static final Pattern WORD_SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    // Words found in the material or display name count for more than words found in the lore
+    private static final int NAME_WEIGHT = 2;
+    private static final int LORE_WEIGHT = 1;
+
+    // Exact matches rank above prefix matches, which rank above matches with one typo
+    private static final int EXACT_MATCH = 3;
+    private static final int PREFIX_MATCH = 2;
+    private static final int FUZZY_MATCH = 1;
+
+    // Shorter words are only matched exactly or by prefix, since one typo turns them into too many other words
+    private static final int MIN_FUZZY_LENGTH = 4;
+
+    // Word -> search ids of the items containing it
+    private final NavigableMap<String, Posting> postings = new ConcurrentSkipListMap<>();
+
+    // Word with one character deleted -> words it was made from
+    private final Map<String, Set<String>> deletions = new ConcurrentHashMap<>();
+
+    private volatile Slots slots = new Slots(64);
+    private final ArrayDeque<Integer> freeIds = new ArrayDeque<>();
+    private int nextId;
+
+    /**
+     * Index the words of an item
+     *
+     * @param book The listings of the item
+     */
+    void add(ListingBook book) {
+        int id = freeIds.isEmpty() ? nextId++ : freeIds.pop();
+        Slots current = slots;
+        if (id >= current.books.length) {
+            current = current.grow();
+            slots = current;
+        }
+        current.books[id] = book;
+        current.listingCounts[id] = book.size();
+        current.materials[id] = book.getKey().getMaterial().ordinal();
+        book.searchId = id;
+
+        for (Map.Entry<String, Integer> word : words(book.getKey()).entrySet()) {
+            postings.computeIfAbsent(word.getKey(), w -> {
+                for (String variant : deletionVariants(w)) {
+                    deletions.computeIfAbsent(variant, v -> ConcurrentHashMap.newKeySet()).add(w);
+                }
+                return new Posting();
+            }).add(id, word.getValue());
+        }
+    }
+
+    /**
+     * Record a change in the number of listings of an indexed item
+     *
+     * @param book The listings of the item
+     */
+    void listingsChanged(ListingBook book) {
+        slots.listingCounts[book.searchId] = book.size();
+    }
+
+    /**
+     * Remove the words of an item
+     *
+     * @param book The listings of the item
+     */
+    void remove(ListingBook book) {
+        int id = book.searchId;
+        for (String word : words(book.getKey()).keySet()) {
+            Posting posting = postings.get(word);
+            if (posting == null || !posting.remove(id) || posting.size > 0) {
+                continue;
+            }
+            postings.remove(word);
+            for (String variant : deletionVariants(word)) {
+                Set<String> words = deletions.get(variant);
+                if (words != null) {
+                    words.remove(word);
+                    if (words.isEmpty()) {
+                        deletions.remove(variant);
+                    }
+                }
+            }
+        }
+
+        Slots current = slots;
+        current.books[id] = null;
+        current.listingCounts[id] = 0;
+        freeIds.push(id);
+    }
+
+    /**
+     * Search the listings of open shops. An item matches if every word of the query matches one of its words
+     * exactly, as a prefix, or with one typo. Items are ranked by how well and where their words matched, then
+     * by how many shops list them, and the listings of an item are ordered admin shops first, then by price.
+     *
+     * @param query The search text
+     * @param limit The maximum number of listings to return
+     * @return The best listings and the total number of matching listings
+     */
+    public Results search(String query, int limit) {
+        List<String> queryWords = tokenize(query);
+        if (queryWords.isEmpty() || limit <= 0) {
+            return new Results(Collections.emptyList(), 0);
+        }
+        Slots indexed = slots;
+
+        // Score every item matching all query words
+        Matches matches = match(queryWords.get(0), indexed.books.length);
+        for (int i = 1; i < queryWords.size() && matches.count > 0; i++) {
+            Matches wordMatches = match(queryWords.get(i), indexed.books.length);
+            int kept = 0;
+            for (int j = 0; j < matches.count; j++) {
+                int id = matches.ids[j];
+                int score = wordMatches.scores[id];
+                if (score > 0) {
+                    matches.scores[id] += score;
+                    matches.ids[kept++] = id;
+                }
+            }
+            matches.count = kept;
+        }
+
+        // Keep the best items in a small heap, as every item has at least one listing
+        int[] scores = matches.scores;
+        int[] listingCounts = indexed.listingCounts;
+        int[] materials = indexed.materials;
+        Comparator<Integer> ranking = (a, b) -> {
+            int order = Integer.compare(scores[a], scores[b]);
+            if (order == 0) {
+                order = Integer.compare(listingCounts[a], listingCounts[b]);
+            }
+            return order != 0 ? order : Integer.compare(materials[b], materials[a]);
+        };
+        PriorityQueue<Integer> best = new PriorityQueue<>(limit + 1, ranking);
+        int total = 0;
+        for (int i = 0; i < matches.count; i++) {
+            int id = matches.ids[i];
+            if (listingCounts[id] == 0) {
+                continue;
+            }
+            total += listingCounts[id];
+            if (best.size() < limit) {
+                best.add(id);
+            } else if (ranking.compare(id, best.peek()) > 0) {
+                best.poll();
+                best.add(id);
+            }
+        }
+
+        List<Integer> ranked = new ArrayList<>(best);
+        ranked.sort(ranking.reversed());
+
+        List<ShopListing> results = new ArrayList<>(limit);
+        for (int id : ranked) {
+            ListingBook book = indexed.books[id];
+            if (book == null) {
+                continue;
+            }
+            List<ShopListing> itemListings = new ArrayList<>(book.getListings());
+            itemListings.sort(Comparator.comparing((ShopListing listing) -> listing.getShop().isAdminShop() ? 0 : 1)
+                    .thenComparingDouble(listing -> listing.getItem().getBuyPrice()));
+            for (ShopListing listing : itemListings) {
+                if (results.size() >= limit) {
+                    return new Results(results, total);
+                }
+                results.add(listing);
+            }
+        }
+        return new Results(results, total);
+    }
+
+    private Matches match(String queryWord, int capacity) {
+        Matches matches = new Matches(capacity);
+
+        for (Map.Entry<String, Posting> word
+                : postings.subMap(queryWord, true, queryWord + Character.MAX_VALUE, false).entrySet()) {
+            matches.collect(word.getValue(), word.getKey().equals(queryWord) ? EXACT_MATCH : PREFIX_MATCH);
+        }
+
+        if (queryWord.length() >= MIN_FUZZY_LENGTH) {
+            Set<String> candidates = new HashSet<>();
+            addCandidates(candidates, queryWord);
+            for (String variant : deletionVariants(queryWord)) {
+                if (postings.containsKey(variant)) {
+                    candidates.add(variant);
+                }
+                addCandidates(candidates, variant);
+            }
+            for (String candidate : candidates) {
+                Posting posting = postings.get(candidate);
+                if (posting != null && !candidate.startsWith(queryWord) && isOneEditApart(queryWord, candidate)) {
+                    matches.collect(posting, FUZZY_MATCH);
+                }
+            }
+        }
+        return matches;
+    }
+
+    private void addCandidates(Set<String> candidates, String variant) {
+        Set<String> words = deletions.get(variant);
+        if (words != null) {
+            candidates.addAll(words);
+        }
+    }
+
+    /**
+     * Get the words of an item with the weight of the most important field each appears in
+     */
+    private static Map<String, Integer> words(ItemKey key) {
+        Map<String, Integer> words = new LinkedHashMap<>();
+        addWords(words, key.getMaterial().name(), NAME_WEIGHT);
+        if (key.getDisplayName() != null) {
+            addWords(words, key.getDisplayName(), NAME_WEIGHT);
+        }
+        if (key.getLore() != null) {
+            for (String line : key.getLore()) {
+                addWords(words, line, LORE_WEIGHT);
+            }
+        }
+        return words;
+    }
+
+    private static void addWords(Map<String, Integer> words, String text, int weight) {
+        for (String word : tokenize(text)) {
+            words.merge(word, weight, Math::max);
+        }
+    }
+
+    private static List<String> tokenize(String text) {
+        String stripped = ChatColor.stripColor(text);
+        if (stripped == null) {
+            return Collections.emptyList();
+        }
+        List<String> words = new ArrayList<>();
+        for (String word : WORD_SEPARATOR.split(stripped.toLowerCase(Locale.ROOT))) {
+            if (!word.isEmpty()) {
+                words.add(word);
+            }
+        }
+        return words;
+    }
+
+    private static List<String> deletionVariants(String word) {
+        if (word.length() < MIN_FUZZY_LENGTH) {
+            return Collections.emptyList();
+        }
+        List<String> variants = new ArrayList<>(word.length());
+        for (int i = 0; i < word.length(); i++) {
+            variants.add(word.substring(0, i) + word.substring(i + 1));
+        }
+        return variants;
+    }
+
+    /**
+     * Check whether two different words are one insertion, deletion, substitution or swap of neighbours apart
+     */
+    private static boolean isOneEditApart(String a, String b) {
+        if (a.length() < b.length()) {
+            String shorter = a;
+            a = b;
+            b = shorter;
+        }
+        if (a.length() - b.length() > 1) {
+            return false;
+        }
+
+        int start = 0;
+        while (start < b.length() && a.charAt(start) == b.charAt(start)) {
+            start++;
+        }
+        if (a.length() != b.length()) {
+            return a.regionMatches(start + 1, b, start, b.length() - start);
+        }
+        if (start == a.length()) {
+            return false;
+        }
+        if (a.regionMatches(start + 1, b, start + 1, a.length() - start - 1)) {
+            return true;
+        }
+        return start + 1 < a.length()
+                && a.charAt(start) == b.charAt(start + 1) && a.charAt(start + 1) == b.charAt(start)
+                && a.regionMatches(start + 2, b, start + 2, a.length() - start - 2);
+    }
+
+    /**
+     * The search ids of the items containing a word, each with the weight of the field the word was found in in
+     * its two low bits. Changes are made under the listing index lock; a search reading the array while an entry
+     * is removed may see one entry twice or miss it, which only affects that one search.
+     */
+    private static final class Posting {
+        private volatile int[] entries = new int[4];
+        private volatile int size;
+
+        private void add(int id, int weight) {
+            int[] current = entries;
+            if (size == current.length) {
+                current = Arrays.copyOf(current, size * 2);
+                entries = current;
+            }
+            current[size] = (id << 2) | weight;
+            size = size + 1;
+        }
+
+        private boolean remove(int id) {
+            int[] current = entries;
+            for (int i = 0; i < size; i++) {
+                if (current[i] >>> 2 == id) {
+                    current[i] = current[size - 1];
+                    size = size - 1;
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Per search id: the indexed book, its number of listings and its material.
+     * Replaced by a larger copy when the ids run out.
+     */
+    private static final class Slots {
+        private final ListingBook[] books;
+        private final int[] listingCounts;
+        private final int[] materials;
+
+        private Slots(int capacity) {
+            this.books = new ListingBook[capacity];
+            this.listingCounts = new int[capacity];
+            this.materials = new int[capacity];
+        }
+
+        private Slots grow() {
+            Slots grown = new Slots(books.length * 2);
+            System.arraycopy(books, 0, grown.books, 0, books.length);
+            System.arraycopy(listingCounts, 0, grown.listingCounts, 0, listingCounts.length);
+            System.arraycopy(materials, 0, grown.materials, 0, materials.length);
+            return grown;
+        }
+    }
+
+    /**
+     * The best score of each item for one query word, indexed by search id, and the ids that have a score
+     */
+    private static final class Matches {
+        private final int[] scores;
+        private int[] ids = new int[16];
+        private int count;
+
+        private Matches(int capacity) {
+            this.scores = new int[capacity];
+        }
+
+        private void collect(Posting posting, int match) {
+            int size = posting.size;
+            int[] entries = posting.entries;
+            for (int i = 0, n = Math.min(size, entries.length); i < n; i++) {
+                int id = entries[i] >>> 2;
+                if (id >= scores.length) {
+                    continue;
+                }
+                int score = match * (entries[i] & 3);
+                if (scores[id] == 0) {
+                    if (count == ids.length) {
+                        ids = Arrays.copyOf(ids, count * 2);
+                    }
+                    ids[count++] = id;
+                    scores[id] = score;
+                } else if (score > scores[id]) {
+                    scores[id] = score;
+                }
+            }
+        }
+    }
+
+    /**
+     * The best listings found by a search
+     */
+    public static final class Results {
+        private final List<ShopListing> listings;
+        private final int totalMatches;
+
+        private Results(List<ShopListing> listings, int totalMatches) {
+            this.listings = listings;
+            this.totalMatches = totalMatches;
+        }
+
+        /**
+         * @return The best listings, best first
+         */
+        public List<ShopListing> getListings() {
+            return listings;
+        }
+
+        /**
+         * @return The number of listings matching the search, including those not returned
+         */
+        public int getTotalMatches() {
+            return totalMatches;
+        }
+    }
+}
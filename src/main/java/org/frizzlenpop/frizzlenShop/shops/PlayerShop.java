@@ -9,6 +9,7 @@ import org.frizzlenpop.frizzlenShop.FrizzlenShop;
 import org.frizzlenpop.frizzlenShop.utils.MessageUtils;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Implementation of a player-owned shop with limited stock
@@ -33,6 +34,9 @@ public class PlayerShop implements Shop {
     private String theme = "default";
     private boolean notificationsEnabled = true;
     private String category = "misc";
+    private boolean dirty = true;
+    private boolean statsDirty;
+    private final Set<ShopItem> dirtyItems = ConcurrentHashMap.newKeySet();
 
     /**
      * Create a new player shop
@@ -117,6 +121,7 @@ public class PlayerShop implements Shop {
     @Override
     public void setName(String name) {
         this.name = name;
+        dirty = true;
     }
 
     @Override
@@ -132,6 +137,7 @@ public class PlayerShop implements Shop {
     @Override
     public void setLocation(Location location) {
         this.location = location;
+        dirty = true;
     }
 
     @Override
@@ -179,6 +185,13 @@ public class PlayerShop implements Shop {
         
         // Add the item
         items.add(shopItem);
+        dirty = true;
+        
+        // Make the item findable by other shops' customers
+        ShopManager shopManager = plugin.getShopManager();
+        if (shopManager != null) {
+            shopManager.listingAdded(this, shopItem);
+        }
         
         // Update last accessed
         updateLastAccessed();
@@ -192,6 +205,12 @@ public class PlayerShop implements Shop {
             ShopItem shopItem = iterator.next();
             if (shopItem.matches(item)) {
                 iterator.remove();
+                dirtyItems.remove(shopItem);
+                dirty = true;
+                ShopManager shopManager = plugin.getShopManager();
+                if (shopManager != null) {
+                    shopManager.listingRemoved(shopItem);
+                }
                 return true;
             }
         }
@@ -250,6 +269,19 @@ public class PlayerShop implements Shop {
         return shopItem != null ? shopItem.getSellPrice() : -1;
     }
 
+    /**
+     * Player shops charge the prices their owners set, unaffected by the market
+     */
+    @Override
+    public double quoteBuyPrice(ShopItem shopItem, int amount) {
+        return shopItem.calculateBuyPrice(amount);
+    }
+
+    @Override
+    public double quoteSellPrice(ShopItem shopItem, int amount) {
+        return shopItem.calculateSellPrice(amount);
+    }
+
     @Override
     public boolean setSellPrice(ItemStack item, double price) {
         ShopItem shopItem = getShopItem(item);
@@ -321,7 +353,7 @@ public class PlayerShop implements Shop {
         }
         
         // Calculate price with tax
-        double price = shopItem.calculateBuyPrice(amount);
+        double price = quoteBuyPrice(shopItem, amount);
         double taxAmount = price * (taxRate / 100.0);
         double totalPrice = price + taxAmount;
         
@@ -376,13 +408,8 @@ public class PlayerShop implements Shop {
         updateStat("transactionCount", 1);
         updateStat("uniqueCustomers", 0.1); // This is a simplistic way to track unique customers
         
-        // Record transaction with DynamicPricingManager
-        if (plugin.getDynamicPricingManager() != null) {
-            plugin.getDynamicPricingManager().recordTransaction(shopItem, amount, true);
-        }
-        
-        // Log the transaction
-        plugin.getLogManager().logTransaction(player, this, item, amount, totalPrice, currency, true);
+        // Journal the transaction for persistence, market analysis and logging
+        plugin.getTransactionJournal().record(player, this, shopItem, item, amount, totalPrice, currency, true);
         
         // Send success message
         String formattedPrice = plugin.getEconomyManager().formatCurrency(totalPrice, currency);
@@ -436,7 +463,7 @@ public class PlayerShop implements Shop {
         }
         
         // Calculate the sell price
-        double price = shopItem.calculateSellPrice(amount);
+        double price = quoteSellPrice(shopItem, amount);
         
         // Check if the shop owner has enough money
         if (!plugin.getEconomyManager().has(owner, price, currency)) {
@@ -494,13 +521,8 @@ public class PlayerShop implements Shop {
         updateStat("totalExpenditure", price);
         updateStat("transactionCount", 1);
         
-        // Record transaction with DynamicPricingManager
-        if (plugin.getDynamicPricingManager() != null) {
-            plugin.getDynamicPricingManager().recordTransaction(shopItem, amount, false);
-        }
-        
-        // Log the transaction
-        plugin.getLogManager().logTransaction(player, this, item, amount, price, currency, false);
+        // Journal the transaction for persistence, market analysis and logging
+        plugin.getTransactionJournal().record(player, this, shopItem, item, amount, price, currency, false);
         
         // Send success message
         String formattedPrice = plugin.getEconomyManager().formatCurrency(price, currency);
@@ -525,6 +547,7 @@ public class PlayerShop implements Shop {
     @Override
     public void setDescription(String description) {
         this.description = description;
+        dirty = true;
     }
 
     @Override
@@ -535,6 +558,7 @@ public class PlayerShop implements Shop {
     @Override
     public void setTaxRate(double taxRate) {
         this.taxRate = taxRate;
+        dirty = true;
     }
 
     @Override
@@ -546,6 +570,7 @@ public class PlayerShop implements Shop {
     public void updateStat(String stat, double value) {
         double currentValue = stats.getOrDefault(stat, 0.0);
         stats.put(stat, currentValue + value);
+        statsDirty = true;
     }
     
     /**
@@ -586,6 +611,7 @@ public class PlayerShop implements Shop {
      */
     public void setExpirationTime(long expirationTime) {
         this.expirationTime = expirationTime;
+        dirty = true;
     }
     
     /**
@@ -641,6 +667,7 @@ public class PlayerShop implements Shop {
      */
     public void setAutoRenew(boolean autoRenew) {
         this.autoRenew = autoRenew;
+        dirty = true;
     }
 
     @Override
@@ -672,6 +699,11 @@ public class PlayerShop implements Shop {
     @Override
     public void setOpen(boolean open) {
         this.open = open;
+        dirty = true;
+        ShopManager shopManager = plugin.getShopManager();
+        if (shopManager != null) {
+            shopManager.shopOpenChanged(this);
+        }
     }
 
     @Override
@@ -688,6 +720,7 @@ public class PlayerShop implements Shop {
     @Override
     public void setPublic(boolean isPublic) {
         this.isPublic = isPublic;
+        dirty = true;
     }
 
     @Override
@@ -698,6 +731,7 @@ public class PlayerShop implements Shop {
     @Override
     public void setTheme(String theme) {
         this.theme = theme;
+        dirty = true;
     }
 
     @Override
@@ -708,6 +742,7 @@ public class PlayerShop implements Shop {
     @Override
     public void setNotificationsEnabled(boolean enabled) {
         this.notificationsEnabled = enabled;
+        dirty = true;
     }
 
     @Override
@@ -729,5 +764,45 @@ public class PlayerShop implements Shop {
     @Override
     public void setCategory(String category) {
         this.category = category;
+        dirty = true;
+    }
+
+    @Override
+    public boolean isDirty() {
+        return dirty;
+    }
+
+    @Override
+    public boolean isStatsDirty() {
+        return statsDirty;
+    }
+
+    @Override
+    public Collection<ShopItem> getDirtyItems() {
+        return new ArrayList<>(dirtyItems);
+    }
+
+    @Override
+    public void itemChanged(ShopItem item) {
+        // A removed item may still be changed through a stale reference and must not be saved again
+        if (items.contains(item)) {
+            dirtyItems.add(item);
+        }
+    }
+
+    @Override
+    public void markDirty() {
+        dirty = true;
+    }
+
+    @Override
+    public void markClean() {
+        // A full save wrote every item, otherwise only the changed ones were written
+        for (ShopItem shopItem : dirty ? items : dirtyItems) {
+            shopItem.markClean();
+        }
+        dirtyItems.clear();
+        statsDirty = false;
+        dirty = false;
     }
-} 
\ No newline at end of file
+}
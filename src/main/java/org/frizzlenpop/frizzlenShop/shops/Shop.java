@@ -5,6 +5,7 @@ import org.bukkit.Location;
 import org.bukkit.entity.Player;
 import org.bukkit.inventory.ItemStack;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
@@ -50,7 +51,8 @@ public interface Shop {
     Location getLocation();
 
     /**
-     * Set the shop's location
+     * Set the shop's location. Registered shops are moved with {@link ShopManager#moveShop(Shop, Location)},
+     * which also updates the location index.
      *
      * @param location The new location for the shop
      */
@@ -175,6 +177,26 @@ public interface Shop {
      */
     boolean setSellPrice(ItemStack item, double price);
 
+    /**
+     * Get the price a player pays to buy an amount of an item, before tax.
+     * Purchases are charged this price and menus show it, so the two always agree.
+     *
+     * @param shopItem The shop item
+     * @param amount   The amount to buy
+     * @return The total price
+     */
+    double quoteBuyPrice(ShopItem shopItem, int amount);
+
+    /**
+     * Get the price a player is paid for selling an amount of an item.
+     * Sales are paid this price and menus show it, so the two always agree.
+     *
+     * @param shopItem The shop item
+     * @param amount   The amount to sell
+     * @return The total price
+     */
+    double quoteSellPrice(ShopItem shopItem, int amount);
+
     /**
      * Get the currency for an item
      *
@@ -387,4 +409,46 @@ public interface Shop {
      * @param category The new category
      */
     void setCategory(String category);
-} 
\ No newline at end of file
+
+    /**
+     * Check if the shop's own state changed since it was last saved.
+     * This covers shop fields and which items the shop holds; stats and
+     * changes to an item's price or stock are tracked separately.
+     *
+     * @return True if the shop needs saving
+     */
+    boolean isDirty();
+
+    /**
+     * Check if the shop's stats changed since it was last saved.
+     * Every trade updates the stats, so they are saved without rewriting the rest of the shop.
+     *
+     * @return True if the stats need saving
+     */
+    boolean isStatsDirty();
+
+    /**
+     * Get the items whose price or stock changed since the shop was last saved
+     *
+     * @return The changed items
+     */
+    Collection<ShopItem> getDirtyItems();
+
+    /**
+     * Record that one of the shop's items changed. Called by the item
+     * the first time it changes after being saved.
+     *
+     * @param item The item that changed
+     */
+    void itemChanged(ShopItem item);
+
+    /**
+     * Mark the shop as changed so the next save writes it
+     */
+    void markDirty();
+
+    /**
+     * Mark the shop, its stats and its items as saved
+     */
+    void markClean();
+}
\ No newline at end of file
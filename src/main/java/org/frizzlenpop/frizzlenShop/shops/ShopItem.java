@@ -4,10 +4,14 @@ import org.bukkit.inventory.ItemStack;
 import org.bukkit.inventory.meta.ItemMeta;
 import org.bukkit.inventory.meta.Damageable;
 import org.bukkit.Material;
+import org.frizzlenpop.frizzlenShop.FrizzlenShop;
+import org.frizzlenpop.frizzlenShop.economy.CraftingRelationManager;
+import org.frizzlenpop.frizzlenShop.utils.ItemCodec;
 
 import java.util.UUID;
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.Map;
+import java.util.Objects;
 
 /**
  * Represents an item in a shop
@@ -24,6 +28,9 @@ public class ShopItem {
     private int soldCount;
     private int boughtCount;
     private long lastPriceChange;
+    private boolean dirty = true;
+    private volatile byte[] encodedItem;
+    private volatile ItemKey key;
 
     /**
      * Create a new shop item
@@ -117,7 +124,10 @@ public class ShopItem {
      * @param shopId The shop ID
      */
     public void setShopId(UUID shopId) {
-        this.shopId = shopId;
+        if (!Objects.equals(this.shopId, shopId)) {
+            this.shopId = shopId;
+            markChanged();
+        }
     }
 
     /**
@@ -129,6 +139,35 @@ public class ShopItem {
         return item.clone();
     }
 
+    /**
+     * Get the item in the binary storage format.
+     * The item never changes after construction, so it is encoded once and the result is reused by every save.
+     *
+     * @return The encoded item, which must not be modified
+     */
+    public byte[] getEncodedItem() {
+        byte[] encoded = encodedItem;
+        if (encoded == null) {
+            encoded = ItemCodec.encode(item);
+            encodedItem = encoded;
+        }
+        return encoded;
+    }
+
+    /**
+     * Get the key identifying the item for trading. Like the encoded item, it is built once and reused.
+     *
+     * @return The item key
+     */
+    public ItemKey getKey() {
+        ItemKey itemKey = key;
+        if (itemKey == null) {
+            itemKey = ItemKey.of(item);
+            key = itemKey;
+        }
+        return itemKey;
+    }
+
     /**
      * Get the buy price
      *
@@ -155,6 +194,8 @@ public class ShopItem {
     public void setBuyPrice(double buyPrice) {
         this.buyPrice = buyPrice;
         this.lastPriceChange = System.currentTimeMillis();
+        markChanged();
+        listingChanged();
     }
     
     /**
@@ -166,6 +207,8 @@ public class ShopItem {
         this.buyPrice = price;
         this.sellPrice = price * 0.8; // Default sell price is 80% of buy price
         this.lastPriceChange = System.currentTimeMillis();
+        markChanged();
+        listingChanged();
     }
 
     /**
@@ -185,6 +228,8 @@ public class ShopItem {
     public void setSellPrice(double sellPrice) {
         this.sellPrice = sellPrice;
         this.lastPriceChange = System.currentTimeMillis();
+        markChanged();
+        listingChanged();
     }
 
     /**
@@ -203,6 +248,7 @@ public class ShopItem {
      */
     public void setCurrency(String currency) {
         this.currency = currency;
+        markChanged();
     }
 
     /**
@@ -221,6 +267,8 @@ public class ShopItem {
      */
     public void setStock(int stock) {
         this.stock = stock;
+        markChanged();
+        listingChanged();
     }
 
     /**
@@ -235,6 +283,8 @@ public class ShopItem {
         }
         
         stock += amount;
+        markChanged();
+        listingChanged();
         return stock;
     }
 
@@ -254,6 +304,8 @@ public class ShopItem {
         }
         
         stock -= amount;
+        markChanged();
+        listingChanged();
         return stock;
     }
 
@@ -312,6 +364,29 @@ public class ShopItem {
         return lastPriceChange;
     }
 
+    /**
+     * Check if the item changed since it was last saved
+     *
+     * @return True if the item needs saving
+     */
+    public boolean isDirty() {
+        return dirty;
+    }
+
+    /**
+     * Mark the item as changed so the next save writes it
+     */
+    public void markDirty() {
+        markChanged();
+    }
+
+    /**
+     * Mark the item as saved
+     */
+    public void markClean() {
+        this.dirty = false;
+    }
+
     /**
      * Check if the item matches another item
      *
@@ -501,39 +576,21 @@ public class ShopItem {
      * @return True if the item is crafted, false otherwise
      */
     public boolean isCrafted() {
-        // In a real implementation, this would check a crafting recipe database
-        // For now, we'll use a simple check for items that are typically crafted
-        Material material = item.getType();
-        return material.isItem() && !material.isBlock() && 
-               !material.name().contains("ORE") && 
-               !material.name().contains("INGOT") && 
-               !material.name().contains("LOG");
+        CraftingRelationManager craftingManager = getCraftingManager();
+        return craftingManager != null && craftingManager.isCraftedItem(item.getType());
     }
     
     /**
      * Gets the crafting components for this item
      * 
-     * @return A map of component materials to their quantities
+     * @return A map of component materials to their quantities per craft
      */
     public Map<Material, Integer> getCraftingComponents() {
-        // In a real implementation, this would lookup a crafting recipe database
-        // For now, we'll return a placeholder implementation with some common recipes
-        Map<Material, Integer> components = new HashMap<>();
-        
-        Material material = item.getType();
-        
-        // Example recipes
-        if (material == Material.DIAMOND_SWORD) {
-            components.put(Material.DIAMOND, 2);
-            components.put(Material.STICK, 1);
-        } else if (material == Material.IRON_PICKAXE) {
-            components.put(Material.IRON_INGOT, 3);
-            components.put(Material.STICK, 2);
-        } else if (material == Material.CRAFTING_TABLE) {
-            components.put(Material.OAK_PLANKS, 4);
+        CraftingRelationManager craftingManager = getCraftingManager();
+        if (craftingManager == null) {
+            return Collections.emptyMap();
         }
-        
-        return components;
+        return craftingManager.getComponents(item.getType());
     }
     
     /**
@@ -553,56 +610,43 @@ public class ShopItem {
      * @return The calculated crafting value
      */
     public double getCraftingValue() {
-        if (!isCrafted()) {
+        CraftingRelationManager craftingManager = getCraftingManager();
+        if (craftingManager == null || !craftingManager.isCraftedItem(item.getType())) {
             return 0.0;
         }
         
-        Map<Material, Integer> components = getCraftingComponents();
-        if (components.isEmpty()) {
-            return 0.0;
-        }
-        
-        double totalValue = 0.0;
-        
-        for (Map.Entry<Material, Integer> entry : components.entrySet()) {
-            Material component = entry.getKey();
-            int quantity = entry.getValue();
-            
-            // Get base price for component
-            // Note: In a real implementation, this would use the market analyzer
-            // or pricing system to get the current value
-            double basePrice = getBasePrice(component);
-            
-            totalValue += basePrice * quantity;
-        }
-        
         // Add a crafting fee (15% of component cost)
-        totalValue *= 1.15;
-        
-        return totalValue;
+        return craftingManager.getCraftCost(item.getType()) * 1.15;
     }
     
     /**
-     * Helper method to get a base price for a material
-     * This is a simplified version - in practice this would use the pricing system
-     * 
-     * @param material The material to get a price for
-     * @return The base price
-     */
-    private double getBasePrice(Material material) {
-        // Simple pricing based on material type
-        if (material.name().contains("DIAMOND")) {
-            return 100.0;
-        } else if (material.name().contains("GOLD")) {
-            return 50.0;
-        } else if (material.name().contains("IRON")) {
-            return 25.0;
-        } else if (material.name().contains("STONE")) {
-            return 1.0;
-        } else if (material.name().contains("WOOD") || material.name().contains("PLANKS")) {
-            return 2.0;
-        } else {
-            return 5.0;
+     * Mark the item dirty, telling its shop the first time it changes after a save
+     * so the shop can find its changed items without scanning all of them
+     */
+    private void markChanged() {
+        if (dirty) {
+            return;
+        }
+        dirty = true;
+        FrizzlenShop plugin = FrizzlenShop.getInstance();
+        ShopManager shopManager = plugin != null ? plugin.getShopManager() : null;
+        Shop shop = shopManager != null && shopId != null ? shopManager.getShop(shopId) : null;
+        if (shop != null) {
+            shop.itemChanged(this);
         }
     }
+    
+    // Keep the item's place in the listing books in step with its prices and stock
+    private void listingChanged() {
+        FrizzlenShop plugin = FrizzlenShop.getInstance();
+        ShopManager shopManager = plugin != null ? plugin.getShopManager() : null;
+        if (shopManager != null) {
+            shopManager.listingChanged(this);
+        }
+    }
+    
+    private static CraftingRelationManager getCraftingManager() {
+        FrizzlenShop plugin = FrizzlenShop.getInstance();
+        return plugin != null ? plugin.getCraftingRelationManager() : null;
+    }
 } 
\ No newline at end of file
@@ -0,0 +1,23 @@
+package org.frizzlenpop.frizzlenShop.shops;
+
+/**
+ * An item offered by a shop
+ */
+public final class ShopListing {
+
+    private final Shop shop;
+    private final ShopItem item;
+
+    ShopListing(Shop shop, ShopItem item) {
+        this.shop = shop;
+        this.item = item;
+    }
+
+    public Shop getShop() {
+        return shop;
+    }
+
+    public ShopItem getItem() {
+        return item;
+    }
+}
@@ -0,0 +1,175 @@
+package org.frizzlenpop.frizzlenShop.shops;
+
+import org.bukkit.Location;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Finds shops by block position.
+ * Shops are grouped per world and per chunk, keyed by the chunk coordinates packed into a long, and each chunk
+ * holds a small array of its shops with their block position inside the chunk packed into an int. A lookup is two
+ * hash probes and a scan of the few shops in one chunk. The arrays are replaced rather than changed, so lookups
+ * never lock; changes are serialized.
+ * <p>
+ * The chunks that hold shops are also kept in a {@link ChunkOccupancy}, so a block in a chunk without shops can be
+ * rejected with one primitive probe before any map is consulted.
+ */
+final class ShopLocationIndex {
+
+    private static final Entry[] EMPTY = new Entry[0];
+
+    // World UUID -> chunk key -> shops in that chunk
+    private final Map<UUID, Map<Long, Entry[]>> worlds = new ConcurrentHashMap<>();
+
+    // Where each shop was indexed, so it can be removed after its location has changed
+    private final Map<UUID, Position> positions = new ConcurrentHashMap<>();
+
+    // Chunks holding at least one shop
+    private final ChunkOccupancy occupancy = new ChunkOccupancy();
+
+    /**
+     * Add a shop at its current location. A shop that is already indexed is moved.
+     *
+     * @param shop The shop
+     */
+    synchronized void add(Shop shop) {
+        remove(shop);
+
+        Location location = shop.getLocation();
+        if (location == null || location.getWorld() == null) {
+            return;
+        }
+
+        int x = location.getBlockX();
+        int y = location.getBlockY();
+        int z = location.getBlockZ();
+        Position position = new Position(location.getWorld().getUID(), chunkKey(x >> 4, z >> 4), blockKey(x, y, z));
+        Map<Long, Entry[]> chunks = worlds.computeIfAbsent(position.worldId, k -> new ConcurrentHashMap<>());
+        if (!chunks.containsKey(position.chunkKey)) {
+            occupancy.add(position.worldId, position.chunkKey);
+        }
+        chunks.merge(position.chunkKey, new Entry[]{new Entry(position.blockKey, shop)}, ShopLocationIndex::concat);
+        positions.put(shop.getId(), position);
+    }
+
+    /**
+     * Remove a shop from the position it was indexed at
+     *
+     * @param shop The shop
+     */
+    synchronized void remove(Shop shop) {
+        Position position = positions.remove(shop.getId());
+        if (position == null) {
+            return;
+        }
+
+        Map<Long, Entry[]> chunks = worlds.get(position.worldId);
+        if (chunks == null) {
+            return;
+        }
+        chunks.computeIfPresent(position.chunkKey, (key, entries) -> {
+            Entry[] remaining = Arrays.stream(entries).filter(entry -> entry.shop != shop).toArray(Entry[]::new);
+            return remaining.length > 0 ? remaining : null;
+        });
+        if (!chunks.containsKey(position.chunkKey)) {
+            occupancy.remove(position.worldId, position.chunkKey);
+        }
+        if (chunks.isEmpty()) {
+            worlds.remove(position.worldId);
+        }
+    }
+
+    /**
+     * Find the shop on a block
+     *
+     * @param worldId The world UUID
+     * @param x The block x coordinate
+     * @param y The block y coordinate
+     * @param z The block z coordinate
+     * @return The shop, or null if there is no shop on the block
+     */
+    Shop get(UUID worldId, int x, int y, int z) {
+        Map<Long, Entry[]> chunks = worlds.get(worldId);
+        if (chunks == null) {
+            return null;
+        }
+        Entry[] entries = chunks.getOrDefault(chunkKey(x >> 4, z >> 4), EMPTY);
+        int blockKey = blockKey(x, y, z);
+        for (Entry entry : entries) {
+            if (entry.blockKey == blockKey) {
+                return entry.shop;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Check whether any shop is in the chunk holding a block. This is a single probe of a primitive table and
+     * does not allocate, so it can run first on every block event.
+     *
+     * @param worldId The world UUID
+     * @param x The block x coordinate
+     * @param z The block z coordinate
+     * @return True if the chunk contains at least one shop
+     */
+    boolean mayContainShop(UUID worldId, int x, int z) {
+        return occupancy.contains(worldId, chunkKey(x >> 4, z >> 4));
+    }
+
+    int size() {
+        return positions.size();
+    }
+
+    /**
+     * @return The number of chunks that contain shops
+     */
+    int chunkCount() {
+        return occupancy.size();
+    }
+
+    /**
+     * Pack chunk coordinates into one key
+     *
+     * @param chunkX The chunk x coordinate
+     * @param chunkZ The chunk z coordinate
+     * @return The chunk key
+     */
+    static long chunkKey(int chunkX, int chunkZ) {
+        return ((long) chunkX << 32) | (chunkZ & 0xFFFFFFFFL);
+    }
+
+    private static int blockKey(int x, int y, int z) {
+        return (y << 8) | ((x & 15) << 4) | (z & 15);
+    }
+
+    private static Entry[] concat(Entry[] entries, Entry[] added) {
+        Entry[] result = Arrays.copyOf(entries, entries.length + added.length);
+        System.arraycopy(added, 0, result, entries.length, added.length);
+        return result;
+    }
+
+    private static final class Entry {
+        private final int blockKey;
+        private final Shop shop;
+
+        private Entry(int blockKey, Shop shop) {
+            this.blockKey = blockKey;
+            this.shop = shop;
+        }
+    }
+
+    private static final class Position {
+        private final UUID worldId;
+        private final long chunkKey;
+        private final int blockKey;
+
+        private Position(UUID worldId, long chunkKey, int blockKey) {
+            this.worldId = worldId;
+            this.chunkKey = chunkKey;
+            this.blockKey = blockKey;
+        }
+    }
+}
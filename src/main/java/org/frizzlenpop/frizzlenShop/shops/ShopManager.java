@@ -1,6 +1,8 @@
 package org.frizzlenpop.frizzlenShop.shops;
 
 import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.block.Block;
 import org.bukkit.entity.Player;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.Material;
@@ -9,6 +11,7 @@ import org.frizzlenpop.frizzlenShop.utils.MessageUtils;
 
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.stream.Collectors;
 
 /**
@@ -19,6 +22,9 @@ public class ShopManager {
     private final FrizzlenShop plugin;
     private final Map<UUID, Shop> shops;
     private final Map<UUID, List<UUID>> playerShops; // Map of player UUID to their shop UUIDs
+    private final ShopLocationIndex locationIndex = new ShopLocationIndex();
+    private final LongAdder fastPathRejections = new LongAdder();
+    private final ListingIndex listingIndex = new ListingIndex();
 
     /**
      * Creates a new shop manager
@@ -149,6 +155,7 @@ public class ShopManager {
         
         AdminShop shop = new AdminShop(plugin, name, location);
         shops.put(shop.getId(), shop);
+        locationIndex.add(shop);
         
         return shop;
     }
@@ -173,6 +180,7 @@ public class ShopManager {
         
         PlayerShop shop = new PlayerShop(plugin, name, owner, location);
         shops.put(shop.getId(), shop);
+        locationIndex.add(shop);
         
         // Add to player's shops
         playerShops.computeIfAbsent(owner, k -> new ArrayList<>()).add(shop.getId());
@@ -191,6 +199,8 @@ public class ShopManager {
         if (shop == null) {
             return false;
         }
+        locationIndex.remove(shop);
+        unindexListings(shop);
         
         // If it's a player shop, remove from player's shops list
         if (!shop.isAdminShop() && shop.getOwner() != null) {
@@ -206,11 +216,25 @@ public class ShopManager {
         return true;
     }
 
+    /**
+     * Move a shop to a new location, keeping the location index up to date.
+     * Shops should always be moved through this method rather than {@link Shop#setLocation(Location)}.
+     *
+     * @param shop     The shop to move
+     * @param location The new location of the shop
+     */
+    public void moveShop(Shop shop, Location location) {
+        shop.setLocation(location);
+        if (shops.containsKey(shop.getId())) {
+            locationIndex.add(shop);
+        }
+    }
+
     /**
      * Find a shop at a location
      *
      * @param location The location to check
-     * @return The shop at the location, or null if no shop exists there
+     * @return The shop on the block of the location, or null if no shop exists there
      */
     public Shop getShopAtLocation(Location location) {
         // Check if location or its world is null
@@ -218,30 +242,91 @@ public class ShopManager {
             return null;
         }
         
-        // Simple implementation - in a real plugin, you'd want to use a more efficient spatial lookup
-        for (Shop shop : shops.values()) {
-            if (shop.getLocation() != null && 
-                shop.getLocation().getWorld() != null && 
-                shop.getLocation().getWorld().equals(location.getWorld())) {
-                
-                double distance = shop.getLocation().distance(location);
-                if (distance < 1.0) { // Within 1 block
-                    return shop;
-                }
-            }
+        return locationIndex.get(location.getWorld().getUID(), location.getBlockX(), location.getBlockY(), location.getBlockZ());
+    }
+
+    /**
+     * Find the shop on a block. Nearly all block events happen in chunks without any shop, and those are rejected
+     * after one probe of the chunk set, without creating a {@link Location} or allocating anything else.
+     *
+     * @param block The block to check
+     * @return The shop, or null if there is no shop on the block
+     */
+    public Shop getShopAt(Block block) {
+        World world = block.getWorld();
+        int x = block.getX();
+        int z = block.getZ();
+        if (!locationIndex.mayContainShop(world.getUID(), x, z)) {
+            fastPathRejections.increment();
+            return null;
         }
-        return null;
+        return locationIndex.get(world.getUID(), x, block.getY(), z);
+    }
+
+    /**
+     * @return The number of block lookups rejected because their chunk has no shops
+     */
+    public long getFastPathRejections() {
+        return fastPathRejections.sum();
+    }
+
+    /**
+     * @return The number of chunks that contain at least one shop
+     */
+    public int getShopChunkCount() {
+        return locationIndex.chunkCount();
+    }
+
+    /**
+     * Get the listings of an item in all open shops
+     *
+     * @param item The item to search for
+     * @return The listings, in no particular order
+     */
+    public List<ShopListing> getListings(ItemStack item) {
+        return getListingBook(item).getListings();
+    }
+
+    /**
+     * Get the listings of an item in all open shops, in price order
+     *
+     * @param item The item to search for
+     * @return The book of listings, which is empty if no open shop lists the item
+     */
+    public ListingBook getListingBook(ItemStack item) {
+        return listingIndex.get(ItemKey.of(item));
+    }
+
+    /**
+     * Get the listings of every item of a material in all open shops
+     *
+     * @param material The material to search for
+     * @return The listings, in no particular order
+     */
+    public List<ShopListing> getListings(Material material) {
+        return listingIndex.get(material);
+    }
+
+    /**
+     * Search the listings of all open shops by the words in item names and lore
+     *
+     * @param query The search text
+     * @param limit The maximum number of listings to return
+     * @return The best matching listings and the total number of matches
+     */
+    public ListingSearchIndex.Results searchListings(String query, int limit) {
+        return listingIndex.getSearchIndex().search(query, limit);
     }
 
     /**
      * Find shops selling an item
      *
      * @param item The item to search for
-     * @return A list of shops selling the item
+     * @return A list of open shops selling the item
      */
     public List<Shop> findShopsSelling(ItemStack item) {
-        return shops.values().stream()
-                .filter(shop -> shop.hasItem(item))
+        return getListings(item).stream()
+                .map(ShopListing::getShop)
                 .collect(Collectors.toList());
     }
 
@@ -250,14 +335,11 @@ public class ShopManager {
      *
      * @param item     The item to search for
      * @param currency The currency to use
-     * @return The shop with the best price, or null if no shops sell the item
+     * @return The open shop with the best price and any stock left, or null if no shops sell the item
      */
     public Shop findBestPriceSelling(ItemStack item, String currency) {
-        return shops.values().stream()
-                .filter(shop -> shop.hasItem(item))
-                .filter(shop -> currency.equals(shop.getCurrency(item)))
-                .min(Comparator.comparingDouble(shop -> shop.getBuyPrice(item)))
-                .orElse(null);
+        ShopListing listing = getListingBook(item).getCheapestSeller(currency);
+        return listing != null ? listing.getShop() : null;
     }
 
     /**
@@ -265,14 +347,69 @@ public class ShopManager {
      *
      * @param item     The item to search for
      * @param currency The currency to use
-     * @return The shop with the best price, or null if no shops buy the item
+     * @return The open shop with the best price, or null if no shops buy the item
      */
     public Shop findBestPriceBuying(ItemStack item, String currency) {
-        return shops.values().stream()
-                .filter(shop -> shop.hasItem(item))
-                .filter(shop -> currency.equals(shop.getCurrency(item)))
-                .max(Comparator.comparingDouble(shop -> shop.getSellPrice(item)))
-                .orElse(null);
+        ShopListing listing = getListingBook(item).getBestBuyer(currency);
+        return listing != null ? listing.getShop() : null;
+    }
+
+    /**
+     * Called by a shop after it has added an item
+     *
+     * @param shop The shop
+     * @param item The added item
+     */
+    void listingAdded(Shop shop, ShopItem item) {
+        if (shops.get(shop.getId()) == shop && shop.isOpen()) {
+            listingIndex.add(shop, item);
+        }
+    }
+
+    /**
+     * Called by a shop after it has removed an item
+     *
+     * @param item The removed item
+     */
+    void listingRemoved(ShopItem item) {
+        listingIndex.remove(item);
+    }
+
+    /**
+     * Called by a shop item after its price or stock has changed
+     *
+     * @param item The changed item
+     */
+    void listingChanged(ShopItem item) {
+        listingIndex.update(item);
+    }
+
+    /**
+     * Called by a shop after it has been opened or closed
+     *
+     * @param shop The shop
+     */
+    void shopOpenChanged(Shop shop) {
+        if (shop.isOpen()) {
+            indexListings(shop);
+        } else {
+            unindexListings(shop);
+        }
+    }
+
+    private void indexListings(Shop shop) {
+        if (shops.get(shop.getId()) != shop || !shop.isOpen()) {
+            return;
+        }
+        for (ShopItem item : shop.getItems()) {
+            listingIndex.add(shop, item);
+        }
+    }
+
+    private void unindexListings(Shop shop) {
+        for (ShopItem item : shop.getItems()) {
+            listingIndex.remove(item);
+        }
     }
 
     /**
@@ -359,6 +496,8 @@ public class ShopManager {
         }
         
         shops.put(shop.getId(), shop);
+        locationIndex.add(shop);
+        indexListings(shop);
         
         // If it's a player shop, add it to the player's shops list
         if (!shop.isAdminShop() && shop.getOwner() != null) {
@@ -533,8 +672,16 @@ public class ShopManager {
         // In a real implementation, you might have a more sophisticated pricing system
         // based on item rarity, enchantments, etc.
         // For now, we'll use a simple system based on material
-        Material material = item.getType();
-        
+        return getDefaultBuyPrice(item.getType());
+    }
+    
+    /**
+     * Get the default buy price for a material
+     *
+     * @param material The material to get the price for
+     * @return The default buy price
+     */
+    public double getDefaultBuyPrice(Material material) {
         // Base price categories
         if (material.name().contains("DIAMOND") || material.name().contains("NETHERITE")) {
             return 100.0;
@@ -0,0 +1,497 @@
+package org.frizzlenpop.frizzlenShop.utils;
+
+import org.frizzlenpop.frizzlenShop.FrizzlenShop;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+
+/**
+ * A small JDBC connection pool.
+ * Connections are handed out as leases: closing a leased connection returns it to the pool
+ * instead of closing the physical connection. Each physical connection keeps its own
+ * prepared statement cache, so repeated queries skip re-parsing.
+ */
+public class ConnectionPool {
+
+    /**
+     * Opens a new physical database connection
+     */
+    @FunctionalInterface
+    public interface ConnectionFactory {
+        Connection create() throws SQLException;
+    }
+
+    private final FrizzlenShop plugin;
+    private final ConnectionFactory factory;
+    private final String name;
+    private final int maxSize;
+    private final int minIdle;
+    private final int statementCacheSize;
+    private final long acquireTimeoutMillis;
+    private final long idleTimeoutMillis;
+    private final long validationIntervalMillis;
+
+    private final BlockingDeque<PooledConnection> idle = new LinkedBlockingDeque<>();
+    private final Semaphore permits;
+    private final Semaphore writePermit;
+    private final ScheduledExecutorService housekeeper;
+
+    private final AtomicInteger totalConnections = new AtomicInteger();
+    private final AtomicInteger activeConnections = new AtomicInteger();
+    private final LongAdder acquireCount = new LongAdder();
+    private final LongAdder totalWaitNanos = new LongAdder();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private volatile boolean closed;
+
+    /**
+     * Creates a new connection pool
+     *
+     * @param plugin The plugin instance
+     * @param name The pool name, used in log messages and thread names
+     * @param factory Opens new physical connections
+     * @param maxSize The maximum number of physical connections
+     * @param singleWriter True to allow only one write lease at a time (SQLite)
+     * @param statementCacheSize The number of prepared statements cached per connection
+     * @param acquireTimeoutMillis How long to wait for a free connection
+     * @param idleTimeoutMillis How long a connection may sit idle before it is closed
+     * @param validationIntervalMillis How long a connection may sit idle before it is validated on borrow
+     */
+    public ConnectionPool(FrizzlenShop plugin, String name, ConnectionFactory factory, int maxSize, boolean singleWriter,
+                          int statementCacheSize, long acquireTimeoutMillis, long idleTimeoutMillis,
+                          long validationIntervalMillis) {
+        this.plugin = plugin;
+        this.name = name;
+        this.factory = factory;
+        this.maxSize = Math.max(1, maxSize);
+        this.minIdle = singleWriter ? 1 : Math.min(2, this.maxSize);
+        this.statementCacheSize = Math.max(0, statementCacheSize);
+        this.acquireTimeoutMillis = acquireTimeoutMillis;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.validationIntervalMillis = validationIntervalMillis;
+        this.permits = new Semaphore(this.maxSize, true);
+        this.writePermit = singleWriter ? new Semaphore(1, true) : null;
+
+        this.housekeeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "FrizzlenShop-" + name + "-Housekeeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(1000L, Math.min(idleTimeoutMillis, 30000L));
+        this.housekeeper.scheduleWithFixedDelay(this::evictIdle, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Lease a connection for reading
+     *
+     * @return A leased connection; close it to return it to the pool
+     * @throws SQLException If no connection could be obtained
+     */
+    public Connection getConnection() throws SQLException {
+        return borrow(false);
+    }
+
+    /**
+     * Lease a connection for writing.
+     * On single-writer pools only one write lease is handed out at a time.
+     *
+     * @return A leased connection; close it to return it to the pool
+     * @throws SQLException If no connection could be obtained
+     */
+    public Connection getWriteConnection() throws SQLException {
+        return borrow(writePermit != null);
+    }
+
+    private Connection borrow(boolean exclusiveWrite) throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool " + name + " is closed");
+        }
+
+        long start = System.nanoTime();
+        try {
+            if (exclusiveWrite && !writePermit.tryAcquire(acquireTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                throw new SQLException("Timed out after " + acquireTimeoutMillis + "ms waiting for the " + name + " write connection");
+            }
+            if (!permits.tryAcquire(acquireTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                if (exclusiveWrite) {
+                    writePermit.release();
+                }
+                throw new SQLException("Timed out after " + acquireTimeoutMillis + "ms waiting for a " + name + " connection ("
+                        + activeConnections.get() + " active)");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a " + name + " connection", e);
+        }
+        recordWait(System.nanoTime() - start);
+
+        try {
+            PooledConnection pooled = takeIdleOrCreate();
+            activeConnections.incrementAndGet();
+            return pooled.lease(exclusiveWrite);
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            if (exclusiveWrite) {
+                writePermit.release();
+            }
+            throw e;
+        }
+    }
+
+    private PooledConnection takeIdleOrCreate() throws SQLException {
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            if (pooled.isUsable()) {
+                return pooled;
+            }
+            discard(pooled);
+        }
+
+        pooled = new PooledConnection(factory.create());
+        totalConnections.incrementAndGet();
+        return pooled;
+    }
+
+    private void release(PooledConnection pooled, boolean exclusiveWrite) {
+        activeConnections.decrementAndGet();
+        try {
+            if (closed || !pooled.reset()) {
+                discard(pooled);
+            } else {
+                pooled.lastUsed = System.currentTimeMillis();
+                idle.offerFirst(pooled);
+            }
+        } finally {
+            permits.release();
+            if (exclusiveWrite) {
+                writePermit.release();
+            }
+        }
+    }
+
+    private void discard(PooledConnection pooled) {
+        totalConnections.decrementAndGet();
+        pooled.closePhysical();
+    }
+
+    private void recordWait(long nanos) {
+        acquireCount.increment();
+        totalWaitNanos.add(nanos);
+        maxWaitNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    /**
+     * Close connections that have been idle longer than the idle timeout
+     */
+    private void evictIdle() {
+        long cutoff = System.currentTimeMillis() - idleTimeoutMillis;
+        Iterator<PooledConnection> iterator = idle.descendingIterator();
+        while (iterator.hasNext() && idle.size() > minIdle) {
+            PooledConnection pooled = iterator.next();
+            if (pooled.lastUsed < cutoff && idle.remove(pooled)) {
+                discard(pooled);
+            }
+        }
+    }
+
+    /**
+     * Close the pool and every idle connection.
+     * Connections still on lease are closed when they are returned.
+     */
+    public void close() {
+        closed = true;
+        housekeeper.shutdownNow();
+
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            discard(pooled);
+        }
+
+        plugin.getLogger().info("Closed " + name + " connection pool (" + acquireCount.sum() + " leases, average wait "
+                + String.format("%.2f", getAverageWaitMillis()) + "ms, max wait "
+                + String.format("%.2f", getMaxWaitMillis()) + "ms)");
+    }
+
+    /**
+     * Get the number of connections currently on lease
+     *
+     * @return The active connection count
+     */
+    public int getActiveCount() {
+        return activeConnections.get();
+    }
+
+    /**
+     * Get the number of open connections waiting in the pool
+     *
+     * @return The idle connection count
+     */
+    public int getIdleCount() {
+        return idle.size();
+    }
+
+    /**
+     * Get the number of open physical connections
+     *
+     * @return The total connection count
+     */
+    public int getTotalCount() {
+        return totalConnections.get();
+    }
+
+    /**
+     * Get the maximum number of physical connections
+     *
+     * @return The pool size
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Get the average time callers waited for a connection
+     *
+     * @return The average wait in milliseconds
+     */
+    public double getAverageWaitMillis() {
+        long count = acquireCount.sum();
+        return count == 0 ? 0.0 : totalWaitNanos.sum() / (double) count / 1_000_000.0;
+    }
+
+    /**
+     * Get the longest time a caller waited for a connection
+     *
+     * @return The maximum wait in milliseconds
+     */
+    public double getMaxWaitMillis() {
+        return maxWaitNanos.get() / 1_000_000.0;
+    }
+
+    /**
+     * A physical connection with its prepared statement cache
+     */
+    private final class PooledConnection {
+        private final Connection physical;
+        private final Map<String, CachedStatement> statementCache;
+        private volatile long lastUsed = System.currentTimeMillis();
+
+        private PooledConnection(Connection physical) {
+            this.physical = physical;
+            this.statementCache = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, CachedStatement> eldest) {
+                    if (size() > statementCacheSize && !eldest.getValue().inUse) {
+                        eldest.getValue().closeQuietly();
+                        return true;
+                    }
+                    return false;
+                }
+            };
+        }
+
+        private boolean isUsable() {
+            try {
+                if (physical.isClosed()) {
+                    return false;
+                }
+                if (System.currentTimeMillis() - lastUsed > validationIntervalMillis) {
+                    return physical.isValid(5);
+                }
+                return true;
+            } catch (SQLException e) {
+                return false;
+            }
+        }
+
+        /**
+         * Restore the connection to its default state before it goes back in the pool
+         *
+         * @return True if the connection can be reused
+         */
+        private boolean reset() {
+            try {
+                if (physical.isClosed()) {
+                    return false;
+                }
+                if (!physical.getAutoCommit()) {
+                    physical.rollback();
+                    physical.setAutoCommit(true);
+                }
+                for (CachedStatement cached : statementCache.values()) {
+                    cached.inUse = false;
+                }
+                return true;
+            } catch (SQLException e) {
+                plugin.getLogger().log(Level.WARNING, "Discarding " + name + " connection that failed to reset", e);
+                return false;
+            }
+        }
+
+        private void closePhysical() {
+            for (CachedStatement cached : statementCache.values()) {
+                cached.closeQuietly();
+            }
+            statementCache.clear();
+            try {
+                physical.close();
+            } catch (SQLException e) {
+                // Already broken, nothing more to do
+            }
+        }
+
+        private PreparedStatement prepareCached(String sql, Connection lease) throws SQLException {
+            if (statementCacheSize == 0) {
+                return physical.prepareStatement(sql);
+            }
+
+            CachedStatement cached = statementCache.get(sql);
+            if (cached != null && cached.inUse) {
+                // Same query already open on this lease, hand out an uncached statement
+                return physical.prepareStatement(sql);
+            }
+            if (cached == null || cached.statement.isClosed()) {
+                cached = new CachedStatement(physical.prepareStatement(sql));
+                statementCache.put(sql, cached);
+            }
+            cached.inUse = true;
+            return cached.handle(lease);
+        }
+
+        private Connection lease(boolean exclusiveWrite) {
+            InvocationHandler handler = new InvocationHandler() {
+                private boolean returned;
+
+                @Override
+                public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                    switch (method.getName()) {
+                        case "close":
+                            if (!returned) {
+                                returned = true;
+                                release(PooledConnection.this, exclusiveWrite);
+                            }
+                            return null;
+                        case "isClosed":
+                            return returned || physical.isClosed();
+                        case "equals":
+                            return proxy == args[0];
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "toString":
+                            return "Pooled" + physical;
+                        default:
+                            break;
+                    }
+
+                    if (returned) {
+                        throw new SQLException("Connection has already been returned to the " + name + " pool");
+                    }
+
+                    if ("prepareStatement".equals(method.getName()) && args != null && args.length == 1) {
+                        return prepareCached((String) args[0], (Connection) proxy);
+                    }
+
+                    try {
+                        return method.invoke(physical, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                }
+            };
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class}, handler);
+        }
+    }
+
+    /**
+     * A cached prepared statement. Callers get a handle whose close() only
+     * clears the statement so it can be reused by the next lease.
+     */
+    private static final class CachedStatement {
+        private final PreparedStatement statement;
+        private volatile boolean inUse;
+
+        private CachedStatement(PreparedStatement statement) {
+            this.statement = statement;
+        }
+
+        private PreparedStatement handle(Connection lease) {
+            InvocationHandler handler = new InvocationHandler() {
+                private boolean closed;
+
+                @Override
+                public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                    switch (method.getName()) {
+                        case "close":
+                            if (!closed) {
+                                closed = true;
+                                recycle();
+                            }
+                            return null;
+                        case "isClosed":
+                            return closed || statement.isClosed();
+                        case "getConnection":
+                            return lease;
+                        case "equals":
+                            return proxy == args[0];
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        default:
+                            break;
+                    }
+
+                    if (closed) {
+                        throw new SQLException("Statement is closed");
+                    }
+
+                    try {
+                        return method.invoke(statement, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                }
+            };
+            return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                    new Class<?>[]{PreparedStatement.class}, handler);
+        }
+
+        private void recycle() {
+            try {
+                ResultSet open = statement.getResultSet();
+                if (open != null) {
+                    open.close();
+                }
+                statement.clearParameters();
+                statement.clearBatch();
+            } catch (SQLException e) {
+                closeQuietly();
+            }
+            inUse = false;
+        }
+
+        private void closeQuietly() {
+            try {
+                statement.close();
+            } catch (SQLException e) {
+                // Ignore, the statement is being thrown away
+            }
+        }
+    }
+}
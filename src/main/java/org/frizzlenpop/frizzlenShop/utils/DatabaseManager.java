@@ -1,34 +1,62 @@
 package org.frizzlenpop.frizzlenShop.utils;
 
 import org.bukkit.Location;
-import org.bukkit.Material;
+import org.bukkit.World;
 import org.bukkit.inventory.ItemStack;
 import org.frizzlenpop.frizzlenShop.FrizzlenShop;
+import org.frizzlenpop.frizzlenShop.config.ConfigManager;
+import org.frizzlenpop.frizzlenShop.data.ShopSnapshot;
+import org.frizzlenpop.frizzlenShop.data.TransactionJournal;
 import org.frizzlenpop.frizzlenShop.shops.AdminShop;
 import org.frizzlenpop.frizzlenShop.shops.PlayerShop;
 import org.frizzlenpop.frizzlenShop.shops.Shop;
 import org.frizzlenpop.frizzlenShop.shops.ShopItem;
 
+import java.io.File;
+import java.nio.ByteBuffer;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.StringJoiner;
 import java.util.UUID;
 import java.util.logging.Level;
+import java.util.regex.Pattern;
 
 /**
  * Manages database operations for the plugin
  */
 public class DatabaseManager {
 
+    private static final int SAVE_BATCH_SIZE = 1000;
+    private static final int SCHEMA_VERSION = 3;
+    private static final int MIGRATION_CHUNK_SIZE = 10000;
+    private static final String HISTORY_SCHEMA = "history";
+    private static final Set<String> JOURNAL_MODES = Set.of("DELETE", "TRUNCATE", "PERSIST", "MEMORY", "WAL", "OFF");
+    private static final Set<String> SYNCHRONOUS_MODES = Set.of("OFF", "NORMAL", "FULL", "EXTRA");
+    private static final Pattern CREATE_PREFIX = Pattern.compile(
+            "^(CREATE\\s+(?:UNIQUE\\s+)?(?:TABLE|INDEX)(?:\\s+IF\\s+NOT\\s+EXISTS)?)\\s+", Pattern.CASE_INSENSITIVE);
+    
     private final FrizzlenShop plugin;
-    private Connection connection;
+    private ConnectionPool pool;
     private String dbType;
     private String dbPath;
+    private boolean historyAttached;
     
     /**
      * Creates a new database manager
@@ -49,7 +77,7 @@ public class DatabaseManager {
      */
     private void initialize() {
         try {
-            // Connect to the database
+            // Open the connection pool
             connect();
             
             // Create tables if they don't exist
@@ -62,15 +90,16 @@ public class DatabaseManager {
     }
     
     /**
-     * Connect to the database
-     *
-     * @throws SQLException If an error occurs
+     * Open the connection pool.
+     * SQLite allows a single writer, so its pool is one write connection plus a few readers;
+     * MySQL uses a plain pool of the configured size.
      */
-    private void connect() throws SQLException {
-        if (connection != null && !connection.isClosed()) {
+    private void connect() {
+        if (pool != null) {
             return;
         }
         
+        ConfigManager config = plugin.getConfigManager();
         if (dbType.equalsIgnoreCase("mysql")) {
             // MySQL connection
             String host = plugin.getConfig().getString("database.host", "localhost");
@@ -80,21 +109,97 @@ public class DatabaseManager {
             String password = plugin.getConfig().getString("database.password", "");
             
             String url = "jdbc:mysql://" + host + ":" + port + "/" + database;
-            connection = DriverManager.getConnection(url, username, password);
+            pool = new ConnectionPool(plugin, "MySQL", () -> DriverManager.getConnection(url, username, password),
+                    config.getPoolMysqlSize(), false, config.getPoolStatementCacheSize(),
+                    config.getPoolConnectionTimeout(), config.getPoolIdleTimeout(), config.getPoolValidationInterval());
         } else {
             // SQLite connection
             String url = "jdbc:sqlite:" + plugin.getDataFolder().getAbsolutePath() + "/" + dbPath;
-            connection = DriverManager.getConnection(url);
+            String historyFile = config.getSqliteHistoryFile();
+            String historyPath = historyFile.isEmpty() ? null
+                    : new File(plugin.getDataFolder(), historyFile).getAbsolutePath();
+            historyAttached = historyPath != null;
+            List<String> pragmas = getSqlitePragmas(config);
+            pool = new ConnectionPool(plugin, "SQLite", () -> openSqliteConnection(url, historyPath, pragmas),
+                    1 + Math.max(0, config.getPoolSqliteReaders()), true, config.getPoolStatementCacheSize(),
+                    config.getPoolConnectionTimeout(), config.getPoolIdleTimeout(), config.getPoolValidationInterval());
         }
     }
     
+    /**
+     * Build the SQLite tuning pragmas from the config.
+     * Pragma values cannot be bound as parameters, so the modes are checked against the values SQLite accepts.
+     *
+     * @param config The config manager
+     * @return The pragma statements, with {@code %s} standing for the schema they apply to
+     */
+    private List<String> getSqlitePragmas(ConfigManager config) {
+        String journalMode = config.getSqliteJournalMode().toUpperCase(Locale.ROOT);
+        if (!JOURNAL_MODES.contains(journalMode)) {
+            plugin.getLogger().warning("Unknown SQLite journal mode '" + journalMode + "', using WAL");
+            journalMode = "WAL";
+        }
+        String synchronous = config.getSqliteSynchronous().toUpperCase(Locale.ROOT);
+        if (!SYNCHRONOUS_MODES.contains(synchronous)) {
+            plugin.getLogger().warning("Unknown SQLite synchronous mode '" + synchronous + "', using NORMAL");
+            synchronous = "NORMAL";
+        }
+        
+        List<String> pragmas = new ArrayList<>();
+        pragmas.add("PRAGMA %s.journal_mode = " + journalMode);
+        pragmas.add("PRAGMA %s.synchronous = " + synchronous);
+        pragmas.add("PRAGMA %s.mmap_size = " + Math.max(0L, config.getSqliteMmapSize()));
+        // A negative cache size is in KiB rather than pages
+        pragmas.add("PRAGMA %s.cache_size = " + -Math.max(0, config.getSqliteCacheSize()));
+        return pragmas;
+    }
+    
+    /**
+     * Open a tuned SQLite connection.
+     * The connection waits for locks instead of failing immediately, since readers and the writer use separate
+     * connections, and attaches the history database when one is configured.
+     *
+     * @param url The JDBC url
+     * @param historyPath The path of the history database, or null if high-churn tables stay in the main file
+     * @param pragmas The tuning pragmas
+     * @return The connection
+     * @throws SQLException If an error occurs
+     */
+    private Connection openSqliteConnection(String url, String historyPath, List<String> pragmas) throws SQLException {
+        Connection conn = DriverManager.getConnection(url);
+        try (Statement statement = conn.createStatement()) {
+            statement.execute("PRAGMA busy_timeout = " + Math.max(0L, plugin.getConfigManager().getSqliteBusyTimeout()));
+            
+            if (historyPath != null) {
+                try (PreparedStatement ps = conn.prepareStatement("ATTACH DATABASE ? AS " + HISTORY_SCHEMA)) {
+                    ps.setString(1, historyPath);
+                    ps.execute();
+                }
+            }
+            
+            for (String pragma : pragmas) {
+                statement.execute(String.format(pragma, "main"));
+                if (historyPath != null) {
+                    statement.execute(String.format(pragma, HISTORY_SCHEMA));
+                }
+            }
+        } catch (SQLException e) {
+            conn.close();
+            throw e;
+        }
+        return conn;
+    }
+    
     /**
      * Create database tables if they don't exist
      *
      * @throws SQLException If an error occurs
      */
     private void createTables() throws SQLException {
-        try (Statement statement = connection.createStatement()) {
+        try (Connection connection = getWriteConnection();
+             Statement statement = connection.createStatement()) {
+            boolean existingDatabase = tableExists(connection, "shop_items");
+            
             // Create shops table
             statement.execute(
                 "CREATE TABLE IF NOT EXISTS shops (" +
@@ -114,102 +219,428 @@ public class DatabaseManager {
                 "CREATE TABLE IF NOT EXISTS shop_items (" +
                 "id VARCHAR(36) PRIMARY KEY, " +
                 "shop_id VARCHAR(36) NOT NULL, " +
-                "item_data TEXT NOT NULL, " +
+                "item_data MEDIUMBLOB NOT NULL, " +
                 "price DOUBLE NOT NULL, " +
                 "stock INT DEFAULT -1, " +
                 "FOREIGN KEY (shop_id) REFERENCES shops(id) ON DELETE CASCADE" +
                 ")"
             );
+            if (!dbType.equalsIgnoreCase("mysql")) {
+                // Saves look up the items of a shop to delete removed ones; MySQL indexes foreign keys itself
+                statement.execute("CREATE INDEX IF NOT EXISTS idx_shop_items_shop ON shop_items (shop_id)");
+            }
             
             // Create transactions table
-            statement.execute(
-                "CREATE TABLE IF NOT EXISTS transactions (" +
-                "id VARCHAR(36) PRIMARY KEY, " +
-                "shop_id VARCHAR(36) NOT NULL, " +
-                "player_id VARCHAR(36) NOT NULL, " +
-                "item_id VARCHAR(36) NOT NULL, " +
-                "quantity INT NOT NULL, " +
-                "price DOUBLE NOT NULL, " +
-                "type VARCHAR(10) NOT NULL, " +
-                "timestamp TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
-                "FOREIGN KEY (shop_id) REFERENCES shops(id) ON DELETE CASCADE, " +
-                "FOREIGN KEY (item_id) REFERENCES shop_items(id) ON DELETE CASCADE" +
-                ")"
-            );
+            String transactionsTable = getHistoryTableName(connection, "transactions");
+            if (!tableExists(connection, getHistorySchema(), "transactions")) {
+                createTransactionsTable(statement, transactionsTable);
+                createTransactionIndexes(statement, getHistorySchema(), "transactions");
+            }
+            
+            // Create schema_version table
+            statement.execute("CREATE TABLE IF NOT EXISTS schema_version (version INT NOT NULL)");
+            
+            // New databases are created at the current version; older ones are upgraded step by step
+            int version = getSchemaVersion(connection);
+            if (version == 0) {
+                version = existingDatabase ? 1 : SCHEMA_VERSION;
+                statement.execute("INSERT INTO schema_version (version) VALUES (" + version + ")");
+            }
+            upgradeSchema(connection, version);
         }
     }
     
     /**
-     * Close the database connection
+     * Upgrade the schema from the given version to the current version.
+     * Each step commits together with its version number, so an interrupted upgrade resumes at the failed step.
+     *
+     * @param connection The write connection
+     * @param version The current schema version of the database
+     * @throws SQLException If an error occurs
      */
-    public void close() {
-        try {
-            if (connection != null && !connection.isClosed()) {
-                connection.close();
+    private void upgradeSchema(Connection connection, int version) throws SQLException {
+        if (version < 2) {
+            migrateItemDataToBinary(connection);
+        }
+        if (version < 3) {
+            migrateTransactionsToBinary(connection);
+        }
+    }
+    
+    /**
+     * Create a transactions table.
+     * UUIDs are stored as 16 bytes and timestamps as epoch milliseconds. The table has no foreign keys:
+     * it is an append-only history that outlives deleted shops and items.
+     *
+     * @param statement The statement to execute with
+     * @param table The table name
+     * @throws SQLException If an error occurs
+     */
+    private void createTransactionsTable(Statement statement, String table) throws SQLException {
+        statement.execute(
+            "CREATE TABLE " + table + " (" +
+            "id BINARY(16) PRIMARY KEY, " +
+            "shop_id BINARY(16) NOT NULL, " +
+            "player_id BINARY(16) NOT NULL, " +
+            "item_id BINARY(16) NOT NULL, " +
+            "quantity INT NOT NULL, " +
+            "price DOUBLE NOT NULL, " +
+            "type VARCHAR(10) NOT NULL, " +
+            "timestamp BIGINT NOT NULL" +
+            ")"
+        );
+    }
+    
+    /**
+     * Create the indexes used to page through the history of a shop, player or item
+     *
+     * @param statement The statement to execute with
+     * @param schema The schema prefix of the table, such as {@code history.}, or an empty string
+     * @param table The unqualified transactions table name
+     * @throws SQLException If an error occurs
+     */
+    private void createTransactionIndexes(Statement statement, String schema, String table) throws SQLException {
+        statement.execute("CREATE INDEX " + schema + "idx_transactions_shop_time ON " + table + " (shop_id, timestamp)");
+        statement.execute("CREATE INDEX " + schema + "idx_transactions_player_time ON " + table + " (player_id, timestamp)");
+        statement.execute("CREATE INDEX " + schema + "idx_transactions_item_time ON " + table + " (item_id, timestamp)");
+    }
+    
+    /**
+     * Schema version 3: rebuild the transactions table with binary UUIDs, epoch millisecond timestamps
+     * and composite indexes. Rows are copied in chunks, each committed on its own, so a large history
+     * does not need one huge transaction. An interrupted copy starts over on the next start.
+     *
+     * @param connection The write connection
+     * @throws SQLException If an error occurs
+     */
+    private void migrateTransactionsToBinary(Connection connection) throws SQLException {
+        boolean mysql = dbType.equalsIgnoreCase("mysql");
+        if (mysql && tableExists(connection, "transactions_legacy")) {
+            // The tables were swapped before the version was stored
+            setSchemaVersion(connection, 3);
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("DROP TABLE transactions_legacy");
             }
+            return;
+        }
+        
+        plugin.getLogger().info("Upgrading the transactions table...");
+        String schema = getHistorySchema();
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("DROP TABLE IF EXISTS " + schema + "transactions_upgrade");
+            createTransactionsTable(statement, schema + "transactions_upgrade");
+        }
+        
+        long copied = 0;
+        long skipped = 0;
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try (PreparedStatement select = connection.prepareStatement(
+                "SELECT id, shop_id, player_id, item_id, quantity, price, type, timestamp FROM transactions " +
+                "WHERE id > ? ORDER BY id LIMIT ?");
+             PreparedStatement insert = connection.prepareStatement(
+                "INSERT INTO " + schema + "transactions_upgrade (id, shop_id, player_id, item_id, quantity, price, type, timestamp) " +
+                "VALUES (?, ?, ?, ?, ?, ?, ?, ?)")) {
+            String lastId = "";
+            int rows;
+            do {
+                rows = 0;
+                select.setString(1, lastId);
+                select.setInt(2, MIGRATION_CHUNK_SIZE);
+                try (ResultSet rs = select.executeQuery()) {
+                    while (rs.next()) {
+                        lastId = rs.getString("id");
+                        rows++;
+                        try {
+                            insert.setBytes(1, toBytes(UUID.fromString(lastId)));
+                            insert.setBytes(2, toBytes(UUID.fromString(rs.getString("shop_id"))));
+                            insert.setBytes(3, toBytes(UUID.fromString(rs.getString("player_id"))));
+                            insert.setBytes(4, toBytes(UUID.fromString(rs.getString("item_id"))));
+                            insert.setInt(5, rs.getInt("quantity"));
+                            insert.setDouble(6, rs.getDouble("price"));
+                            insert.setString(7, rs.getString("type"));
+                            insert.setLong(8, toEpochMillis(rs.getObject("timestamp")));
+                        } catch (RuntimeException e) {
+                            skipped++;
+                            continue;
+                        }
+                        insert.addBatch();
+                    }
+                }
+                
+                if (rows > 0) {
+                    insert.executeBatch();
+                    connection.commit();
+                    copied += rows;
+                    if (copied % (MIGRATION_CHUNK_SIZE * 10L) == 0) {
+                        plugin.getLogger().info("Upgraded " + copied + " transactions...");
+                    }
+                }
+            } while (rows == MIGRATION_CHUNK_SIZE);
         } catch (SQLException e) {
-            plugin.getLogger().log(Level.SEVERE, "Failed to close database connection", e);
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+        
+        try (Statement statement = connection.createStatement()) {
+            if (mysql) {
+                // MySQL commits DDL implicitly, so the tables are swapped in one atomic rename
+                createTransactionIndexes(statement, "", "transactions_upgrade");
+                statement.execute("RENAME TABLE transactions TO transactions_legacy, transactions_upgrade TO transactions");
+                setSchemaVersion(connection, 3);
+                statement.execute("DROP TABLE transactions_legacy");
+            } else {
+                // SQLite DDL is transactional, so the swap commits together with the version
+                connection.setAutoCommit(false);
+                try {
+                    statement.execute("DROP TABLE " + schema + "transactions");
+                    statement.execute("ALTER TABLE " + schema + "transactions_upgrade RENAME TO transactions");
+                    createTransactionIndexes(statement, schema, "transactions");
+                    setSchemaVersion(connection, 3);
+                    connection.commit();
+                } catch (SQLException e) {
+                    connection.rollback();
+                    throw e;
+                } finally {
+                    connection.setAutoCommit(autoCommit);
+                }
+            }
         }
+        
+        plugin.getLogger().info("Upgraded " + (copied - skipped) + " transactions"
+                + (skipped > 0 ? ", skipped " + skipped + " unreadable rows" : "") + ".");
     }
     
     /**
-     * Save a shop to the database
+     * Schema version 2: convert shop items from the legacy {@code MATERIAL,amount} text format
+     * to the binary item format
      *
-     * @param shop The shop to save
-     * @return True if successful, false otherwise
+     * @param connection The write connection
+     * @throws SQLException If an error occurs
      */
-    public boolean saveShop(Shop shop) {
-        try {
-            connect();
-            
-            // Check if the shop already exists
-            boolean exists = false;
-            try (PreparedStatement ps = connection.prepareStatement("SELECT id FROM shops WHERE id = ?")) {
-                ps.setString(1, shop.getId().toString());
-                try (ResultSet rs = ps.executeQuery()) {
-                    exists = rs.next();
-                }
+    private void migrateItemDataToBinary(Connection connection) throws SQLException {
+        plugin.getLogger().info("Converting shop item data to the binary item format...");
+        
+        if (dbType.equalsIgnoreCase("mysql")) {
+            // MySQL commits DDL implicitly, so the column type is changed before the data transaction.
+            // SQLite stores blobs in the existing column as they are.
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("ALTER TABLE shop_items MODIFY item_data MEDIUMBLOB NOT NULL");
             }
-            
-            // Insert or update the shop
-            if (exists) {
-                try (PreparedStatement ps = connection.prepareStatement(
-                        "UPDATE shops SET name = ?, type = ?, owner = ?, location = ?, description = ?, is_open = ? WHERE id = ?")) {
-                    ps.setString(1, shop.getName());
-                    ps.setString(2, shop instanceof AdminShop ? "admin" : "player");
-                    ps.setString(3, shop instanceof PlayerShop ? ((PlayerShop) shop).getOwner().toString() : null);
-                    ps.setString(4, serializeLocation(shop.getLocation()));
-                    ps.setString(5, shop.getDescription());
-                    ps.setBoolean(6, shop.isOpen());
-                    ps.setString(7, shop.getId().toString());
-                    ps.executeUpdate();
+        }
+        
+        Map<String, String> legacyRows = new HashMap<>();
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT id, item_data FROM shop_items")) {
+            while (rs.next()) {
+                legacyRows.put(rs.getString("id"), rs.getString("item_data"));
+            }
+        }
+        
+        int converted = 0;
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try (PreparedStatement ps = connection.prepareStatement("UPDATE shop_items SET item_data = ? WHERE id = ?")) {
+            int pending = 0;
+            for (Map.Entry<String, String> row : legacyRows.entrySet()) {
+                byte[] encoded;
+                try {
+                    encoded = ItemCodec.encode(ItemCodec.decodeLegacy(row.getValue()));
+                } catch (RuntimeException e) {
+                    plugin.getLogger().warning("Could not convert shop item " + row.getKey() + ": " + row.getValue());
+                    continue;
                 }
-            } else {
-                try (PreparedStatement ps = connection.prepareStatement(
-                        "INSERT INTO shops (id, name, type, owner, location, description, is_open) VALUES (?, ?, ?, ?, ?, ?, ?)")) {
-                    ps.setString(1, shop.getId().toString());
-                    ps.setString(2, shop.getName());
-                    ps.setString(3, shop instanceof AdminShop ? "admin" : "player");
-                    ps.setString(4, shop instanceof PlayerShop ? ((PlayerShop) shop).getOwner().toString() : null);
-                    ps.setString(5, serializeLocation(shop.getLocation()));
-                    ps.setString(6, shop.getDescription());
-                    ps.setBoolean(7, shop.isOpen());
-                    ps.executeUpdate();
+                ps.setBytes(1, encoded);
+                ps.setString(2, row.getKey());
+                ps.addBatch();
+                converted++;
+                if (++pending >= SAVE_BATCH_SIZE) {
+                    ps.executeBatch();
+                    pending = 0;
                 }
             }
-            
-            // Save shop items
-            for (ShopItem item : shop.getItems()) {
-                saveShopItem(item);
+            if (pending > 0) {
+                ps.executeBatch();
             }
             
-            return true;
+            setSchemaVersion(connection, 2);
+            connection.commit();
         } catch (SQLException e) {
-            plugin.getLogger().log(Level.SEVERE, "Failed to save shop: " + shop.getName(), e);
-            return false;
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+        
+        plugin.getLogger().info("Converted " + converted + " of " + legacyRows.size() + " shop items to the binary item format.");
+    }
+    
+    /**
+     * Check if a table exists
+     *
+     * @param connection The database connection
+     * @param table The table name
+     * @return True if the table exists
+     * @throws SQLException If an error occurs
+     */
+    private boolean tableExists(Connection connection, String table) throws SQLException {
+        return tableExists(connection, "", table);
+    }
+    
+    /**
+     * Check if a table exists in a schema
+     *
+     * @param connection The database connection
+     * @param schema The schema prefix, such as {@code history.}, or an empty string for the main database
+     * @param table The table name
+     * @return True if the table exists
+     * @throws SQLException If an error occurs
+     */
+    private boolean tableExists(Connection connection, String schema, String table) throws SQLException {
+        if (dbType.equalsIgnoreCase("mysql")) {
+            try (ResultSet rs = connection.getMetaData().getTables(null, null, table, null)) {
+                return rs.next();
+            }
+        }
+        
+        try (PreparedStatement ps = connection.prepareStatement(
+                "SELECT 1 FROM " + schema + "sqlite_master WHERE type = 'table' AND name = ?")) {
+            ps.setString(1, table);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+    
+    /**
+     * Get the schema prefix of high-churn tables
+     *
+     * @return {@code history.} when a separate SQLite history database is attached, otherwise an empty string
+     */
+    public String getHistorySchema() {
+        return historyAttached ? HISTORY_SCHEMA + "." : "";
+    }
+    
+    /**
+     * Get the name to create a high-churn table under, such as the transaction history or market data.
+     * When a history database is attached, the table lives there and a copy left in the main database by an
+     * earlier setup is moved over first. Queries can keep using the plain table name, since SQLite looks up
+     * tables that are not in the main database in attached databases.
+     *
+     * @param connection The write connection
+     * @param table The table name
+     * @return The table name, qualified with its schema if needed
+     * @throws SQLException If an error occurs
+     */
+    public String getHistoryTableName(Connection connection, String table) throws SQLException {
+        if (!historyAttached) {
+            return table;
+        }
+        
+        if (tableExists(connection, "", table) && !tableExists(connection, getHistorySchema(), table)) {
+            moveTableToHistory(connection, table);
+        }
+        return getHistorySchema() + table;
+    }
+    
+    /**
+     * Move a table and its indexes from the main database to the history database
+     *
+     * @param connection The write connection
+     * @param table The table name
+     * @throws SQLException If an error occurs
+     */
+    private void moveTableToHistory(Connection connection, String table) throws SQLException {
+        plugin.getLogger().info("Moving table " + table + " to the history database...");
+        
+        String createTable = null;
+        List<String> createIndexes = new ArrayList<>();
+        try (PreparedStatement ps = connection.prepareStatement(
+                "SELECT type, sql FROM main.sqlite_master WHERE tbl_name = ? AND sql IS NOT NULL")) {
+            ps.setString(1, table);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    String sql = CREATE_PREFIX.matcher(rs.getString("sql").trim()).replaceFirst("$1 " + getHistorySchema());
+                    if (rs.getString("type").equals("table")) {
+                        createTable = sql;
+                    } else {
+                        createIndexes.add(sql);
+                    }
+                }
+            }
+        }
+        if (createTable == null) {
+            return;
+        }
+        
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(createTable);
+            statement.execute("INSERT INTO " + getHistorySchema() + table + " SELECT * FROM main." + table);
+            for (String createIndex : createIndexes) {
+                statement.execute(createIndex);
+            }
+            statement.execute("DROP TABLE main." + table);
+            connection.commit();
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+    
+    /**
+     * Get the schema version stored in the database
+     *
+     * @param connection The database connection
+     * @return The schema version, or 0 if none is stored yet
+     * @throws SQLException If an error occurs
+     */
+    private int getSchemaVersion(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT MAX(version) FROM schema_version")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+    
+    /**
+     * Store the schema version
+     *
+     * @param connection The database connection
+     * @param version The schema version
+     * @throws SQLException If an error occurs
+     */
+    private void setSchemaVersion(Connection connection, int version) throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement("UPDATE schema_version SET version = ?")) {
+            ps.setInt(1, version);
+            ps.executeUpdate();
+        }
+    }
+    
+    /**
+     * Close the database connection pool
+     */
+    public void close() {
+        if (pool != null) {
+            pool.close();
+            pool = null;
         }
     }
     
+    /**
+     * Save a shop and its items to the database
+     *
+     * @param shop The shop to save
+     * @return True if successful, false otherwise
+     */
+    public boolean saveShop(Shop shop) {
+        return saveShops(Collections.singletonList(shop));
+    }
+    
     /**
      * Save a shop item to the database
      *
@@ -217,123 +648,491 @@ public class DatabaseManager {
      * @return True if successful, false otherwise
      */
     public boolean saveShopItem(ShopItem item) {
-        try {
-            connect();
-            
-            // Check if the item already exists
-            boolean exists = false;
-            try (PreparedStatement ps = connection.prepareStatement("SELECT id FROM shop_items WHERE id = ?")) {
-                ps.setString(1, item.getId().toString());
-                try (ResultSet rs = ps.executeQuery()) {
-                    exists = rs.next();
+        try (Connection connection = getWriteConnection();
+             PreparedStatement ps = connection.prepareStatement(getShopItemUpsert())) {
+            bindShopItem(ps, item.getId(), item.getShopId(), item.getEncodedItem(), item.getPrice(), item.getStock());
+            ps.executeUpdate();
+            return true;
+        } catch (SQLException e) {
+            plugin.getLogger().log(Level.SEVERE, "Failed to save shop item", e);
+            return false;
+        }
+    }
+    
+    /**
+     * Save shops and all of their items in a single database transaction.
+     * Rows are written with batched upserts, so no existence check is needed per row.
+     *
+     * @param shops The shops to save
+     * @return True if successful, false otherwise
+     */
+    public boolean saveShops(Collection<? extends Shop> shops) {
+        return saveShops(shops, false);
+    }
+    
+    /**
+     * Save shops and their items in a single database transaction
+     *
+     * @param shops The shops to save
+     * @param changedOnly True to write only shops and items that are marked dirty
+     * @return True if successful, false otherwise
+     */
+    public boolean saveShops(Collection<? extends Shop> shops, boolean changedOnly) {
+        List<ShopSnapshot> snapshots = new ArrayList<>(shops.size());
+        for (Shop shop : shops) {
+            snapshots.add(ShopSnapshot.capture(shop, changedOnly));
+        }
+        return saveSnapshots(snapshots, changedOnly);
+    }
+    
+    /**
+     * Save shop snapshots in a single database transaction.
+     * Snapshots are immutable, so this can run off the main thread. Rows of items that are no longer
+     * in a fully written shop are deleted in the same transaction.
+     *
+     * @param snapshots The shop snapshots to save
+     * @param changedOnly True to write only shops and items that were dirty when captured;
+     *                    complete snapshots are always written in full
+     * @return True if successful, false otherwise
+     */
+    public boolean saveSnapshots(Collection<ShopSnapshot> snapshots, boolean changedOnly) {
+        if (snapshots.isEmpty()) {
+            return true;
+        }
+        
+        int shopCount = 0;
+        int itemCount = 0;
+        try (Connection connection = getWriteConnection()) {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try (PreparedStatement shopPs = connection.prepareStatement(getShopUpsert());
+                 PreparedStatement itemPs = connection.prepareStatement(getShopItemUpsert())) {
+                
+                // Shops go first so item rows always have a parent
+                int pending = 0;
+                for (ShopSnapshot shop : snapshots) {
+                    if (changedOnly && !shop.isFullWrite()) {
+                        continue;
+                    }
+                    try {
+                        bindShop(shopPs, shop);
+                    } catch (RuntimeException e) {
+                        plugin.getLogger().log(Level.WARNING, "Skipping shop that could not be serialized: " + shop.getName(), e);
+                        continue;
+                    }
+                    shopPs.addBatch();
+                    shopCount++;
+                    if (++pending >= SAVE_BATCH_SIZE) {
+                        shopPs.executeBatch();
+                        pending = 0;
+                    }
+                }
+                if (pending > 0) {
+                    shopPs.executeBatch();
+                }
+                
+                pending = 0;
+                for (ShopSnapshot shop : snapshots) {
+                    for (ShopSnapshot.ItemSnapshot item : shop.getItems()) {
+                        if (changedOnly && !shop.isComplete() && !item.isDirty()) {
+                            continue;
+                        }
+                        try {
+                            bindShopItem(itemPs, item.getId(), shop.getId(), item.getEncodedItem(), item.getBuyPrice(), item.getStock());
+                        } catch (RuntimeException e) {
+                            plugin.getLogger().log(Level.WARNING, "Skipping shop item that could not be serialized: " + item.getId(), e);
+                            continue;
+                        }
+                        itemPs.addBatch();
+                        itemCount++;
+                        if (++pending >= SAVE_BATCH_SIZE) {
+                            itemPs.executeBatch();
+                            pending = 0;
+                        }
+                    }
                 }
+                if (pending > 0) {
+                    itemPs.executeBatch();
+                }
+                
+                deleteRemovedItems(connection, snapshots, changedOnly);
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
             }
             
-            // Insert or update the item
-            if (exists) {
-                try (PreparedStatement ps = connection.prepareStatement(
-                        "UPDATE shop_items SET item_data = ?, price = ?, stock = ? WHERE id = ?")) {
-                    ps.setString(1, serializeItemStack(item.getItem()));
-                    ps.setDouble(2, item.getPrice());
-                    ps.setInt(3, item.getStock());
-                    ps.setString(4, item.getId().toString());
-                    ps.executeUpdate();
+            return true;
+        } catch (SQLException e) {
+            plugin.getLogger().log(Level.SEVERE, "Failed to save " + shopCount + " shops and " + itemCount + " shop items", e);
+            return false;
+        }
+    }
+    
+    /**
+     * Delete the rows of items that were removed from fully written shops
+     *
+     * @param connection The write connection, inside the save transaction
+     * @param snapshots The shop snapshots being saved
+     * @param changedOnly True if only fully written snapshots carry all of their items
+     * @throws SQLException If an error occurs
+     */
+    private void deleteRemovedItems(Connection connection, Collection<ShopSnapshot> snapshots, boolean changedOnly)
+            throws SQLException {
+        try (PreparedStatement select = connection.prepareStatement("SELECT id FROM shop_items WHERE shop_id = ?");
+             PreparedStatement delete = connection.prepareStatement("DELETE FROM shop_items WHERE id = ?")) {
+            int pending = 0;
+            for (ShopSnapshot shop : snapshots) {
+                if (changedOnly && !shop.isFullWrite()) {
+                    continue;
                 }
-            } else {
-                try (PreparedStatement ps = connection.prepareStatement(
-                        "INSERT INTO shop_items (id, shop_id, item_data, price, stock) VALUES (?, ?, ?, ?, ?)")) {
-                    ps.setString(1, item.getId().toString());
-                    ps.setString(2, item.getShopId().toString());
-                    ps.setString(3, serializeItemStack(item.getItem()));
-                    ps.setDouble(4, item.getPrice());
-                    ps.setInt(5, item.getStock());
-                    ps.executeUpdate();
+                Set<String> itemIds = new HashSet<>();
+                for (ShopSnapshot.ItemSnapshot item : shop.getItems()) {
+                    itemIds.add(item.getId().toString());
+                }
+                
+                select.setString(1, shop.getId().toString());
+                try (ResultSet rs = select.executeQuery()) {
+                    while (rs.next()) {
+                        String itemId = rs.getString("id");
+                        if (itemIds.contains(itemId)) {
+                            continue;
+                        }
+                        delete.setString(1, itemId);
+                        delete.addBatch();
+                        if (++pending >= SAVE_BATCH_SIZE) {
+                            delete.executeBatch();
+                            pending = 0;
+                        }
+                    }
                 }
             }
-            
+            if (pending > 0) {
+                delete.executeBatch();
+            }
+        }
+    }
+    
+    /**
+     * Delete shops and their items from the database in a single transaction
+     *
+     * @param shopIds The IDs of the shops to delete
+     * @return True if successful, false otherwise
+     */
+    public boolean deleteShops(Collection<String> shopIds) {
+        if (shopIds.isEmpty()) {
+            return true;
+        }
+        
+        try (Connection connection = getWriteConnection()) {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            // Items go first; SQLite only cascades the shop delete when foreign keys are enabled
+            try (PreparedStatement itemPs = connection.prepareStatement("DELETE FROM shop_items WHERE shop_id = ?");
+                 PreparedStatement shopPs = connection.prepareStatement("DELETE FROM shops WHERE id = ?")) {
+                for (String shopId : shopIds) {
+                    itemPs.setString(1, shopId);
+                    itemPs.addBatch();
+                    shopPs.setString(1, shopId);
+                    shopPs.addBatch();
+                }
+                itemPs.executeBatch();
+                shopPs.executeBatch();
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
             return true;
         } catch (SQLException e) {
-            plugin.getLogger().log(Level.SEVERE, "Failed to save shop item", e);
+            plugin.getLogger().log(Level.SEVERE, "Failed to delete " + shopIds.size() + " shops", e);
+            return false;
+        }
+    }
+    
+    /**
+     * Delete every shop in the database that is not in the given set,
+     * such as shops deleted before deletions were written to the database
+     *
+     * @param liveShopIds The IDs of every registered shop
+     * @return True if successful, false otherwise
+     */
+    public boolean pruneShops(Set<String> liveShopIds) {
+        List<String> staleShopIds = new ArrayList<>();
+        try (Connection connection = getConnection();
+             PreparedStatement ps = connection.prepareStatement("SELECT id FROM shops");
+             ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                String shopId = rs.getString("id");
+                if (!liveShopIds.contains(shopId)) {
+                    staleShopIds.add(shopId);
+                }
+            }
+        } catch (SQLException e) {
+            plugin.getLogger().log(Level.SEVERE, "Failed to read shop IDs for pruning", e);
             return false;
         }
+        
+        if (!deleteShops(staleShopIds)) {
+            return false;
+        }
+        if (!staleShopIds.isEmpty()) {
+            plugin.getLogger().info("Removed " + staleShopIds.size() + " deleted shops from the database");
+        }
+        return true;
+    }
+    
+    /**
+     * Bind a shop to the shop upsert statement
+     *
+     * @param ps The statement
+     * @param shop The shop snapshot
+     * @throws SQLException If an error occurs
+     */
+    private void bindShop(PreparedStatement ps, ShopSnapshot shop) throws SQLException {
+        ps.setString(1, shop.getId().toString());
+        ps.setString(2, shop.getName());
+        ps.setString(3, shop.isAdminShop() ? "admin" : "player");
+        ps.setString(4, !shop.isAdminShop() ? shop.getOwner().toString() : null);
+        ps.setString(5, serializeLocation(shop.getLocation()));
+        ps.setString(6, shop.getDescription());
+        ps.setBoolean(7, shop.isOpen());
+    }
+    
+    /**
+     * Bind a shop item to the shop item upsert statement
+     *
+     * @param ps The statement
+     * @param itemId The item ID
+     * @param shopId The ID of the shop that owns the item
+     * @param itemData The encoded item
+     * @param price The item price
+     * @param stock The item stock
+     * @throws SQLException If an error occurs
+     */
+    private void bindShopItem(PreparedStatement ps, UUID itemId, UUID shopId, byte[] itemData, double price, int stock)
+            throws SQLException {
+        ps.setString(1, itemId.toString());
+        ps.setString(2, shopId.toString());
+        ps.setBytes(3, itemData);
+        ps.setDouble(4, price);
+        ps.setInt(5, stock);
+    }
+    
+    /**
+     * Get the upsert statement for the shops table
+     *
+     * @return The SQL statement
+     */
+    private String getShopUpsert() {
+        return buildUpsert("shops", new String[]{"id", "name", "type", "owner", "location", "description", "is_open"});
+    }
+    
+    /**
+     * Get the upsert statement for the shop_items table.
+     * The owning shop of an existing item is never changed.
+     *
+     * @return The SQL statement
+     */
+    private String getShopItemUpsert() {
+        return buildUpsert("shop_items", new String[]{"id", "shop_id", "item_data", "price", "stock"}, "shop_id");
+    }
+    
+    /**
+     * Build an insert-or-update statement keyed on the first column, using
+     * ON DUPLICATE KEY UPDATE for MySQL and ON CONFLICT for SQLite
+     *
+     * @param table The table name
+     * @param columns The columns to write, starting with the primary key
+     * @param keepColumns Columns that are only written on insert
+     * @return The SQL statement
+     */
+    public String buildUpsert(String table, String[] columns, String... keepColumns) {
+        return buildUpsert(table, 1, columns, keepColumns);
+    }
+    
+    /**
+     * Build an insert-or-update statement for a table with a composite primary key
+     *
+     * @param table The table name
+     * @param keyColumns The number of leading columns that form the primary key
+     * @param columns The columns to write, starting with the primary key columns
+     * @param keepColumns Columns that are only written on insert
+     * @return The SQL statement
+     */
+    public String buildUpsert(String table, int keyColumns, String[] columns, String... keepColumns) {
+        boolean mysql = dbType.equalsIgnoreCase("mysql");
+        List<String> keep = Arrays.asList(keepColumns);
+        
+        StringBuilder sql = new StringBuilder("INSERT INTO ").append(table).append(" (")
+                .append(String.join(", ", columns)).append(") VALUES (")
+                .append(String.join(", ", Collections.nCopies(columns.length, "?"))).append(")");
+        sql.append(mysql ? " ON DUPLICATE KEY UPDATE "
+                : " ON CONFLICT(" + String.join(", ", Arrays.copyOf(columns, keyColumns)) + ") DO UPDATE SET ");
+        
+        StringJoiner updates = new StringJoiner(", ");
+        for (int i = keyColumns; i < columns.length; i++) {
+            if (keep.contains(columns[i])) {
+                continue;
+            }
+            updates.add(columns[i] + " = " + (mysql ? "VALUES(" + columns[i] + ")" : "excluded." + columns[i]));
+        }
+        return sql.append(updates).toString();
     }
     
     /**
-     * Load all shops from the database
+     * Load all shops from the database.
+     * Shops and items are streamed with one query each and items are grouped to their shop in memory,
+     * so the number of queries does not grow with the number of shops.
+     * The shops file is the primary store; this is used to recover shops when that file is missing.
      *
      * @return A list of shops
      */
     public List<Shop> loadShops() {
-        List<Shop> shops = new ArrayList<>();
+        ConfigManager config = plugin.getConfigManager();
+        int fetchSize = config.getLoadFetchSize();
+        List<ShopRow> shopRows;
+        Map<String, List<ShopItemRow>> itemRows;
         
-        try {
-            connect();
+        try (Connection connection = getConnection()) {
+            shopRows = loadShopRows(connection, fetchSize);
+            itemRows = loadShopItemRows(connection, fetchSize);
+        } catch (SQLException e) {
+            plugin.getLogger().log(Level.SEVERE, "Failed to load shops", e);
+            return new ArrayList<>();
+        }
+        
+        // Resolve each world once rather than per shop
+        Map<String, World> worlds = new HashMap<>();
+        for (ShopRow row : shopRows) {
+            String worldName = row.location.substring(0, Math.max(row.location.indexOf(','), 0));
+            worlds.computeIfAbsent(worldName, plugin.getServer()::getWorld);
+        }
+        
+        List<Shop> shops = new ArrayList<>(shopRows.size());
+        for (ShopRow row : shopRows) {
+            Shop shop = buildShop(row, itemRows.getOrDefault(row.id, Collections.emptyList()), worlds);
+            if (shop != null) {
+                shops.add(shop);
+            }
+        }
+        return shops;
+    }
+    
+    /**
+     * Read every shop row
+     *
+     * @param connection The database connection
+     * @param fetchSize The number of rows fetched per round trip
+     * @return The shop rows
+     * @throws SQLException If an error occurs
+     */
+    private List<ShopRow> loadShopRows(Connection connection, int fetchSize) throws SQLException {
+        List<ShopRow> rows = new ArrayList<>();
+        try (PreparedStatement ps = connection.prepareStatement(
+                "SELECT id, name, type, owner, location, description, is_open FROM shops ORDER BY id")) {
+            ps.setFetchSize(fetchSize);
             
-            try (Statement statement = connection.createStatement();
-                 ResultSet rs = statement.executeQuery("SELECT * FROM shops")) {
-                
+            try (ResultSet rs = ps.executeQuery()) {
                 while (rs.next()) {
-                    UUID id = UUID.fromString(rs.getString("id"));
-                    String name = rs.getString("name");
-                    String type = rs.getString("type");
-                    String ownerStr = rs.getString("owner");
-                    Location location = deserializeLocation(rs.getString("location"));
-                    String description = rs.getString("description");
-                    boolean isOpen = rs.getBoolean("is_open");
-                    
-                    Shop shop;
-                    if (type.equals("admin")) {
-                        shop = new AdminShop(id, name, location);
-                    } else {
-                        UUID owner = ownerStr != null ? UUID.fromString(ownerStr) : null;
-                        shop = new PlayerShop(id, name, owner, location);
-                    }
-                    
-                    shop.setDescription(description);
-                    shop.setOpen(isOpen);
-                    
-                    // Load shop items
-                    loadShopItems(shop);
-                    
-                    shops.add(shop);
+                    rows.add(new ShopRow(
+                        rs.getString("id"),
+                        rs.getString("name"),
+                        rs.getString("type"),
+                        rs.getString("owner"),
+                        rs.getString("location"),
+                        rs.getString("description"),
+                        rs.getBoolean("is_open")
+                    ));
                 }
             }
+        }
+        return rows;
+    }
+    
+    /**
+     * Read every shop item row, grouped by shop ID.
+     * The rows arrive ordered by shop, so each group is filled without a lookup per row.
+     *
+     * @param connection The database connection
+     * @param fetchSize The number of rows fetched per round trip
+     * @return The item rows keyed by shop ID
+     * @throws SQLException If an error occurs
+     */
+    private Map<String, List<ShopItemRow>> loadShopItemRows(Connection connection, int fetchSize) throws SQLException {
+        Map<String, List<ShopItemRow>> rows = new HashMap<>();
+        try (PreparedStatement ps = connection.prepareStatement(
+                "SELECT id, shop_id, item_data, price, stock FROM shop_items ORDER BY shop_id")) {
+            ps.setFetchSize(fetchSize);
             
-            return shops;
-        } catch (SQLException e) {
-            plugin.getLogger().log(Level.SEVERE, "Failed to load shops", e);
-            return shops;
+            try (ResultSet rs = ps.executeQuery()) {
+                String currentShopId = null;
+                List<ShopItemRow> current = null;
+                while (rs.next()) {
+                    String shopId = rs.getString("shop_id");
+                    if (!shopId.equals(currentShopId)) {
+                        currentShopId = shopId;
+                        current = rows.computeIfAbsent(shopId, key -> new ArrayList<>());
+                    }
+                    current.add(new ShopItemRow(
+                        rs.getString("id"),
+                        rs.getBytes("item_data"),
+                        rs.getDouble("price"),
+                        rs.getInt("stock")
+                    ));
+                }
+            }
         }
+        return rows;
     }
     
     /**
-     * Load items for a shop from the database
+     * Build a shop and its items from their rows
      *
-     * @param shop The shop to load items for
+     * @param row The shop row
+     * @param itemRows The rows of the shop's items
+     * @param worlds The worlds by name
+     * @return The shop, or null if the row could not be read
      */
-    private void loadShopItems(Shop shop) {
+    private Shop buildShop(ShopRow row, List<ShopItemRow> itemRows, Map<String, World> worlds) {
         try {
-            connect();
+            UUID id = UUID.fromString(row.id);
+            Location location = deserializeLocation(row.location, worlds);
             
-            try (PreparedStatement ps = connection.prepareStatement("SELECT * FROM shop_items WHERE shop_id = ?")) {
-                ps.setString(1, shop.getId().toString());
-                
-                try (ResultSet rs = ps.executeQuery()) {
-                    while (rs.next()) {
-                        UUID id = UUID.fromString(rs.getString("id"));
-                        ItemStack item = deserializeItemStack(rs.getString("item_data"));
-                        double price = rs.getDouble("price");
-                        int stock = rs.getInt("stock");
-                        
-                        ShopItem shopItem = new ShopItem(id, shop.getId(), item, price);
-                        shopItem.setStock(stock);
-                        
-                        shop.addItem(shopItem);
-                    }
+            Shop shop;
+            if (row.type.equals("admin")) {
+                shop = new AdminShop(id, row.name, location);
+            } else {
+                UUID owner = row.owner != null ? UUID.fromString(row.owner) : null;
+                shop = new PlayerShop(id, row.name, owner, location);
+            }
+            
+            shop.setDescription(row.description);
+            shop.setOpen(row.open);
+            
+            for (ShopItemRow itemRow : itemRows) {
+                ItemStack item;
+                try {
+                    item = ItemCodec.decode(itemRow.itemData);
+                } catch (RuntimeException e) {
+                    plugin.getLogger().log(Level.WARNING, "Failed to load shop item: " + itemRow.id, e);
+                    continue;
                 }
+                ShopItem shopItem = new ShopItem(UUID.fromString(itemRow.id), id, item, itemRow.price);
+                shopItem.setStock(itemRow.stock);
+                shop.addItem(shopItem);
             }
-        } catch (SQLException e) {
-            plugin.getLogger().log(Level.SEVERE, "Failed to load shop items for shop: " + shop.getName(), e);
+            
+            // Freshly loaded state matches what is stored
+            shop.markClean();
+            return shop;
+        } catch (RuntimeException e) {
+            plugin.getLogger().log(Level.SEVERE, "Failed to load shop: " + row.id, e);
+            return null;
         }
     }
     
@@ -349,18 +1148,17 @@ public class DatabaseManager {
      * @return True if successful, false otherwise
      */
     public boolean recordTransaction(UUID shopId, UUID playerId, UUID itemId, int quantity, double price, String type) {
-        try {
-            connect();
-            
+        try (Connection connection = getWriteConnection()) {
             try (PreparedStatement ps = connection.prepareStatement(
-                    "INSERT INTO transactions (id, shop_id, player_id, item_id, quantity, price, type) VALUES (?, ?, ?, ?, ?, ?, ?)")) {
-                ps.setString(1, UUID.randomUUID().toString());
-                ps.setString(2, shopId.toString());
-                ps.setString(3, playerId.toString());
-                ps.setString(4, itemId.toString());
+                    "INSERT INTO transactions (id, shop_id, player_id, item_id, quantity, price, type, timestamp) VALUES (?, ?, ?, ?, ?, ?, ?, ?)")) {
+                ps.setBytes(1, toBytes(UUID.randomUUID()));
+                ps.setBytes(2, toBytes(shopId));
+                ps.setBytes(3, toBytes(playerId));
+                ps.setBytes(4, toBytes(itemId));
                 ps.setInt(5, quantity);
                 ps.setDouble(6, price);
                 ps.setString(7, type);
+                ps.setLong(8, System.currentTimeMillis());
                 ps.executeUpdate();
             }
             
@@ -372,7 +1170,50 @@ public class DatabaseManager {
     }
     
     /**
-     * Get transactions for a shop
+     * Record a batch of journaled transactions in a single database transaction
+     *
+     * @param entries The transactions to record
+     * @return True if successful, false otherwise
+     */
+    public boolean recordTransactions(List<TransactionJournal.Entry> entries) {
+        if (entries.isEmpty()) {
+            return true;
+        }
+        
+        try (Connection connection = getWriteConnection()) {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try (PreparedStatement ps = connection.prepareStatement(
+                    "INSERT INTO transactions (id, shop_id, player_id, item_id, quantity, price, type, timestamp) VALUES (?, ?, ?, ?, ?, ?, ?, ?)")) {
+                for (TransactionJournal.Entry entry : entries) {
+                    ps.setBytes(1, toBytes(UUID.randomUUID()));
+                    ps.setBytes(2, toBytes(entry.getShopId()));
+                    ps.setBytes(3, toBytes(entry.getPlayerId()));
+                    ps.setBytes(4, toBytes(entry.getShopItem().getId()));
+                    ps.setInt(5, entry.getAmount());
+                    ps.setDouble(6, entry.getPrice());
+                    ps.setString(7, entry.isBuy() ? "buy" : "sell");
+                    ps.setLong(8, entry.getTimestamp());
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+            
+            return true;
+        } catch (SQLException e) {
+            plugin.getLogger().log(Level.SEVERE, "Failed to record " + entries.size() + " transactions", e);
+            return false;
+        }
+    }
+    
+    /**
+     * Get transactions for a shop, newest first
      *
      * @param shopId The shop ID
      * @param limit The maximum number of transactions to return
@@ -380,40 +1221,128 @@ public class DatabaseManager {
      * @return A list of transactions
      */
     public List<Transaction> getTransactions(UUID shopId, int limit, int offset) {
+        return queryTransactions("shop_id", shopId, limit, offset);
+    }
+    
+    /**
+     * Get transactions made by a player, newest first
+     *
+     * @param playerId The player ID
+     * @param limit The maximum number of transactions to return
+     * @param offset The offset for pagination
+     * @return A list of transactions
+     */
+    public List<Transaction> getPlayerTransactions(UUID playerId, int limit, int offset) {
+        return queryTransactions("player_id", playerId, limit, offset);
+    }
+    
+    /**
+     * Get transactions of a shop item, newest first
+     *
+     * @param itemId The shop item ID
+     * @param limit The maximum number of transactions to return
+     * @param offset The offset for pagination
+     * @return A list of transactions
+     */
+    public List<Transaction> getItemTransactions(UUID itemId, int limit, int offset) {
+        return queryTransactions("item_id", itemId, limit, offset);
+    }
+    
+    /**
+     * Page through transactions matching a UUID column.
+     * Each column has a composite index with the timestamp, so the query reads only the requested page.
+     *
+     * @param column The shop_id, player_id or item_id column
+     * @param id The UUID to match
+     * @param limit The maximum number of transactions to return
+     * @param offset The offset for pagination
+     * @return A list of transactions
+     */
+    private List<Transaction> queryTransactions(String column, UUID id, int limit, int offset) {
         List<Transaction> transactions = new ArrayList<>();
         
-        try {
-            connect();
-            
+        try (Connection connection = getConnection()) {
             try (PreparedStatement ps = connection.prepareStatement(
-                    "SELECT * FROM transactions WHERE shop_id = ? ORDER BY timestamp DESC LIMIT ? OFFSET ?")) {
-                ps.setString(1, shopId.toString());
+                    "SELECT id, shop_id, player_id, item_id, quantity, price, type, timestamp FROM transactions " +
+                    "WHERE " + column + " = ? ORDER BY timestamp DESC LIMIT ? OFFSET ?")) {
+                ps.setBytes(1, toBytes(id));
                 ps.setInt(2, limit);
                 ps.setInt(3, offset);
                 
                 try (ResultSet rs = ps.executeQuery()) {
                     while (rs.next()) {
-                        UUID id = UUID.fromString(rs.getString("id"));
-                        UUID playerId = UUID.fromString(rs.getString("player_id"));
-                        UUID itemId = UUID.fromString(rs.getString("item_id"));
-                        int quantity = rs.getInt("quantity");
-                        double price = rs.getDouble("price");
-                        String type = rs.getString("type");
-                        String timestamp = rs.getString("timestamp");
-                        
-                        Transaction transaction = new Transaction(id, shopId, playerId, itemId, quantity, price, type, timestamp);
-                        transactions.add(transaction);
+                        transactions.add(new Transaction(
+                            toUuid(rs.getBytes("id")),
+                            toUuid(rs.getBytes("shop_id")),
+                            toUuid(rs.getBytes("player_id")),
+                            toUuid(rs.getBytes("item_id")),
+                            rs.getInt("quantity"),
+                            rs.getDouble("price"),
+                            rs.getString("type"),
+                            rs.getLong("timestamp")
+                        ));
                     }
                 }
             }
             
             return transactions;
         } catch (SQLException e) {
-            plugin.getLogger().log(Level.SEVERE, "Failed to get transactions for shop: " + shopId, e);
+            plugin.getLogger().log(Level.SEVERE, "Failed to get transactions for " + column + ": " + id, e);
             return transactions;
         }
     }
     
+    /**
+     * Convert a UUID to its 16-byte storage form
+     *
+     * @param uuid The UUID
+     * @return The bytes
+     */
+    private static byte[] toBytes(UUID uuid) {
+        return ByteBuffer.allocate(16)
+                .putLong(uuid.getMostSignificantBits())
+                .putLong(uuid.getLeastSignificantBits())
+                .array();
+    }
+    
+    /**
+     * Convert a 16-byte storage form back to a UUID
+     *
+     * @param bytes The bytes
+     * @return The UUID
+     */
+    private static UUID toUuid(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        return new UUID(buffer.getLong(), buffer.getLong());
+    }
+    
+    /**
+     * Convert a legacy timestamp column value to epoch milliseconds.
+     * SQLite held either epoch milliseconds or {@code CURRENT_TIMESTAMP} text in UTC; MySQL returns date objects.
+     *
+     * @param value The column value
+     * @return The epoch milliseconds
+     */
+    private static long toEpochMillis(Object value) {
+        if (value instanceof Number) {
+            return ((Number) value).longValue();
+        }
+        if (value instanceof java.util.Date) {
+            return ((java.util.Date) value).getTime();
+        }
+        if (value instanceof LocalDateTime) {
+            return ((LocalDateTime) value).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        }
+        if (value instanceof String) {
+            String text = ((String) value).trim();
+            if (!text.isEmpty() && text.chars().allMatch(Character::isDigit)) {
+                return Long.parseLong(text);
+            }
+            return LocalDateTime.parse(text.replace(' ', 'T')).toInstant(ZoneOffset.UTC).toEpochMilli();
+        }
+        return 0L;
+    }
+    
     /**
      * Serialize a location to a string
      *
@@ -433,12 +1362,13 @@ public class DatabaseManager {
      * Deserialize a location from a string
      *
      * @param serialized The serialized location
+     * @param worlds The worlds by name
      * @return The location
      */
-    private Location deserializeLocation(String serialized) {
+    private Location deserializeLocation(String serialized, Map<String, World> worlds) {
         String[] parts = serialized.split(",");
         return new Location(
-            plugin.getServer().getWorld(parts[0]),
+            worlds.get(parts[0]),
             Double.parseDouble(parts[1]),
             Double.parseDouble(parts[2]),
             Double.parseDouble(parts[3]),
@@ -447,32 +1377,6 @@ public class DatabaseManager {
         );
     }
     
-    /**
-     * Serialize an ItemStack to a string
-     *
-     * @param item The item
-     * @return The serialized item
-     */
-    private String serializeItemStack(ItemStack item) {
-        // This is a simplified implementation
-        // In a real plugin, you'd use Bukkit's serialization or a library like XStream
-        return item.getType().name() + "," + item.getAmount();
-    }
-    
-    /**
-     * Deserialize an ItemStack from a string
-     *
-     * @param serialized The serialized item
-     * @return The item
-     */
-    private ItemStack deserializeItemStack(String serialized) {
-        // This is a simplified implementation
-        String[] parts = serialized.split(",");
-        Material material = Material.valueOf(parts[0]);
-        int amount = Integer.parseInt(parts[1]);
-        return new ItemStack(material, amount);
-    }
-    
     /**
      * Represents a transaction
      */
@@ -484,7 +1388,7 @@ public class DatabaseManager {
         private final int quantity;
         private final double price;
         private final String type;
-        private final String timestamp;
+        private final long timestamp;
         
         /**
          * Creates a new transaction
@@ -496,9 +1400,9 @@ public class DatabaseManager {
          * @param quantity The quantity
          * @param price The price
          * @param type The transaction type
-         * @param timestamp The timestamp
+         * @param timestamp The time of the transaction in epoch milliseconds
          */
-        public Transaction(UUID id, UUID shopId, UUID playerId, UUID itemId, int quantity, double price, String type, String timestamp) {
+        public Transaction(UUID id, UUID shopId, UUID playerId, UUID itemId, int quantity, double price, String type, long timestamp) {
             this.id = id;
             this.shopId = shopId;
             this.playerId = playerId;
@@ -575,22 +1479,49 @@ public class DatabaseManager {
         /**
          * Get the timestamp
          *
-         * @return The timestamp
+         * @return The time of the transaction in epoch milliseconds
          */
-        public String getTimestamp() {
+        public long getTimestamp() {
             return timestamp;
         }
     }
     
     /**
-     * Get the database connection
+     * Lease a database connection for reading.
+     * Close the connection when done to return it to the pool.
      *
      * @return The database connection
      * @throws SQLException If an error occurs
      */
     public Connection getConnection() throws SQLException {
-        connect();
-        return connection;
+        if (pool == null) {
+            throw new SQLException("Database connection pool is not open");
+        }
+        return pool.getConnection();
+    }
+    
+    /**
+     * Lease a database connection for writing.
+     * On SQLite only one write connection is handed out at a time, so keep the lease short
+     * and do not request a second write connection while holding one.
+     *
+     * @return The database connection
+     * @throws SQLException If an error occurs
+     */
+    public Connection getWriteConnection() throws SQLException {
+        if (pool == null) {
+            throw new SQLException("Database connection pool is not open");
+        }
+        return pool.getWriteConnection();
+    }
+    
+    /**
+     * Get the connection pool, for metrics
+     *
+     * @return The connection pool, or null if the database is closed
+     */
+    public ConnectionPool getConnectionPool() {
+        return pool;
     }
     
     /**
@@ -616,4 +1547,45 @@ public class DatabaseManager {
             return statement.executeUpdate(query);
         }
     }
-} 
\ No newline at end of file
+    
+    /**
+     * A shop row read during a bulk load
+     */
+    private static final class ShopRow {
+        private final String id;
+        private final String name;
+        private final String type;
+        private final String owner;
+        private final String location;
+        private final String description;
+        private final boolean open;
+
+        private ShopRow(String id, String name, String type, String owner, String location, String description,
+                        boolean open) {
+            this.id = id;
+            this.name = name;
+            this.type = type;
+            this.owner = owner;
+            this.location = location;
+            this.description = description;
+            this.open = open;
+        }
+    }
+    
+    /**
+     * A shop item row read during a bulk load
+     */
+    private static final class ShopItemRow {
+        private final String id;
+        private final byte[] itemData;
+        private final double price;
+        private final int stock;
+
+        private ShopItemRow(String id, byte[] itemData, double price, int stock) {
+            this.id = id;
+            this.itemData = itemData;
+            this.price = price;
+            this.stock = stock;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,78 @@
+package org.frizzlenpop.frizzlenShop.utils;
+
+import org.bukkit.Material;
+import org.bukkit.inventory.ItemStack;
+
+import java.util.Base64;
+
+/**
+ * Encodes items to and from Paper's compact binary item format.
+ * Unlike the old {@code MATERIAL,amount} text format, the binary form keeps enchantments, names, lore
+ * and every other component of the item.
+ */
+public final class ItemCodec {
+
+    private static final byte[] EMPTY = new byte[0];
+
+    private ItemCodec() {
+    }
+
+    /**
+     * Encode an item
+     *
+     * @param item The item to encode
+     * @return The encoded item, empty for air
+     */
+    public static byte[] encode(ItemStack item) {
+        if (item == null || item.isEmpty()) {
+            return EMPTY;
+        }
+        return item.serializeAsBytes();
+    }
+
+    /**
+     * Decode an item
+     *
+     * @param data The encoded item
+     * @return The item
+     */
+    public static ItemStack decode(byte[] data) {
+        if (data == null || data.length == 0) {
+            return ItemStack.empty();
+        }
+        return ItemStack.deserializeBytes(data);
+    }
+
+    /**
+     * Encode an item as a Base64 string, for text-based storage such as YAML
+     *
+     * @param data The encoded item
+     * @return The Base64 string
+     */
+    public static String toBase64(byte[] data) {
+        return Base64.getEncoder().encodeToString(data);
+    }
+
+    /**
+     * Decode an item from a Base64 string
+     *
+     * @param base64 The Base64 string
+     * @return The item
+     */
+    public static ItemStack fromBase64(String base64) {
+        return decode(Base64.getDecoder().decode(base64));
+    }
+
+    /**
+     * Decode an item stored in the legacy {@code MATERIAL,amount} text format
+     *
+     * @param serialized The serialized item
+     * @return The item
+     */
+    public static ItemStack decodeLegacy(String serialized) {
+        String[] parts = serialized.split(",");
+        Material material = Material.valueOf(parts[0]);
+        int amount = parts.length > 1 ? Integer.parseInt(parts[1].trim()) : 1;
+        return new ItemStack(material, amount);
+    }
+}
@@ -5,24 +5,56 @@ import org.bukkit.inventory.ItemStack;
 import org.frizzlenpop.frizzlenShop.FrizzlenShop;
 import org.frizzlenpop.frizzlenShop.shops.Shop;
 
+import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.io.PrintWriter;
-import java.text.SimpleDateFormat;
-import java.util.Date;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
+import java.util.zip.GZIPOutputStream;
 
+/**
+ * Writes the plugin's log files.
+ * Callers only queue a line; a background thread appends queued lines to long-lived buffered writers,
+ * rotates each file daily or when it grows too large, and compresses rotated files.
+ */
 public class LogManager {
 
+    private static final DateTimeFormatter TIMESTAMP_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final String TRANSACTIONS_LOG = "transactions";
+    private static final String SHOP_CHANGES_LOG = "shop_changes";
+    private static final String PRICE_CHANGES_LOG = "price_changes";
+
     private final FrizzlenShop plugin;
     private final File logFolder;
-    private static final SimpleDateFormat DATE_FORMAT = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+    private final ZoneId zone = ZoneId.systemDefault();
+    private final long maxFileSize;
+    private final Queue<LogEntry> queue = new ConcurrentLinkedQueue<>();
+    private final Map<String, LogFile> files = new HashMap<>();
+    private final ScheduledExecutorService writer;
 
     public LogManager(FrizzlenShop plugin) {
         this.plugin = plugin;
         this.logFolder = new File(plugin.getDataFolder(), "logs");
+        this.maxFileSize = Math.max(1L, plugin.getConfigManager().getLogMaxFileSize()) * 1024L * 1024L;
         
         // Create logs directory if it doesn't exist
         if (!logFolder.exists()) {
@@ -32,6 +64,15 @@ public class LogManager {
                 plugin.getLogger().severe("Failed to create logs directory");
             }
         }
+        
+        this.writer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "FrizzlenShop-Log");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long flushInterval = Math.max(50L, plugin.getConfigManager().getLogFlushInterval());
+        writer.scheduleWithFixedDelay(this::flush, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+        writer.execute(this::cleanupLogs);
     }
 
     /**
@@ -46,30 +87,33 @@ public class LogManager {
      * @param isBuy        True if the player is buying, false if selling
      */
     public void logTransaction(Player player, Shop shop, ItemStack item, int amount, double price, String currency, boolean isBuy) {
+        logTransaction(player.getName(), player.getUniqueId(), shop.getName(), shop.getId(), getItemName(item), amount, price,
+                currency, isBuy);
+    }
+
+    /**
+     * Log a transaction from captured values, so it can be written off the main thread
+     *
+     * @param playerName   The name of the player involved in the transaction
+     * @param playerId     The UUID of the player involved in the transaction
+     * @param shopName     The name of the shop involved in the transaction
+     * @param shopId       The ID of the shop involved in the transaction
+     * @param itemName     The name of the item being bought/sold
+     * @param amount       The amount of the item
+     * @param price        The total price of the transaction
+     * @param currency     The currency used
+     * @param isBuy        True if the player is buying, false if selling
+     */
+    public void logTransaction(String playerName, UUID playerId, String shopName, UUID shopId, String itemName,
+                               int amount, double price, String currency, boolean isBuy) {
         if (!plugin.getConfigManager().isTransactionLoggingEnabled()) {
             return;
         }
         
-        try {
-            File file = new File(logFolder, "transactions.log");
-            FileWriter fw = new FileWriter(file, true);
-            PrintWriter pw = new PrintWriter(fw);
-            
-            String action = isBuy ? "bought" : "sold";
-            String timestamp = DATE_FORMAT.format(new Date());
-            String itemName = item.getType().name();
-            if (item.hasItemMeta() && item.getItemMeta().hasDisplayName()) {
-                itemName = item.getItemMeta().getDisplayName();
-            }
-            
-            pw.println("[" + timestamp + "] " + player.getName() + " (" + player.getUniqueId() + ") " 
-                    + action + " " + amount + "x " + itemName + " for " + price + " " + currency 
-                    + " at shop " + shop.getName() + " (" + shop.getId() + ")");
-            
-            pw.close();
-        } catch (IOException e) {
-            plugin.getLogger().log(Level.SEVERE, "Failed to log transaction", e);
-        }
+        String action = isBuy ? "bought" : "sold";
+        enqueue(TRANSACTIONS_LOG, playerName + " (" + playerId + ") "
+                + action + " " + amount + "x " + itemName + " for " + price + " " + currency
+                + " at shop " + shopName + " (" + shopId + ")");
     }
 
     /**
@@ -83,20 +127,8 @@ public class LogManager {
             return;
         }
         
-        try {
-            File file = new File(logFolder, "shop_changes.log");
-            FileWriter fw = new FileWriter(file, true);
-            PrintWriter pw = new PrintWriter(fw);
-            
-            String timestamp = DATE_FORMAT.format(new Date());
-            
-            pw.println("[" + timestamp + "] " + player.getName() + " (" + player.getUniqueId() + ") " 
-                    + "created shop " + shop.getName() + " (" + shop.getId() + ")");
-            
-            pw.close();
-        } catch (IOException e) {
-            plugin.getLogger().log(Level.SEVERE, "Failed to log shop creation", e);
-        }
+        enqueue(SHOP_CHANGES_LOG, player.getName() + " (" + player.getUniqueId() + ") "
+                + "created shop " + shop.getName() + " (" + shop.getId() + ")");
     }
 
     /**
@@ -111,20 +143,8 @@ public class LogManager {
             return;
         }
         
-        try {
-            File file = new File(logFolder, "shop_changes.log");
-            FileWriter fw = new FileWriter(file, true);
-            PrintWriter pw = new PrintWriter(fw);
-            
-            String timestamp = DATE_FORMAT.format(new Date());
-            
-            pw.println("[" + timestamp + "] " + player.getName() + " (" + player.getUniqueId() + ") " 
-                    + "deleted shop " + shopName + " (" + shopId + ")");
-            
-            pw.close();
-        } catch (IOException e) {
-            plugin.getLogger().log(Level.SEVERE, "Failed to log shop deletion", e);
-        }
+        enqueue(SHOP_CHANGES_LOG, player.getName() + " (" + player.getUniqueId() + ") "
+                + "deleted shop " + shopName + " (" + shopId + ")");
     }
 
     /**
@@ -139,36 +159,21 @@ public class LogManager {
      * @param newSellPrice The new sell price
      * @param currency The currency used
      */
-    public void logPriceChange(Player player, Shop shop, ItemStack item, double oldBuyPrice, double newBuyPrice, 
+    public void logPriceChange(Player player, Shop shop, ItemStack item, double oldBuyPrice, double newBuyPrice,
                                double oldSellPrice, double newSellPrice, String currency) {
         if (!plugin.getConfigManager().isPriceChangeLoggingEnabled()) {
             return;
         }
         
-        try {
-            File file = new File(logFolder, "price_changes.log");
-            FileWriter fw = new FileWriter(file, true);
-            PrintWriter pw = new PrintWriter(fw);
-            
-            String timestamp = DATE_FORMAT.format(new Date());
-            String itemName = item.getType().name();
-            if (item.hasItemMeta() && item.getItemMeta().hasDisplayName()) {
-                itemName = item.getItemMeta().getDisplayName();
-            }
-            
-            pw.println("[" + timestamp + "] " + player.getName() + " (" + player.getUniqueId() + ") " 
-                    + "changed price of " + itemName + " in shop " + shop.getName() + " (" + shop.getId() + "): "
-                    + "Buy: " + oldBuyPrice + " -> " + newBuyPrice + " " + currency + ", "
-                    + "Sell: " + oldSellPrice + " -> " + newSellPrice + " " + currency);
-            
-            pw.close();
-        } catch (IOException e) {
-            plugin.getLogger().log(Level.SEVERE, "Failed to log price change", e);
-        }
+        enqueue(PRICE_CHANGES_LOG, player.getName() + " (" + player.getUniqueId() + ") "
+                + "changed price of " + getItemName(item) + " in shop " + shop.getName() + " (" + shop.getId() + "): "
+                + "Buy: " + oldBuyPrice + " -> " + newBuyPrice + " " + currency + ", "
+                + "Sell: " + oldSellPrice + " -> " + newSellPrice + " " + currency);
     }
 
     /**
-     * Clean up old logs based on retention period
+     * Clean up rotated log files older than the retention period.
+     * The active log files are never deleted; they are rotated daily instead.
      */
     public void cleanupLogs() {
         int retentionPeriod = plugin.getConfigManager().getLogRetentionPeriod();
@@ -178,7 +183,7 @@ public class LogManager {
         
         long cutoffTime = System.currentTimeMillis() - (retentionPeriod * 24 * 60 * 60 * 1000L);
         
-        File[] logFiles = logFolder.listFiles((dir, name) -> name.endsWith(".log"));
+        File[] logFiles = logFolder.listFiles((dir, name) -> name.endsWith(".log.gz"));
         if (logFiles == null) {
             return;
         }
@@ -193,4 +198,188 @@ public class LogManager {
             }
         }
     }
-} 
\ No newline at end of file
+
+    /**
+     * Write every queued line and close the log files
+     */
+    public void shutdown() {
+        writer.shutdown();
+        try {
+            if (!writer.awaitTermination(10, TimeUnit.SECONDS)) {
+                plugin.getLogger().warning("Timed out waiting for the log writer to finish");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        
+        flush();
+        synchronized (this) {
+            for (LogFile file : files.values()) {
+                try {
+                    file.close();
+                } catch (IOException e) {
+                    plugin.getLogger().log(Level.SEVERE, "Failed to close log file " + file.name, e);
+                }
+            }
+            files.clear();
+        }
+    }
+
+    /**
+     * Queue a line for a log file
+     *
+     * @param log     The name of the log file, without extension
+     * @param message The line to write, without timestamp
+     */
+    private void enqueue(String log, String message) {
+        queue.add(new LogEntry(log, System.currentTimeMillis(), message));
+    }
+
+    /**
+     * Write every queued line to its log file and flush the files that were written to
+     */
+    private synchronized void flush() {
+        Set<LogFile> written = new HashSet<>();
+        LogEntry entry;
+        while ((entry = queue.poll()) != null) {
+            LogFile file = files.computeIfAbsent(entry.log, LogFile::new);
+            try {
+                file.write(entry.timestamp, entry.message);
+                written.add(file);
+            } catch (IOException e) {
+                plugin.getLogger().log(Level.SEVERE, "Failed to write to log file " + file.name, e);
+            }
+        }
+        
+        for (LogFile file : written) {
+            try {
+                file.flush();
+            } catch (IOException e) {
+                plugin.getLogger().log(Level.SEVERE, "Failed to flush log file " + file.name, e);
+            }
+        }
+    }
+
+    /**
+     * Get the name of an item for logging
+     *
+     * @param item The item
+     * @return The display name, or the material name if the item has none
+     */
+    private String getItemName(ItemStack item) {
+        if (item.hasItemMeta() && item.getItemMeta().hasDisplayName()) {
+            return item.getItemMeta().getDisplayName();
+        }
+        return item.getType().name();
+    }
+
+    /**
+     * A queued log line
+     */
+    private static final class LogEntry {
+        private final String log;
+        private final long timestamp;
+        private final String message;
+
+        private LogEntry(String log, long timestamp, String message) {
+            this.log = log;
+            this.timestamp = timestamp;
+            this.message = message;
+        }
+    }
+
+    /**
+     * An active log file and its open writer.
+     * Only used by the log writer thread, or after it stopped.
+     */
+    private final class LogFile {
+        private final String name;
+        private final File file;
+        private BufferedWriter out;
+        private LocalDate day;
+        private long size;
+
+        private LogFile(String name) {
+            this.name = name;
+            this.file = new File(logFolder, name + ".log");
+        }
+
+        /**
+         * Append a line, rotating the file first if the day changed or the file is full
+         *
+         * @param timestamp The time of the line in epoch milliseconds
+         * @param message   The line to write
+         * @throws IOException If an error occurs
+         */
+        private void write(long timestamp, String message) throws IOException {
+            LocalDateTime time = LocalDateTime.ofInstant(Instant.ofEpochMilli(timestamp), zone);
+            LocalDate today = time.toLocalDate();
+            if (out == null) {
+                open(today);
+            } else if (!today.equals(day) || size >= maxFileSize) {
+                close();
+                archive();
+                open(today);
+            }
+            
+            String line = "[" + TIMESTAMP_FORMAT.format(time) + "] " + message + System.lineSeparator();
+            out.write(line);
+            size += line.length();
+        }
+
+        /**
+         * Open the file for appending, first rotating a file left over from an earlier day
+         *
+         * @param today The current day
+         * @throws IOException If an error occurs
+         */
+        private void open(LocalDate today) throws IOException {
+            if (file.length() > 0) {
+                LocalDate fileDay = LocalDate.ofInstant(Instant.ofEpochMilli(file.lastModified()), zone);
+                if (!fileDay.equals(today) || file.length() >= maxFileSize) {
+                    day = fileDay;
+                    archive();
+                }
+            }
+            
+            out = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            day = today;
+            size = file.length();
+        }
+
+        /**
+         * Compress the closed file into the next free segment of its day, then remove it
+         *
+         * @throws IOException If an error occurs
+         */
+        private void archive() throws IOException {
+            File target;
+            int index = 1;
+            do {
+                target = new File(logFolder, name + "-" + day + "." + index++ + ".log.gz");
+            } while (target.exists());
+            
+            try (InputStream in = Files.newInputStream(file.toPath());
+                 OutputStream gzip = new GZIPOutputStream(Files.newOutputStream(target.toPath()))) {
+                in.transferTo(gzip);
+            }
+            Files.delete(file.toPath());
+            
+            cleanupLogs();
+        }
+
+        private void flush() throws IOException {
+            if (out != null) {
+                out.flush();
+            }
+        }
+
+        private void close() throws IOException {
+            if (out != null) {
+                out.close();
+                out = null;
+            }
+        }
+    }
+}